@@ -0,0 +1,95 @@
+package com.github.agluh.megamarket;
+
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates catalogs of given shape for benchmarks.
+ *
+ * <p>Shape is written as {@code <fan-out>x<depth>}: every category has fan-out children,
+ * elements at the given depth are offers, all above them are categories.
+ * Generated catalogs are the same for the same shape.
+ */
+public final class CatalogGenerator {
+
+    public static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+
+    private CatalogGenerator() {
+    }
+
+    /**
+     * Returns flat list of catalog elements, parents go before their children.
+     */
+    public static List<ShopUnit> generate(String shape) {
+        String[] parts = shape.split("x");
+        int fanOut = Integer.parseInt(parts[0]);
+        int depth = Integer.parseInt(parts[1]);
+        Random random = new Random(shape.hashCode());
+
+        List<ShopUnit> units = new ArrayList<>();
+        List<ShopUnit> level = List.of(new ShopUnit(randomUuid(random), null, "Root",
+            null, DATE, ShopUnitType.CATEGORY));
+        units.addAll(level);
+        for (int d = 1; d <= depth; d++) {
+            ShopUnitType type = d == depth ? ShopUnitType.OFFER : ShopUnitType.CATEGORY;
+            List<ShopUnit> next = new ArrayList<>(level.size() * fanOut);
+            for (ShopUnit parent : level) {
+                for (int i = 0; i < fanOut; i++) {
+                    Long price = type == ShopUnitType.OFFER ? (long) random.nextInt(100_000) : null;
+                    next.add(new ShopUnit(randomUuid(random), parent.getId(),
+                        type + " " + units.size() + next.size(), price, DATE, type));
+                }
+            }
+            units.addAll(next);
+            level = next;
+        }
+
+        return units;
+    }
+
+    /**
+     * Returns detached copies of elements, so they can be linked once again.
+     */
+    public static List<ShopUnit> copy(List<ShopUnit> units) {
+        return units.stream()
+            .map(u -> new ShopUnit(u.getId(), u.getParentId(), u.getName(), u.getPrice(),
+                u.getDate(), u.getType()))
+            .toList();
+    }
+
+    public static List<Category> categories(List<ShopUnit> units) {
+        return units.stream()
+            .filter(ShopUnit::isCategory)
+            .map(u -> new Category(u.getId(), u.getParentId(), u.getName(), null, u.getDate(),
+                PriceAggregate.EMPTY))
+            .toList();
+    }
+
+    public static List<Offer> offers(List<ShopUnit> units) {
+        return units.stream()
+            .filter(ShopUnit::isOffer)
+            .map(u -> new Offer(u.getId(), u.getParentId(), u.getName(), u.getPrice(),
+                u.getDate()))
+            .toList();
+    }
+
+    public static List<ShopUnitImport> imports(List<ShopUnit> units) {
+        return units.stream()
+            .map(u -> new ShopUnitImport(u.getId(), u.getName(), u.getType(), u.getParentId(),
+                u.getPrice()))
+            .toList();
+    }
+
+    private static UUID randomUuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+}
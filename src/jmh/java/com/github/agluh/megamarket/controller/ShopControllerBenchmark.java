@@ -0,0 +1,64 @@
+package com.github.agluh.megamarket.controller;
+
+import com.github.agluh.megamarket.serialization.Iso8601Parser;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks parsing of dates passed in request parameters
+ * against parsing by {@link DateTimeFormatter} which was used before.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopControllerBenchmark {
+
+    private static final String PATTERN = "uuuu-MM-dd'T'HH:mm:ss[.SSS][.SS][.S][XXX][XX][X]";
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern(PATTERN);
+
+    @Param({"2022-05-28T21:12:01.000Z", "2022-05-28T21:12:01+03:00",
+        "2022-05-28T21:12:01.123-0530", "2022-05-28T21:12:01"})
+    private String date;
+
+    @Benchmark
+    public Instant parseInstant() {
+        return Iso8601Parser.parseInstant(date);
+    }
+
+    /**
+     * Parsing as it was done before, with formatter created per call.
+     */
+    @Benchmark
+    public Instant formatterPerCall() {
+        try {
+            return OffsetDateTime.parse(date, DateTimeFormatter.ofPattern(PATTERN)).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    @Benchmark
+    public Instant sharedFormatter() {
+        try {
+            return OffsetDateTime.parse(date, FORMATTER).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+}
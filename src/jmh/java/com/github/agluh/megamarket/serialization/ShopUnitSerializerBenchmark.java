@@ -0,0 +1,72 @@
+package com.github.agluh.megamarket.serialization;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.CatalogGenerator;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks serialization of catalog trees of different fan-out and depth,
+ * both linked {@link ShopUnit} objects and columnar {@link ShopUnitTree}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopUnitSerializerBenchmark {
+
+    @Param({"2x10", "10x3", "1000x1", "1x500", "1x5000"})
+    private String shape;
+
+    private ObjectMapper objectMapper;
+    private ShopUnit root;
+    private ShopUnitTree tree;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = new ObjectMapper();
+
+        List<ShopUnit> units = CatalogGenerator.generate(shape);
+        Map<UUID, ShopUnit> byId = new HashMap<>();
+        units.forEach(u -> byId.put(u.getId(), u));
+        units.stream()
+            .filter(u -> u.getParentId() != null)
+            .forEach(u -> byId.get(u.getParentId()).addChild(u));
+        root = units.get(0);
+
+        ShopUnitTree.Builder builder = new ShopUnitTree.Builder();
+        units.forEach(u -> builder.add(u.getId(), u.getParentId(), u.getName(), u.getPrice(),
+            u.getDate().toEpochMilli(), u.getType()));
+        tree = builder.build();
+    }
+
+    @Benchmark
+    public byte[] serialize() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(root);
+    }
+
+    @Benchmark
+    public byte[] serializeTree() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(tree);
+    }
+}
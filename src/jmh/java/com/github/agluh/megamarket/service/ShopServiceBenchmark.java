@@ -0,0 +1,267 @@
+package com.github.agluh.megamarket.service;
+
+import com.github.agluh.megamarket.CatalogGenerator;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.model.AggregateDrift;
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.repository.OfferRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of in-memory parts of importing and reading catalog.
+ *
+ * <p>Repositories are stubbed by maps, so only application side logic is measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ShopServiceBenchmark {
+
+    @Param({"2x10", "10x3", "1000x1"})
+    private String shape;
+
+    private ShopService shopService;
+    private List<ShopUnit> units;
+    private List<ShopUnit> detachedUnits;
+    private List<Category> shuffledCategories;
+    private List<Category> categories;
+    private List<Offer> offers;
+    private List<ShopUnitImport> imports;
+    private ShopService.StoredRows stored;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        units = CatalogGenerator.generate(shape);
+        categories = CatalogGenerator.categories(units);
+        offers = CatalogGenerator.offers(units);
+        imports = CatalogGenerator.imports(units);
+
+        shuffledCategories = new ArrayList<>(categories);
+        Collections.shuffle(shuffledCategories, new Random(shape.hashCode()));
+
+        shopService = new ShopService(new InMemoryOfferRepository(storedOffers()),
+            new InMemoryCategoryRepository(storedCategories()), null, Optional.empty(), null,
+            null, null, new SimpleMeterRegistry(), null, null, false);
+        stored = shopService.loadStoredRows(imports);
+    }
+
+    /**
+     * Tree building links passed elements, so every invocation gets its own copies.
+     */
+    @Setup(Level.Invocation)
+    public void detachUnits() {
+        detachedUnits = CatalogGenerator.copy(units);
+    }
+
+    @Benchmark
+    public List<List<Category>> groupByDependencyLevel() {
+        return shopService.groupByDependencyLevel(shuffledCategories);
+    }
+
+    @Benchmark
+    public ShopUnit buildTree() {
+        return shopService.buildTree(detachedUnits);
+    }
+
+    @Benchmark
+    public List<ShopUnitImport> ensureIdUniqueness() {
+        shopService.ensureIdUniqueness(imports);
+        return imports;
+    }
+
+    @Benchmark
+    public Object getCategoriesWithUpdatedPrice() {
+        return shopService.getCategoriesWithUpdatedPrice(offers, categories, stored);
+    }
+
+    /**
+     * Half of offers are stored with another price, quarter of them in another category.
+     */
+    private List<Offer> storedOffers() {
+        List<Offer> stored = new ArrayList<>();
+        for (int i = 0; i < offers.size(); i += 2) {
+            Offer o = offers.get(i);
+            UUID parentId = i % 4 == 0 ? categories.get(0).getId() : o.getParentId();
+            stored.add(new Offer(o.getId(), parentId, o.getName(), o.getPrice() + 1, o.getDate()));
+        }
+
+        return stored;
+    }
+
+    /**
+     * All categories are stored with offers, every tenth one is stored as top-level.
+     */
+    private List<Category> storedCategories() {
+        List<Category> stored = new ArrayList<>();
+        for (int i = 0; i < categories.size(); i++) {
+            Category c = categories.get(i);
+            UUID parentId = i % 10 == 9 ? null : c.getParentId();
+            stored.add(new Category(c.getId(), parentId, c.getName(), 1L, c.getDate(),
+                PriceAggregate.of(1)));
+        }
+
+        return stored;
+    }
+
+    private static <T> Collection<T> findByIds(Map<UUID, T> stored, Collection<UUID> ids) {
+        return ids.stream()
+            .map(stored::get)
+            .filter(Objects::nonNull)
+            .toList();
+    }
+
+    private static class InMemoryOfferRepository implements OfferRepository {
+        private final Map<UUID, Offer> offers = new HashMap<>();
+
+        InMemoryOfferRepository(Collection<Offer> offers) {
+            offers.forEach(o -> this.offers.put(o.getId(), o));
+        }
+
+        @Override
+        public Collection<Offer> findByIds(Collection<UUID> ids) {
+            return ShopServiceBenchmark.findByIds(offers, ids);
+        }
+
+        @Override
+        public void save(Collection<Offer> offers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stage(UUID stageId, Collection<Offer> offers) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void mergeStaged(UUID stageId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteStaged(Collection<UUID> stageIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(UUID offerId) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private static class InMemoryCategoryRepository implements CategoryRepository {
+        private final Map<UUID, Category> categories = new HashMap<>();
+
+        InMemoryCategoryRepository(Collection<Category> categories) {
+            categories.forEach(c -> this.categories.put(c.getId(), c));
+        }
+
+        @Override
+        public Collection<Category> findByIds(Collection<UUID> ids) {
+            return ShopServiceBenchmark.findByIds(categories, ids);
+        }
+
+        @Override
+        public void save(Collection<Category> categories) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void stage(UUID stageId, Collection<Category> categories) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void mergeStaged(UUID stageId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void deleteStaged(Collection<UUID> stageIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void delete(UUID categoryId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<Category> getAllUpstreamCategories(Collection<UUID> ids) {
+            Map<UUID, Category> upstream = new HashMap<>();
+            for (UUID id : ids) {
+                Category c = categories.get(id);
+                while (c != null && upstream.putIfAbsent(c.getId(), c) == null) {
+                    c = c.getParentId() == null ? null : categories.get(c.getParentId());
+                }
+            }
+
+            return upstream.values();
+        }
+
+        @Override
+        public void addToHierarchy(Collection<Category> categories) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void moveInHierarchy(Category category) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<UUID> getSubtreeIds(UUID categoryId) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void lockTrees(Collection<UUID> rootIds) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void applyAggregateDeltas(Map<UUID, PriceAggregate> deltas, Instant updateDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void recomputePrices(Collection<UUID> ids, Instant updateDate) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public Collection<AggregateDrift> findAggregateDrift() {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,194 @@
+package com.github.agluh.megamarket;
+
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.repository.impl.InMemoryShopUnitReadModel;
+import com.github.agluh.megamarket.service.NodeResponseCache;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SimpleDriverDataSource;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Keeps in-process caches of several application instances consistent
+ * by Postgres {@code LISTEN/NOTIFY}.
+ *
+ * <p>Before a transaction which changes the catalog is committed, changed elements
+ * and their upstream categories are notified within it, so notifications are delivered
+ * only if the transaction commits. Notifications of other instances are published as
+ * {@link CatalogChangedEvent} to local listeners. Since notifications sent while
+ * the instance isn't listening can't be received, local caches are flushed
+ * every time listening starts.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "megamarket.invalidation-bus.enabled", havingValue = "true")
+public class CatalogInvalidationBus {
+
+    static final String CHANNEL = "megamarket_catalog_changed";
+
+    /**
+     * Notification payload is limited by 8000 bytes, so identities are sent by chunks.
+     */
+    private static final int IDS_PER_NOTIFICATION = 200;
+    private static final String NOTIFY = "SELECT pg_notify(?, ?)";
+    private static final String LISTEN = "LISTEN " + CHANNEL;
+
+    private final String instanceId = UUID.randomUUID().toString();
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource listeningDataSource;
+    private final CategoryRepository categoryRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final NodeResponseCache nodeResponseCache;
+    private final Optional<InMemoryShopUnitReadModel> catalogIndex;
+    private final Duration pollTimeout;
+    private final Duration reconnectDelay;
+    private volatile boolean running;
+    private Thread listener;
+
+    public CatalogInvalidationBus(JdbcTemplate jdbcTemplate,
+            DataSourceProperties dataSourceProperties,
+            CategoryRepository categoryRepository,
+            ApplicationEventPublisher eventPublisher,
+            NodeResponseCache nodeResponseCache,
+            Optional<InMemoryShopUnitReadModel> catalogIndex,
+            @Value("${megamarket.invalidation-bus.poll-timeout}") Duration pollTimeout,
+            @Value("${megamarket.invalidation-bus.reconnect-delay}") Duration reconnectDelay) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.listeningDataSource = dataSourceProperties.initializeDataSourceBuilder()
+            .type(SimpleDriverDataSource.class)
+            .build();
+        this.categoryRepository = categoryRepository;
+        this.eventPublisher = eventPublisher;
+        this.nodeResponseCache = nodeResponseCache;
+        this.catalogIndex = catalogIndex;
+        this.pollTimeout = pollTimeout;
+        this.reconnectDelay = reconnectDelay;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        listener = new Thread(this::listen, "catalog-invalidation-bus");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        listener.interrupt();
+        listener.join(pollTimeout.toMillis() * 2);
+    }
+
+    /**
+     * Notifies other instances about changed elements and their upstream categories.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        Set<UUID> changed = new LinkedHashSet<>(event.nodeIds());
+        if (!event.parentIds().isEmpty()) {
+            categoryRepository.getAllUpstreamCategories(event.parentIds()).stream()
+                .map(Category::getId)
+                .forEach(changed::add);
+        }
+
+        List<UUID> ids = new ArrayList<>(changed);
+        for (int i = 0; i < ids.size(); i += IDS_PER_NOTIFICATION) {
+            List<UUID> chunk = ids.subList(i, Math.min(i + IDS_PER_NOTIFICATION, ids.size()));
+            jdbcTemplate.query(NOTIFY, rs -> null, CHANNEL, encode(chunk));
+        }
+    }
+
+    private void listen() {
+        while (running) {
+            try (Connection connection = listeningDataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(LISTEN);
+                }
+                // Changes committed before listening started can't be received anymore
+                flush();
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    PGNotification[] notifications =
+                        pgConnection.getNotifications((int) pollTimeout.toMillis());
+                    if (notifications != null) {
+                        for (PGNotification notification : notifications) {
+                            receive(notification.getParameter());
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Invalidation bus lost connection, retrying in {}", reconnectDelay, e);
+                try {
+                    Thread.sleep(reconnectDelay.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private void receive(String payload) {
+        int colon = payload.indexOf(':');
+        if (payload.substring(0, colon).equals(instanceId)) {
+            return;
+        }
+
+        List<UUID> ids = new ArrayList<>();
+        for (String id : payload.substring(colon + 1).split(",")) {
+            ids.add(UUID.fromString(id));
+        }
+        eventPublisher.publishEvent(new CatalogChangedEvent(ids, List.of()));
+    }
+
+    /**
+     * Reloads the index before dropping cached responses, so they aren't refilled
+     * from the stale index.
+     */
+    private void flush() {
+        catalogIndex.ifPresent(InMemoryShopUnitReadModel::reload);
+        nodeResponseCache.invalidateAll();
+    }
+
+    /**
+     * Encodes identities as {@code instance:id,id,...}, so an instance can skip its own changes.
+     */
+    private String encode(List<UUID> ids) {
+        StringBuilder payload = new StringBuilder(instanceId).append(':');
+        for (int i = 0; i < ids.size(); i++) {
+            if (i > 0) {
+                payload.append(',');
+            }
+            payload.append(ids.get(i));
+        }
+
+        return payload.toString();
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.agluh.megamarket;
+
+import com.github.agluh.megamarket.ReadReplicaRoutingDataSource.ReadYourWrites;
+import com.zaxxer.hikari.HikariDataSource;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Optional;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Data sources of the primary database and of its optional read replica.
+ *
+ * <p>Writes and everything else use the primary data source. Read models use
+ * {@link #READ_DATA_SOURCE} which routes them to the replica configured
+ * by {@code megamarket.read-replica.datasource} properties, if any.
+ */
+@Configuration
+public class DataSourceConfiguration {
+
+    public static final String READ_DATA_SOURCE = "readDataSource";
+
+    private static final String REPLICA_URL = "megamarket.read-replica.datasource.url";
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource")
+    public DataSourceProperties dataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties dataSourceProperties) {
+        return dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+    }
+
+    @Bean
+    @ConditionalOnProperty(REPLICA_URL)
+    @ConfigurationProperties("megamarket.read-replica.datasource")
+    public DataSourceProperties replicaDataSourceProperties() {
+        return new DataSourceProperties();
+    }
+
+    @Bean
+    @ConditionalOnProperty(REPLICA_URL)
+    @ConfigurationProperties("megamarket.read-replica.datasource.hikari")
+    public HikariDataSource replicaDataSource(
+            @Qualifier("replicaDataSourceProperties") DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+    }
+
+    @Bean(READ_DATA_SOURCE)
+    public ReadReplicaRoutingDataSource readDataSource(DataSource dataSource,
+            @Qualifier("replicaDataSource") Optional<DataSource> replicaDataSource,
+            @Value("${megamarket.read-replica.read-your-writes}") ReadYourWrites readYourWrites,
+            @Value("${megamarket.read-replica.max-lag}") Duration maxLag,
+            @Value("${megamarket.read-replica.retry-after}") Duration retryAfter) {
+        return new ReadReplicaRoutingDataSource(dataSource, replicaDataSource.orElse(null),
+            readYourWrites, maxLag, retryAfter, Clock.systemUTC());
+    }
+}
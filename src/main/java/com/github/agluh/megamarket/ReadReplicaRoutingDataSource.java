@@ -0,0 +1,227 @@
+package com.github.agluh.megamarket;
+
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import javax.sql.DataSource;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.jdbc.datasource.TransactionAwareDataSourceProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Gives connections to the read replica falling back to the primary.
+ *
+ * <p>Reads within a transaction use its connection to the primary, so they see changes
+ * of the transaction. Streaming reads hold their own transaction on a routed connection
+ * rather than join one, so they can be served by the replica too.
+ * If the replica fails to give a connection, the primary is used until retry period passes.
+ * To let clients read their own writes, the primary is used after a catalog change is committed
+ * either until the replica replays WAL up to that change or during the maximal replication lag.
+ */
+@Slf4j
+class ReadReplicaRoutingDataSource extends AbstractDataSource implements MeterBinder {
+
+    /**
+     * How reads after a committed change are kept consistent with it.
+     */
+    enum ReadYourWrites {
+        /**
+         * Replica is used regardless of changes.
+         */
+        NONE,
+
+        /**
+         * Replica is used once it replays WAL up to the LSN of the last change.
+         */
+        LSN,
+
+        /**
+         * Replica is used once the maximal lag passes since the last change.
+         */
+        TIMESTAMP
+    }
+
+    private static final String SELECT_CURRENT_LSN = "SELECT pg_current_wal_lsn()::text";
+    private static final String SELECT_REPLAY_LSN = "SELECT pg_last_wal_replay_lsn()::text";
+
+    private final DataSource primary;
+    private final DataSource transactionalPrimary;
+    private final DataSource replica;
+    private final JdbcTemplate primaryJdbcTemplate;
+    private final ReadYourWrites readYourWrites;
+    private final Duration maxLag;
+    private final Duration retryAfter;
+    private final Clock clock;
+    private final LongAdder primaryReads = new LongAdder();
+    private final LongAdder replicaReads = new LongAdder();
+
+    private final AtomicLong lastChangeLsn = new AtomicLong();
+    private final AtomicLong replayedLsn = new AtomicLong();
+    private volatile Instant lastChangeAt = Instant.EPOCH;
+    private volatile Instant replicaDownUntil = Instant.EPOCH;
+
+    /**
+     * Creates data source reading from the replica if it's passed and from the primary otherwise.
+     */
+    ReadReplicaRoutingDataSource(DataSource primary, DataSource replica,
+            ReadYourWrites readYourWrites, Duration maxLag, Duration retryAfter,
+            Clock clock) {
+        this.primary = primary;
+        this.transactionalPrimary = new TransactionAwareDataSourceProxy(primary);
+        this.replica = replica;
+        this.primaryJdbcTemplate = new JdbcTemplate(primary);
+        this.readYourWrites = readYourWrites;
+        this.maxLag = maxLag;
+        this.retryAfter = retryAfter;
+        this.clock = clock;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        readsCounter(registry, "primary", primaryReads);
+        readsCounter(registry, "replica", replicaReads);
+    }
+
+    /**
+     * Remembers position of committed change before caches are invalidated by it,
+     * so a reload can't get stale data from the replica.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (replica == null) {
+            return;
+        }
+
+        switch (readYourWrites) {
+            case LSN -> lastChangeLsn.accumulateAndGet(
+                parseLsn(primaryJdbcTemplate.queryForObject(SELECT_CURRENT_LSN, String.class)),
+                Math::max);
+            case TIMESTAMP -> lastChangeAt = clock.instant();
+            case NONE -> {
+                // Nothing to remember
+            }
+        }
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            primaryReads.increment();
+            return source.getConnection(transactionalPrimary);
+        }
+
+        Connection connection = replicaConnection(source);
+        if (connection != null) {
+            replicaReads.increment();
+            return connection;
+        }
+
+        primaryReads.increment();
+        return source.getConnection(primary);
+    }
+
+    /**
+     * Returns connection to the replica or null if the primary should be used.
+     */
+    private Connection replicaConnection(ConnectionSource source) {
+        Instant now = clock.instant();
+        if (replica == null || now.isBefore(replicaDownUntil)
+                || readYourWrites == ReadYourWrites.TIMESTAMP
+                    && now.isBefore(lastChangeAt.plus(maxLag))) {
+            return null;
+        }
+
+        Connection connection;
+        try {
+            connection = source.getConnection(replica);
+        } catch (SQLException | RuntimeException e) {
+            replicaDownUntil = now.plus(retryAfter);
+            log.warn("Read replica is unavailable, reading from primary for {}", retryAfter, e);
+            return null;
+        }
+
+        if (readYourWrites == ReadYourWrites.LSN && !hasReplayedLastChange(connection)) {
+            closeQuietly(connection);
+            return null;
+        }
+
+        return connection;
+    }
+
+    private boolean hasReplayedLastChange(Connection connection) {
+        long required = lastChangeLsn.get();
+        if (replayedLsn.get() >= required) {
+            return true;
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery(SELECT_REPLAY_LSN)) {
+            rs.next();
+            String lsn = rs.getString(1);
+            // Not a standby, so there is nothing to wait for
+            long replayed = lsn == null ? Long.MAX_VALUE : parseLsn(lsn);
+            return replayedLsn.accumulateAndGet(replayed, Math::max) >= required;
+        } catch (SQLException e) {
+            log.warn("Failed to get replay position of read replica", e);
+            return false;
+        }
+    }
+
+    /**
+     * Parses LSN of {@code XXXXXXXX/XXXXXXXX} form into a comparable number.
+     */
+    static long parseLsn(String lsn) {
+        int slash = lsn.indexOf('/');
+        return Long.parseLong(lsn.substring(0, slash), 16) << 32
+            | Long.parseLong(lsn.substring(slash + 1), 16);
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close replica connection", e);
+        }
+    }
+
+    /**
+     * Gets connection from a data source, either with its own credentials or passed ones.
+     */
+    @FunctionalInterface
+    private interface ConnectionSource {
+
+        Connection getConnection(DataSource dataSource) throws SQLException;
+    }
+
+    private static void readsCounter(MeterRegistry registry, String target, LongAdder reads) {
+        FunctionCounter.builder("megamarket.read.connections", reads, LongAdder::sum)
+            .description("Connections given to read models")
+            .tag("target", target)
+            .register(registry);
+    }
+}
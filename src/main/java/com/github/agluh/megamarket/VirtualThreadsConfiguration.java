@@ -0,0 +1,64 @@
+package com.github.agluh.megamarket;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.support.TaskExecutorAdapter;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Runs request handling on virtual threads instead of Tomcat's thread pool.
+ *
+ * <p>Since number of requests being handled at once isn't bounded by threads anymore,
+ * usage of the database is bounded by a semaphore in front of the connection pool.
+ */
+@Configuration
+@ConditionalOnProperty(name = "megamarket.execution.mode", havingValue = "virtual-threads")
+public class VirtualThreadsConfiguration {
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> virtualThreadsProtocolHandlerCustomizer() {
+        return protocolHandler ->
+            protocolHandler.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * Streamed responses are written by MVC async executor, so it runs on virtual threads too.
+     */
+    @Bean
+    public WebMvcConfigurer virtualThreadsAsyncSupport() {
+        return new WebMvcConfigurer() {
+            @Override
+            public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+                configurer.setTaskExecutor(
+                    new TaskExecutorAdapter(Executors.newVirtualThreadPerTaskExecutor()));
+            }
+        };
+    }
+
+    /**
+     * Every connection pool is limited, while routing data sources just pass its connections.
+     */
+    @Bean
+    public static BeanPostProcessor concurrencyLimitedDataSourcePostProcessor(
+            @Value("${megamarket.execution.db-permits}") int permits,
+            @Value("${megamarket.execution.db-permit-timeout}") Duration timeout) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource dataSource) {
+                    return new ConcurrencyLimitedDataSource(dataSource, permits, timeout);
+                }
+
+                return bean;
+            }
+        };
+    }
+}
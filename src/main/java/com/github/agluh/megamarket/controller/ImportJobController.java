@@ -0,0 +1,53 @@
+package com.github.agluh.megamarket.controller;
+
+import com.github.agluh.megamarket.dto.ImportJob;
+import com.github.agluh.megamarket.dto.ShopUnitImportRequest;
+import com.github.agluh.megamarket.service.ImportJobService;
+import java.net.URI;
+import java.util.UUID;
+import javax.validation.Valid;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Controller for asynchronous import of catalog items.
+ *
+ * <p>Imports are processed in background only if requested by {@code async=true},
+ * otherwise {@link ShopController#importData} handles them as before.
+ */
+@RestController
+@AllArgsConstructor
+@ConditionalOnProperty(name = "megamarket.import-jobs.enabled", havingValue = "true")
+public class ImportJobController {
+
+    private final ImportJobService importJobService;
+
+    @PostMapping(value = "/imports", params = "async=true")
+    public ResponseEntity<ImportJob> submit(@Valid @RequestBody ShopUnitImportRequest request) {
+        ImportJob job = importJobService.submit(request);
+        return ResponseEntity.status(HttpStatus.ACCEPTED)
+            .location(URI.create("/imports/" + job.getId()))
+            .body(job);
+    }
+
+    @GetMapping("/imports/{id}")
+    public ImportJob get(@PathVariable("id") String jobId) {
+        return importJobService.getJob(parseUuid(jobId));
+    }
+
+    private static UUID parseUuid(String value) {
+        try {
+            return UUID.fromString(value);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+    }
+}
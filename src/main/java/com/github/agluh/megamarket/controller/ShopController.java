@@ -1,18 +1,27 @@
 package com.github.agluh.megamarket.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.SalesCursor;
 import com.github.agluh.megamarket.dto.ShopUnit;
 import com.github.agluh.megamarket.dto.ShopUnitImportRequest;
 import com.github.agluh.megamarket.dto.ShopUnitStatisticResponse;
+import com.github.agluh.megamarket.serialization.Iso8601Parser;
+import com.github.agluh.megamarket.service.ImportCoalescer;
+import com.github.agluh.megamarket.service.NodeResponseCache;
 import com.github.agluh.megamarket.service.ShopService;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
 import java.time.Instant;
-import java.time.OffsetDateTime;
-import java.time.format.DateTimeFormatter;
-import java.time.format.DateTimeParseException;
-import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Consumer;
 import javax.validation.Valid;
 import lombok.AllArgsConstructor;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -21,6 +30,7 @@ import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controller fro all endpoints related to catalog.
@@ -29,14 +39,19 @@ import org.springframework.web.server.ResponseStatusException;
 @AllArgsConstructor
 public class ShopController {
 
-    public static final String ISO8601_DATE_TIME
-        = "uuuu-MM-dd'T'HH:mm:ss[.SSS][.SS][.S][XXX][XX][X]";
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
+
+    private static final int DEFAULT_PAGE_SIZE = 1000;
+    private static final int MAX_PAGE_SIZE = 10000;
 
     private final ShopService shopService;
+    private final ImportCoalescer importCoalescer;
+    private final NodeResponseCache nodeResponseCache;
+    private final ObjectMapper objectMapper;
 
     @PostMapping("/imports")
     public void importData(@Valid @RequestBody ShopUnitImportRequest request) {
-        shopService.importData(request.getItems(), request.getUpdateDate());
+        importCoalescer.importData(request.getItems(), request.getUpdateDate());
     }
 
     @DeleteMapping("/delete/{id}")
@@ -44,14 +59,46 @@ public class ShopController {
         shopService.deleteNode(parseUuid(nodeId));
     }
 
-    @GetMapping("/nodes/{id}")
-    public ShopUnit getNode(@PathVariable("id") String nodeId) {
-        return shopService.getNode(parseUuid(nodeId));
+    @GetMapping(value = "/nodes/{id}", produces = MediaType.APPLICATION_JSON_VALUE)
+    public byte[] getNode(@PathVariable("id") String nodeId) {
+        UUID id = parseUuid(nodeId);
+        return nodeResponseCache.get(id, () -> shopService.getNodeTree(id));
     }
 
-    @GetMapping("/sales")
-    public Collection<ShopUnit> getSales(@RequestParam("date") String date) {
-        return shopService.getSales(parseInstant(date));
+    /**
+     * Returns offers updated in last 24 hours.
+     *
+     * <p>Without paging parameters all offers are streamed row by row as they are fetched.
+     * Being passed a limit or a cursor, a single page is returned and a cursor
+     * of the next page is put to {@value #NEXT_CURSOR_HEADER} header, if there may be more.
+     */
+    @GetMapping(value = "/sales", produces = MediaType.APPLICATION_JSON_VALUE)
+    public ResponseEntity<StreamingResponseBody> getSales(
+            @RequestParam("date") String date,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "limit", required = false) Integer limit) {
+        Instant now = parseInstant(date);
+
+        if (cursor == null && limit == null) {
+            return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(out -> writeArray(out, consumer -> shopService.streamSales(now, consumer)));
+        }
+
+        int pageSize = limit != null ? limit : DEFAULT_PAGE_SIZE;
+        if (pageSize < 1 || pageSize > MAX_PAGE_SIZE) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        List<ShopUnit> page = shopService.getSales(now, parseCursor(cursor), pageSize);
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+            .contentType(MediaType.APPLICATION_JSON);
+        if (page.size() == pageSize) {
+            response.header(NEXT_CURSOR_HEADER,
+                SalesCursor.after(page.get(page.size() - 1)).encode());
+        }
+
+        return response.body(out -> writeArray(out, page::forEach));
     }
 
     @GetMapping("/node/{id}/statistic")
@@ -63,20 +110,49 @@ public class ShopController {
             shopService.getNodeStatistics(parseUuid(nodeId), parseInstant(from), parseInstant(to)));
     }
 
-    private static Instant parseInstant(String value) {
+    static Instant parseInstant(String value) {
         if (value == null) {
             return null;
         }
 
+        Instant instant = Iso8601Parser.parseInstant(value);
+        if (instant == null) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
+        }
+
+        return instant;
+    }
+
+    private static SalesCursor parseCursor(String value) {
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+
         try {
-            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(ISO8601_DATE_TIME);
-            OffsetDateTime date = OffsetDateTime.parse(value, formatter);
-            return date.toInstant();
-        } catch (IllegalArgumentException | DateTimeParseException e) {
+            return SalesCursor.decode(value);
+        } catch (IllegalArgumentException e) {
             throw new ResponseStatusException(HttpStatus.BAD_REQUEST);
         }
     }
 
+    /**
+     * Writes elements passed by producer as JSON array.
+     */
+    private void writeArray(OutputStream out, Consumer<Consumer<ShopUnit>> producer)
+            throws IOException {
+        try (JsonGenerator generator = objectMapper.createGenerator(out)) {
+            generator.writeStartArray();
+            producer.accept(unit -> {
+                try {
+                    generator.writeObject(unit);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            generator.writeEndArray();
+        }
+    }
+
     private static UUID parseUuid(String value) {
         try {
             return UUID.fromString(value);
@@ -0,0 +1,29 @@
+package com.github.agluh.megamarket.controller;
+
+import com.github.agluh.megamarket.service.StreamingImportService;
+import java.io.IOException;
+import javax.servlet.http.HttpServletRequest;
+import lombok.AllArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Controller for streaming import of catalog items.
+ *
+ * <p>Being enabled, it takes precedence over {@link ShopController#importData}
+ * for JSON requests, since its mapping is more specific.
+ */
+@RestController
+@AllArgsConstructor
+@ConditionalOnProperty(name = "megamarket.import.streaming", havingValue = "true")
+public class StreamingImportController {
+
+    private final StreamingImportService streamingImportService;
+
+    @PostMapping(value = "/imports", consumes = MediaType.APPLICATION_JSON_VALUE)
+    public void importData(HttpServletRequest request) throws IOException {
+        streamingImportService.importData(request.getInputStream());
+    }
+}
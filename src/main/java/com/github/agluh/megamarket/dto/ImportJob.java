@@ -0,0 +1,45 @@
+package com.github.agluh.megamarket.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.github.agluh.megamarket.serialization.InstantSerializer;
+import java.time.Instant;
+import java.util.UUID;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+
+/**
+ * Represents asynchronous import of catalog items.
+ *
+ * <p>Start of processing becomes known once the job is finished.
+ */
+@RequiredArgsConstructor
+@Getter
+public class ImportJob {
+
+    private final UUID id;
+
+    private final ImportJobStatus status;
+
+    private final int items;
+
+    @JsonSerialize(using = InstantSerializer.class)
+    private final Instant updateDate;
+
+    @JsonSerialize(using = InstantSerializer.class)
+    private final Instant createdAt;
+
+    @JsonSerialize(using = InstantSerializer.class)
+    private final Instant startedAt;
+
+    @JsonSerialize(using = InstantSerializer.class)
+    private final Instant finishedAt;
+
+    /**
+     * Error the import is failed with, the same as synchronous import would respond.
+     */
+    private final Error error;
+
+    public record Error(int code, String message) {
+
+    }
+}
@@ -0,0 +1,8 @@
+package com.github.agluh.megamarket.dto;
+
+/**
+ * Represents state of asynchronous import.
+ */
+public enum ImportJobStatus {
+    QUEUED, RUNNING, DONE, FAILED
+}
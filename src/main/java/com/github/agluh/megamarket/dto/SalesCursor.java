@@ -0,0 +1,53 @@
+package com.github.agluh.megamarket.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.UUID;
+
+/**
+ * Position in the list of sales, offers are ordered by update date and identity.
+ *
+ * @param date update date of the last fetched offer
+ * @param id identity of the last fetched offer
+ */
+public record SalesCursor(Instant date, UUID id) {
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * Returns position right after passed offer.
+     */
+    public static SalesCursor after(ShopUnit offer) {
+        return new SalesCursor(offer.getDate(), offer.getId());
+    }
+
+    /**
+     * Parses opaque representation of a cursor.
+     *
+     * @throws IllegalArgumentException in case the cursor is malformed
+     */
+    public static SalesCursor decode(String value) {
+        String decoded = new String(Base64.getUrlDecoder().decode(value), StandardCharsets.UTF_8);
+        int separator = decoded.indexOf(SEPARATOR);
+        if (separator < 0) {
+            throw new IllegalArgumentException("Malformed cursor");
+        }
+
+        try {
+            return new SalesCursor(Instant.parse(decoded.substring(0, separator)),
+                UUID.fromString(decoded.substring(separator + 1)));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Malformed cursor", e);
+        }
+    }
+
+    /**
+     * Returns opaque representation of the cursor.
+     */
+    public String encode() {
+        return Base64.getUrlEncoder().withoutPadding()
+            .encodeToString((date + SEPARATOR + id).getBytes(StandardCharsets.UTF_8));
+    }
+}
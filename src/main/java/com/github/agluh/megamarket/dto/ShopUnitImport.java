@@ -1,7 +1,9 @@
 package com.github.agluh.megamarket.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.github.agluh.megamarket.model.Category;
 import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
 import com.github.agluh.megamarket.validation.ValidShopUnitImport;
 import java.time.Instant;
 import java.util.UUID;
@@ -34,16 +36,18 @@ public class ShopUnitImport {
 
     private Long price;
 
+    @JsonIgnore
     public boolean isCategory() {
         return type == ShopUnitType.CATEGORY;
     }
 
+    @JsonIgnore
     public boolean isOffer() {
         return type == ShopUnitType.OFFER;
     }
 
     public Category toCategory(Instant updateDate) {
-        return new Category(id, parentId, name, price, updateDate);
+        return new Category(id, parentId, name, price, updateDate, PriceAggregate.EMPTY);
     }
 
     public Offer toOffer(Instant updateDate) {
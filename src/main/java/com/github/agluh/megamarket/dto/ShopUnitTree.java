@@ -0,0 +1,313 @@
+package com.github.agluh.megamarket.dto;
+
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.github.agluh.megamarket.serialization.ShopUnitTreeSerializer;
+import java.util.Arrays;
+import java.util.UUID;
+import org.springframework.lang.Nullable;
+
+/**
+ * Represents a catalog element with its subtree in columnar form.
+ *
+ * <p>Every node is an index into parallel arrays of its fields. Nodes are linked
+ * by indices of the parent, the first child and the next sibling, and names
+ * of all nodes are kept in one char array. Compared to a tree of {@link ShopUnit}
+ * it takes several times less heap per node and no objects per node at all.
+ */
+@JsonSerialize(using = ShopUnitTreeSerializer.class)
+public final class ShopUnitTree {
+
+    /**
+     * Index of absent parent, child or sibling.
+     */
+    public static final int NONE = -1;
+
+    private final int size;
+    private final int root;
+    private final UUID rootParentId;
+    private final long[] idMsb;
+    private final long[] idLsb;
+    private final long[] prices;
+    private final boolean[] hasPrice;
+    private final long[] dates;
+    private final boolean[] categories;
+    private final int[] parents;
+    private final int[] firstChildren;
+    private final int[] nextSiblings;
+    private final int[] nameEnds;
+    private final char[] names;
+
+    private ShopUnitTree(Builder builder, int root, int[] parents, int[] firstChildren,
+            int[] nextSiblings) {
+        this.size = builder.size;
+        this.root = root;
+        this.rootParentId = builder.parentId(root);
+        this.idMsb = Arrays.copyOf(builder.idMsb, size);
+        this.idLsb = Arrays.copyOf(builder.idLsb, size);
+        this.prices = Arrays.copyOf(builder.prices, size);
+        this.hasPrice = Arrays.copyOf(builder.hasPrice, size);
+        this.dates = Arrays.copyOf(builder.dates, size);
+        this.categories = Arrays.copyOf(builder.categories, size);
+        this.parents = parents;
+        this.firstChildren = firstChildren;
+        this.nextSiblings = nextSiblings;
+        this.nameEnds = Arrays.copyOf(builder.nameEnds, size);
+        this.names = Arrays.copyOf(builder.names, size == 0 ? 0 : nameEnds[size - 1]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns index of the node which the tree is requested for.
+     */
+    public int root() {
+        return root;
+    }
+
+    public UUID id(int node) {
+        return new UUID(idMsb[node], idLsb[node]);
+    }
+
+    public long idMostSignificantBits(int node) {
+        return idMsb[node];
+    }
+
+    public long idLeastSignificantBits(int node) {
+        return idLsb[node];
+    }
+
+    /**
+     * Returns parent of the root node, which isn't a part of the tree.
+     */
+    @Nullable
+    public UUID rootParentId() {
+        return rootParentId;
+    }
+
+    public int parent(int node) {
+        return parents[node];
+    }
+
+    public int firstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int nextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public boolean isCategory(int node) {
+        return categories[node];
+    }
+
+    public boolean hasPrice(int node) {
+        return hasPrice[node];
+    }
+
+    public long price(int node) {
+        return prices[node];
+    }
+
+    /**
+     * Returns date of the node in milliseconds from the epoch.
+     */
+    public long dateMillis(int node) {
+        return dates[node];
+    }
+
+    /**
+     * Returns array holding names of all nodes, name of the node
+     * is between {@link #nameStart(int)} and {@link #nameEnd(int)}.
+     */
+    public char[] names() {
+        return names;
+    }
+
+    public int nameStart(int node) {
+        return node == 0 ? 0 : nameEnds[node - 1];
+    }
+
+    public int nameEnd(int node) {
+        return nameEnds[node];
+    }
+
+    public String name(int node) {
+        return new String(names, nameStart(node), nameEnd(node) - nameStart(node));
+    }
+
+    /**
+     * Returns number of levels in the tree.
+     */
+    public int depth() {
+        int depth = 0;
+        int level = 1;
+        int node = root;
+        while (true) {
+            depth = Math.max(depth, level);
+            if (firstChildren[node] != NONE) {
+                node = firstChildren[node];
+                level++;
+                continue;
+            }
+
+            while (node != root && nextSiblings[node] == NONE) {
+                node = parents[node];
+                level--;
+            }
+            if (node == root) {
+                return depth;
+            }
+            node = nextSiblings[node];
+        }
+    }
+
+    /**
+     * Collects nodes in any order and links them into a tree.
+     */
+    public static class Builder {
+
+        private static final int INITIAL_CAPACITY = 16;
+
+        private int size;
+        private long[] idMsb = new long[INITIAL_CAPACITY];
+        private long[] idLsb = new long[INITIAL_CAPACITY];
+        private long[] parentMsb = new long[INITIAL_CAPACITY];
+        private long[] parentLsb = new long[INITIAL_CAPACITY];
+        private boolean[] hasParent = new boolean[INITIAL_CAPACITY];
+        private long[] prices = new long[INITIAL_CAPACITY];
+        private boolean[] hasPrice = new boolean[INITIAL_CAPACITY];
+        private long[] dates = new long[INITIAL_CAPACITY];
+        private boolean[] categories = new boolean[INITIAL_CAPACITY];
+        private int[] nameEnds = new int[INITIAL_CAPACITY];
+        private char[] names = new char[INITIAL_CAPACITY * 16];
+
+        /**
+         * Adds a node, its parent may be added before or after it.
+         */
+        public Builder add(UUID id, @Nullable UUID parentId, String name, @Nullable Long price,
+                long dateMillis, ShopUnitType type) {
+            if (size == idMsb.length) {
+                grow();
+            }
+
+            idMsb[size] = id.getMostSignificantBits();
+            idLsb[size] = id.getLeastSignificantBits();
+            if (parentId != null) {
+                parentMsb[size] = parentId.getMostSignificantBits();
+                parentLsb[size] = parentId.getLeastSignificantBits();
+                hasParent[size] = true;
+            }
+            if (price != null) {
+                prices[size] = price;
+                hasPrice[size] = true;
+            }
+            dates[size] = dateMillis;
+            categories[size] = type == ShopUnitType.CATEGORY;
+
+            int nameStart = size == 0 ? 0 : nameEnds[size - 1];
+            int nameEnd = nameStart + name.length();
+            if (nameEnd > names.length) {
+                names = Arrays.copyOf(names, Math.max(names.length * 2, nameEnd));
+            }
+            name.getChars(0, name.length(), names, nameStart);
+            nameEnds[size] = nameEnd;
+
+            size++;
+            return this;
+        }
+
+        public boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Links added nodes, the only node which parent isn't added becomes the root.
+         *
+         * @throws IllegalStateException if no nodes are added, identities aren't unique
+         *     or nodes don't make a single tree
+         */
+        public ShopUnitTree build() {
+            if (size == 0) {
+                throw new IllegalStateException("Tree has no nodes");
+            }
+
+            int[] index = new int[Integer.highestOneBit(size) << 2];
+            Arrays.fill(index, NONE);
+            for (int node = 0; node < size; node++) {
+                int slot = find(index, idMsb[node], idLsb[node]);
+                if (index[slot] != NONE) {
+                    throw new IllegalStateException("Identity is not unique: " + id(node));
+                }
+                index[slot] = node;
+            }
+
+            int root = NONE;
+            int[] parents = new int[size];
+            int[] firstChildren = new int[size];
+            int[] nextSiblings = new int[size];
+            Arrays.fill(firstChildren, NONE);
+            Arrays.fill(nextSiblings, NONE);
+            for (int node = size - 1; node >= 0; node--) {
+                int parent = hasParent[node]
+                    ? index[find(index, parentMsb[node], parentLsb[node])]
+                    : NONE;
+                parents[node] = parent;
+                if (parent == NONE) {
+                    if (root != NONE) {
+                        throw new IllegalStateException("Nodes have several roots");
+                    }
+                    root = node;
+                } else {
+                    nextSiblings[node] = firstChildren[parent];
+                    firstChildren[parent] = node;
+                }
+            }
+
+            if (root == NONE) {
+                throw new IllegalStateException("Nodes have no root");
+            }
+
+            return new ShopUnitTree(this, root, parents, firstChildren, nextSiblings);
+        }
+
+        /**
+         * Returns slot of the identity in open addressing index,
+         * the slot is either taken by the identity or free.
+         */
+        private int find(int[] index, long msb, long lsb) {
+            int mask = index.length - 1;
+            long hash = (msb ^ lsb) * 0x9E3779B97F4A7C15L;
+            int slot = (int) (hash >>> 32) & mask;
+            while (index[slot] != NONE
+                    && (idMsb[index[slot]] != msb || idLsb[index[slot]] != lsb)) {
+                slot = (slot + 1) & mask;
+            }
+
+            return slot;
+        }
+
+        private UUID id(int node) {
+            return new UUID(idMsb[node], idLsb[node]);
+        }
+
+        private UUID parentId(int node) {
+            return hasParent[node] ? new UUID(parentMsb[node], parentLsb[node]) : null;
+        }
+
+        private void grow() {
+            int capacity = idMsb.length * 2;
+            idMsb = Arrays.copyOf(idMsb, capacity);
+            idLsb = Arrays.copyOf(idLsb, capacity);
+            parentMsb = Arrays.copyOf(parentMsb, capacity);
+            parentLsb = Arrays.copyOf(parentLsb, capacity);
+            hasParent = Arrays.copyOf(hasParent, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            hasPrice = Arrays.copyOf(hasPrice, capacity);
+            dates = Arrays.copyOf(dates, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            nameEnds = Arrays.copyOf(nameEnds, capacity);
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package com.github.agluh.megamarket.model;
+
+import java.util.UUID;
+
+/**
+ * Mismatch between stored and actual price aggregate of a category.
+ */
+public record AggregateDrift(UUID categoryId, PriceAggregate stored, PriceAggregate actual) {
+
+}
@@ -0,0 +1,18 @@
+package com.github.agluh.megamarket.model;
+
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Published when catalog elements are changed within a transaction.
+ *
+ * <p>Upstream categories of passed elements are considered changed too,
+ * both before and after the change.
+ *
+ * @param nodeIds identities of explicitly changed elements, a deleted category
+ *     is passed together with all elements of its subtree
+ * @param parentIds identities of both previous and current parents of changed elements
+ */
+public record CatalogChangedEvent(Collection<UUID> nodeIds, Collection<UUID> parentIds) {
+
+}
@@ -24,4 +24,7 @@ public class Category {
 
     @Setter
     private Instant date;
+
+    @Setter
+    private PriceAggregate aggregate;
 }
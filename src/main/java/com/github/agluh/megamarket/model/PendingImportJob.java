@@ -0,0 +1,15 @@
+package com.github.agluh.megamarket.model;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Queued import taken by a worker.
+ *
+ * @param payload serialized items to be imported
+ * @param attempts number of attempts failed by concurrency failures
+ */
+public record PendingImportJob(UUID id, Instant updateDate, Instant createdAt, byte[] payload,
+                               int attempts) {
+
+}
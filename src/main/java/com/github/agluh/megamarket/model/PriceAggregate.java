@@ -0,0 +1,35 @@
+package com.github.agluh.megamarket.model;
+
+/**
+ * Sum and count of offer prices within a subtree of catalog.
+ *
+ * <p>Being used both as stored aggregate of a category and as
+ * a signed delta that should be applied to upstream categories.
+ */
+public record PriceAggregate(long sum, long count) {
+
+    public static final PriceAggregate EMPTY = new PriceAggregate(0, 0);
+
+    public static PriceAggregate of(long price) {
+        return new PriceAggregate(price, 1);
+    }
+
+    public PriceAggregate plus(PriceAggregate other) {
+        return new PriceAggregate(sum + other.sum, count + other.count);
+    }
+
+    public PriceAggregate negate() {
+        return new PriceAggregate(-sum, -count);
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    /**
+     * Returns floored average price or {@code null} if there are no offers.
+     */
+    public Long averagePrice() {
+        return count > 0 ? Math.floorDiv(sum, count) : null;
+    }
+}
@@ -1,8 +1,13 @@
 package com.github.agluh.megamarket.repository;
 
+import com.github.agluh.megamarket.model.AggregateDrift;
 import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import java.time.Instant;
 import java.util.Collection;
+import java.util.Map;
 import java.util.UUID;
+import org.springframework.lang.Nullable;
 
 /**
  * Repository for categories.
@@ -11,9 +16,70 @@ public interface CategoryRepository {
 
     void save(Collection<Category> categories);
 
+    /**
+     * Copies categories into staging table under passed identity. Being called outside
+     * of a transaction, rows are committed at once, so a large import may be staged
+     * by several connections in parallel.
+     */
+    void stage(UUID stageId, Collection<Category> categories);
+
+    /**
+     * Upserts categories staged under passed identity, their parents should be stored already.
+     *
+     * @throws com.github.agluh.megamarket.repository.exception.InvalidIdentityException
+     *     in case a parent isn't found
+     */
+    void mergeStaged(UUID stageId);
+
+    void deleteStaged(Collection<UUID> stageIds);
+
     void delete(UUID categoryId);
 
     Collection<Category> findByIds(Collection<UUID> ids);
 
     Collection<Category> getAllUpstreamCategories(Collection<UUID> ids);
+
+    /**
+     * Returns identities of the category and all categories and offers of its subtree.
+     */
+    Collection<UUID> getSubtreeIds(UUID categoryId);
+
+    /**
+     * Adds new categories to the hierarchy index and sets their materialized paths.
+     * Parents should go before their children.
+     */
+    void addToHierarchy(Collection<Category> categories);
+
+    /**
+     * Moves whole subtree of already stored category under its new parent in the hierarchy index
+     * and rewrites materialized paths of the subtree, including offers from it.
+     *
+     * @throws com.github.agluh.megamarket.repository.exception.InvalidIdentityException
+     *     in case new parent belongs to the subtree
+     */
+    void moveInHierarchy(Category category);
+
+    /**
+     * Locks trees of the catalog by identities of their roots until end of the transaction.
+     * Locks are taken in a fixed order, so transactions locking several trees
+     * don't deadlock each other.
+     */
+    void lockTrees(Collection<UUID> rootIds);
+
+    /**
+     * Adds signed deltas to aggregates of passed categories and all their upstream categories.
+     * Prices are recalculated accordingly, dates are updated only if passed.
+     */
+    void applyAggregateDeltas(Map<UUID, PriceAggregate> deltas, @Nullable Instant updateDate);
+
+    /**
+     * Recalculates aggregates and prices of passed categories and all their upstream categories
+     * from scratch. Dates are updated only if passed.
+     */
+    void recomputePrices(Collection<UUID> ids, @Nullable Instant updateDate);
+
+    /**
+     * Recalculates aggregates of all categories from scratch and returns mismatched ones.
+     */
+    Collection<AggregateDrift> findAggregateDrift();
 }
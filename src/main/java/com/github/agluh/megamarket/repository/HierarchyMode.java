@@ -0,0 +1,25 @@
+package com.github.agluh.megamarket.repository;
+
+/**
+ * Represents a way the hierarchy of catalog is queried.
+ *
+ * <p>All the structures are maintained regardless of chosen mode,
+ * so it could be switched without any data migration.
+ */
+public enum HierarchyMode {
+
+    /**
+     * Recursive walking by parent references.
+     */
+    ADJACENCY_LIST,
+
+    /**
+     * Indexed joins on ancestor/descendant pairs.
+     */
+    CLOSURE_TABLE,
+
+    /**
+     * Range scans over materialized paths.
+     */
+    MATERIALIZED_PATH
+}
@@ -0,0 +1,45 @@
+package com.github.agluh.megamarket.repository;
+
+import com.github.agluh.megamarket.dto.ImportJob;
+import com.github.agluh.megamarket.model.PendingImportJob;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Repository for queue of asynchronous imports.
+ */
+public interface ImportJobRepository {
+
+    /**
+     * Queues an import touching passed trees of the catalog.
+     */
+    void add(UUID jobId, Collection<UUID> treeIds, int items, Instant updateDate,
+        Instant createdAt, byte[] payload);
+
+    /**
+     * Returns a job, queued job is reported as running while it's locked by a worker.
+     */
+    Optional<ImportJob> findById(UUID jobId);
+
+    /**
+     * Locks the earliest queued job which isn't locked yet and doesn't share trees
+     * with earlier queued jobs. Should be called within a transaction,
+     * which then holds the job until it's finished.
+     */
+    Optional<PendingImportJob> lockNext();
+
+    /**
+     * Counts a failed attempt of a queued job, which is left queued.
+     */
+    void addAttempt(UUID jobId);
+
+    /**
+     * Finishes a queued job and drops its payload, a job finished already is left as is.
+     *
+     * @param errorCode response code of failed import or null if it succeeded
+     */
+    void finish(UUID jobId, Instant startedAt, Instant finishedAt, Integer errorCode,
+        String errorMessage);
+}
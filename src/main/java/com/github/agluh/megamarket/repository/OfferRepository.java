@@ -11,9 +11,23 @@ public interface OfferRepository {
 
     void save(Collection<Offer> offers);
 
+    /**
+     * Copies offers into staging table under passed identity, the same way
+     * as {@link CategoryRepository#stage(UUID, Collection)} does.
+     */
+    void stage(UUID stageId, Collection<Offer> offers);
+
+    /**
+     * Upserts offers staged under passed identity, their categories should be stored already.
+     *
+     * @throws com.github.agluh.megamarket.repository.exception.InvalidIdentityException
+     *     in case a category isn't found
+     */
+    void mergeStaged(UUID stageId);
+
+    void deleteStaged(Collection<UUID> stageIds);
+
     void delete(UUID offerId);
 
     Collection<Offer> findByIds(Collection<UUID> ids);
-
-    Long getAvgPriceOfCategory(UUID categoryId);
 }
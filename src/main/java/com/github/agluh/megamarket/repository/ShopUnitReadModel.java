@@ -1,10 +1,15 @@
 package com.github.agluh.megamarket.repository;
 
+import com.github.agluh.megamarket.dto.SalesCursor;
 import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
+import org.springframework.lang.Nullable;
 
 /**
  * Read model for abstract shop elements.
@@ -21,8 +26,29 @@ public interface ShopUnitReadModel {
      */
     Collection<ShopUnit> getNodeWithSubtree(UUID nodeId);
 
+    /**
+     * Returns a node with its subtree in columnar form if the node is found.
+     */
+    Optional<ShopUnitTree> getSubtree(UUID nodeId);
+
     /**
      * Returns list of offers updated between two dates.
      */
     Collection<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding);
+
+    /**
+     * Passes offers updated between two dates to consumer one by one
+     * without loading all of them into memory.
+     * Should be called within a transaction, so rows are fetched by a cursor.
+     */
+    void streamOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+        Consumer<ShopUnit> consumer);
+
+    /**
+     * Returns a page of offers updated between two dates ordered by update date and identity.
+     *
+     * @param after position of the last offer of previous page, if any
+     */
+    List<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+        @Nullable SalesCursor after, int limit);
 }
@@ -0,0 +1,47 @@
+package com.github.agluh.megamarket.repository;
+
+import java.time.YearMonth;
+import java.util.Collection;
+import java.util.UUID;
+
+/**
+ * Repository for history of catalog items.
+ */
+public interface StatisticsRepository {
+
+    /**
+     * Appends current state of offers to their history.
+     */
+    void recordOffers(Collection<UUID> offerIds);
+
+    /**
+     * Records current state of categories and all their upstream categories.
+     * Only a single history entry is kept for a category per update date.
+     */
+    void recordCategoriesWithAncestors(Collection<UUID> categoryIds);
+
+    /**
+     * Returns months which have partitions in any of statistics tables.
+     */
+    Collection<YearMonth> findPartitions();
+
+    /**
+     * Returns months which rows are kept in default partitions.
+     */
+    Collection<YearMonth> findMonthsWithoutPartition();
+
+    /**
+     * Creates partitions of statistics tables for a month,
+     * rows of the month are moved there from default partitions.
+     *
+     * @return true if any partition is created
+     */
+    boolean createPartitions(YearMonth month);
+
+    /**
+     * Drops partitions of statistics tables for a month.
+     *
+     * @param archive if true, partitions are detached and kept as regular tables
+     */
+    void removePartitions(YearMonth month, boolean archive);
+}
@@ -0,0 +1,44 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Common steps of bulk loading by COPY into staging tables.
+ */
+final class BulkLoadSupport {
+
+    private BulkLoadSupport() {
+    }
+
+    /**
+     * Bulk load is used for large enough collections within a transaction only,
+     * so staged rows of a failed import are rolled back together with it.
+     */
+    static boolean isApplicable(int rows, int threshold) {
+        return rows >= threshold && TransactionSynchronizationManager.isActualTransactionActive();
+    }
+
+    static void copy(JdbcTemplate jdbcTemplate, String copySql, RowsWriter rowsWriter) {
+        jdbcTemplate.execute((ConnectionCallback<Long>) con -> {
+            try (PgBinaryCopyWriter writer = new PgBinaryCopyWriter(con, copySql)) {
+                rowsWriter.write(writer);
+                return writer.finish();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Writes all rows to be copied.
+     */
+    @FunctionalInterface
+    interface RowsWriter {
+
+        void write(PgBinaryCopyWriter writer) throws IOException;
+    }
+}
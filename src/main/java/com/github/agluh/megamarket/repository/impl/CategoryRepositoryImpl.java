@@ -1,21 +1,27 @@
 package com.github.agluh.megamarket.repository.impl;
 
+import com.github.agluh.megamarket.model.AggregateDrift;
 import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.PriceAggregate;
 import com.github.agluh.megamarket.repository.CategoryRepository;
 import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import io.micrometer.core.annotation.Timed;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
@@ -23,44 +29,244 @@ import org.springframework.stereotype.Component;
  * DB based implementation of category's repository.
  */
 @Component
-@AllArgsConstructor
+@Timed("megamarket.repository")
 public class CategoryRepositoryImpl implements CategoryRepository {
 
+    /* Price and aggregates are maintained separately, so they aren't overwritten on conflict */
     private static final String INSERT_CATEGORIES = """
         INSERT INTO categories (category_id, parent_id, category_name, price, last_update)
         VALUES (?, ?, ?, ?, ?)
         ON CONFLICT (category_id) DO UPDATE
         SET parent_id = EXCLUDED.parent_id,
             category_name = EXCLUDED.category_name,
-            price = EXCLUDED.price,
             last_update = EXCLUDED.last_update
         """;
-    private static final String DELETE_CATEGORY =
-        "DELETE FROM categories WHERE category_id = ?";
-    private static final String SELECT_CATEGORIES = """
+    private static final String COPY_CATEGORIES = """
+        COPY categories_staging (import_id, category_id, parent_id, category_name, price,
+            last_update)
+        FROM STDIN (FORMAT BINARY)
+        """;
+    private static final String MERGE_CATEGORIES = """
+        INSERT INTO categories (category_id, parent_id, category_name, price, last_update)
         SELECT category_id, parent_id, category_name, price, last_update
+        FROM categories_staging
+        WHERE import_id = ?
+        ON CONFLICT (category_id) DO UPDATE
+        SET parent_id = EXCLUDED.parent_id,
+            category_name = EXCLUDED.category_name,
+            last_update = EXCLUDED.last_update
+        """;
+    private static final String DELETE_STAGED_CATEGORIES =
+        "DELETE FROM categories_staging WHERE import_id IN (:ids)";
+    /* Subtree is deleted at once, so we don't rely on the chain of cascades */
+    private static final String DELETE_CATEGORY = """
+        DELETE FROM categories
+        WHERE category_id IN (
+            SELECT descendant_id
+            FROM category_closure
+            WHERE ancestor_id = ?
+        )
+        """;
+    private static final String SELECT_CATEGORIES = """
+        SELECT category_id, parent_id, category_name, price, last_update, offer_sum, offer_count
         FROM categories
         WHERE category_id IN (:ids)
         """;
     private static final String SELECT_PARENTS = """
-        WITH RECURSIVE parents AS (
-            SELECT category_id, parent_id, category_name, price, last_update
+        SELECT category_id, parent_id, category_name, price, last_update, offer_sum, offer_count
+        FROM categories
+        WHERE category_id IN (
+            SELECT ancestor_id
+            FROM category_closure
+            WHERE descendant_id IN (:ids)
+        )
+        """;
+    private static final String SELECT_SUBTREE_IDS = """
+        SELECT descendant_id AS element_id
+        FROM category_closure
+        WHERE ancestor_id = :id
+        UNION ALL
+            SELECT o.offer_id
+            FROM offers o
+            INNER JOIN category_closure cc ON cc.descendant_id = o.category_id
+            WHERE cc.ancestor_id = :id
+        """;
+    private static final String INSERT_CLOSURE = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        SELECT ancestor_id, ?, depth + 1
+        FROM category_closure
+        WHERE descendant_id = ?
+        UNION ALL
+            SELECT ?, ?, 0
+        """;
+    /* Detaches the subtree from all its former ancestors */
+    private static final String DELETE_OUTER_CLOSURE = """
+        DELETE FROM category_closure
+        WHERE descendant_id IN (
+                SELECT descendant_id
+                FROM category_closure
+                WHERE ancestor_id = :id
+            )
+            AND ancestor_id NOT IN (
+                SELECT descendant_id
+                FROM category_closure
+                WHERE ancestor_id = :id
+            )
+        """;
+    /* Attaches the subtree to every ancestor of its new parent */
+    private static final String INSERT_OUTER_CLOSURE = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        SELECT a.ancestor_id, d.descendant_id, a.depth + d.depth + 1
+        FROM category_closure a
+        CROSS JOIN category_closure d
+        WHERE a.descendant_id = :parent_id
+            AND d.ancestor_id = :id
+        """;
+    private static final String UPDATE_PATH = """
+        UPDATE categories c
+        SET path = COALESCE((SELECT p.path FROM categories p WHERE p.category_id = c.parent_id),
+            ''::bytea) || '/'::bytea || uuid_send(c.category_id)
+        WHERE c.category_id = ?
+        """;
+    /* Rewrites prefix of paths for the whole subtree, including offers from it */
+    private static final String MOVE_PATHS = """
+        WITH moved AS (
+            SELECT c.path AS old_path,
+                COALESCE(p.path, ''::bytea) || '/'::bytea || uuid_send(c.category_id) AS new_path
+            FROM categories c
+            LEFT JOIN categories p ON p.category_id = c.parent_id
+            WHERE c.category_id = :id
+        ),
+        moved_offers AS (
+            UPDATE offers o
+            SET path = moved.new_path || substring(o.path FROM length(moved.old_path) + 1)
+            FROM moved
+            WHERE o.path >= moved.old_path AND o.path < moved.old_path || '0'::bytea
+        )
+        UPDATE categories c
+        SET path = moved.new_path || substring(c.path FROM length(moved.old_path) + 1)
+        FROM moved
+        WHERE c.path >= moved.old_path AND c.path < moved.old_path || '0'::bytea
+        """;
+    /* Upstream rows are locked in order of ids, so concurrent updates of shared ancestors
+    wait for each other instead of deadlocking */
+    private static final String APPLY_AGGREGATE_DELTAS = """
+        WITH deltas AS (
+            SELECT *
+            FROM unnest(?::uuid[], ?::bigint[], ?::bigint[])
+                AS d (category_id, offer_sum, offer_count)
+        ),
+        totals AS (
+            SELECT cc.ancestor_id AS category_id, SUM(d.offer_sum)::bigint AS offer_sum,
+                SUM(d.offer_count)::bigint AS offer_count
+            FROM deltas d
+            INNER JOIN category_closure cc ON cc.descendant_id = d.category_id
+            GROUP BY cc.ancestor_id
+        ),
+        locked AS (
+            SELECT c.category_id
+            FROM categories c
+            INNER JOIN totals ON totals.category_id = c.category_id
+            ORDER BY c.category_id
+            FOR NO KEY UPDATE OF c
+        )
+        UPDATE categories c
+        SET offer_sum = c.offer_sum + totals.offer_sum,
+            offer_count = c.offer_count + totals.offer_count,
+            price = CASE WHEN c.offer_count + totals.offer_count > 0
+                THEN (c.offer_sum + totals.offer_sum) / (c.offer_count + totals.offer_count)
+                END,
+            last_update = COALESCE(?, c.last_update)
+        FROM totals
+        INNER JOIN locked ON locked.category_id = totals.category_id
+        WHERE c.category_id = totals.category_id
+        """;
+    private static final String RECOMPUTE_PRICES = """
+        WITH affected AS (
+            SELECT c.category_id AS ancestor_id
+            FROM categories c
+            WHERE c.category_id IN (
+                SELECT ancestor_id
+                FROM category_closure
+                WHERE descendant_id IN (:ids)
+            )
+            ORDER BY c.category_id
+            FOR NO KEY UPDATE
+        ),
+        totals AS (
+            SELECT affected.ancestor_id, COALESCE(SUM(o.price), 0)::bigint AS offer_sum,
+                COUNT(o.offer_id) AS offer_count
+            FROM affected
+            INNER JOIN category_closure cc ON cc.ancestor_id = affected.ancestor_id
+            LEFT JOIN offers o ON o.category_id = cc.descendant_id
+            GROUP BY affected.ancestor_id
+        )
+        UPDATE categories c
+        SET offer_sum = totals.offer_sum,
+            offer_count = totals.offer_count,
+            price = CASE WHEN totals.offer_count > 0
+                THEN totals.offer_sum / totals.offer_count
+                END,
+            last_update = COALESCE(:date, c.last_update)
+        FROM totals
+        WHERE c.category_id = totals.ancestor_id
+        """;
+    /* Volatile functions are evaluated after sorting, so locks are taken in order of keys */
+    private static final String LOCK_TREES = """
+        SELECT pg_advisory_xact_lock(t.lock_key)
+        FROM unnest(?::bigint[]) WITH ORDINALITY AS t (lock_key, n)
+        ORDER BY t.n
+        """;
+    /* Intentionally walks adjacency list rather than closure table, so the check
+    doesn't depend on any derived data */
+    private static final String SELECT_AGGREGATE_DRIFT = """
+        WITH RECURSIVE tree AS (
+            SELECT category_id AS root_id, category_id
             FROM categories
-            WHERE category_id IN (:ids) -- Start recursion here
             UNION
-                SELECT c.category_id, c.parent_id, c.category_name, c.price, c.last_update
+                SELECT tree.root_id, c.category_id
                 FROM categories c
-                INNER JOIN parents ON parents.parent_id = c.category_id
+                INNER JOIN tree ON tree.category_id = c.parent_id
+        ),
+        actual AS (
+            SELECT tree.root_id, COALESCE(SUM(o.price), 0)::bigint AS offer_sum,
+                COUNT(o.offer_id) AS offer_count
+            FROM tree
+            LEFT JOIN offers o ON o.category_id = tree.category_id
+            GROUP BY tree.root_id
         )
-        SELECT category_id, parent_id, category_name, price, last_update
-        FROM parents
+        SELECT c.category_id, c.offer_sum, c.offer_count,
+            actual.offer_sum AS actual_sum, actual.offer_count AS actual_count
+        FROM categories c
+        INNER JOIN actual ON actual.root_id = c.category_id
+        WHERE c.offer_sum <> actual.offer_sum
+            OR c.offer_count <> actual.offer_count
+            OR c.price IS DISTINCT FROM (CASE WHEN actual.offer_count > 0
+                THEN actual.offer_sum / actual.offer_count END)
         """;
 
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final JdbcTemplate jdbcTemplate;
+    private final int bulkLoadThreshold;
 
+    public CategoryRepositoryImpl(NamedParameterJdbcTemplate namedJdbcTemplate,
+            JdbcTemplate jdbcTemplate,
+            @Value("${megamarket.bulk-load.threshold}") int bulkLoadThreshold) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bulkLoadThreshold = bulkLoadThreshold;
+    }
+
+    /**
+     * Saves categories by batch of upserts, or by bulk load for large collections.
+     */
     @Override
     public void save(Collection<Category> categories) {
+        if (BulkLoadSupport.isApplicable(categories.size(), bulkLoadThreshold)) {
+            bulkSave(categories);
+            return;
+        }
+
         List<Category> list = categories.stream().toList();
         try {
             jdbcTemplate.batchUpdate(INSERT_CATEGORIES, new BatchPreparedStatementSetter() {
@@ -84,6 +290,48 @@ public class CategoryRepositoryImpl implements CategoryRepository {
         }
     }
 
+    private void bulkSave(Collection<Category> categories) {
+        UUID stageId = UUID.randomUUID();
+        stage(stageId, categories);
+        mergeStaged(stageId);
+        deleteStaged(List.of(stageId));
+    }
+
+    @Override
+    public void stage(UUID stageId, Collection<Category> categories) {
+        BulkLoadSupport.copy(jdbcTemplate, COPY_CATEGORIES, writer -> {
+            for (Category category : categories) {
+                writer.startRow(6);
+                writer.writeUuid(stageId);
+                writer.writeUuid(category.getId());
+                writer.writeUuid(category.getParentId());
+                writer.writeText(category.getName());
+                if (category.getPrice() != null) {
+                    writer.writeLong(category.getPrice());
+                } else {
+                    writer.writeNull();
+                }
+                writer.writeTimestamp(category.getDate());
+            }
+        });
+    }
+
+    @Override
+    public void mergeStaged(UUID stageId) {
+        try {
+            jdbcTemplate.update(MERGE_CATEGORIES, stageId);
+        } catch (DataIntegrityViolationException e) {
+            throw new InvalidIdentityException(e);
+        }
+    }
+
+    @Override
+    public void deleteStaged(Collection<UUID> stageIds) {
+        if (!stageIds.isEmpty()) {
+            namedJdbcTemplate.update(DELETE_STAGED_CATEGORIES, Map.of("ids", stageIds));
+        }
+    }
+
     @Override
     public void delete(UUID categoryId) {
         jdbcTemplate.update(DELETE_CATEGORY, categoryId);
@@ -107,13 +355,134 @@ public class CategoryRepositoryImpl implements CategoryRepository {
         return namedJdbcTemplate.query(SELECT_PARENTS, Map.of("ids", ids), this::mapRowToObject);
     }
 
+    @Override
+    public Collection<UUID> getSubtreeIds(UUID categoryId) {
+        return namedJdbcTemplate.query(SELECT_SUBTREE_IDS, Map.of("id", categoryId),
+            (rs, rowNum) -> rs.getObject("element_id", UUID.class));
+    }
+
+    @Override
+    public void addToHierarchy(Collection<Category> categories) {
+        if (categories.isEmpty()) {
+            return;
+        }
+
+        List<Category> list = categories.stream().toList();
+        jdbcTemplate.batchUpdate(INSERT_CLOSURE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                Category category = list.get(i);
+                ps.setObject(1, category.getId());
+                ps.setObject(2, category.getParentId());
+                ps.setObject(3, category.getId());
+                ps.setObject(4, category.getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return list.size();
+            }
+        });
+        jdbcTemplate.batchUpdate(UPDATE_PATH, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                ps.setObject(1, list.get(i).getId());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return list.size();
+            }
+        });
+    }
+
+    @Override
+    public void moveInHierarchy(Category category) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("id", category.getId())
+            .addValue("parent_id", category.getParentId());
+        namedJdbcTemplate.update(DELETE_OUTER_CLOSURE, params);
+
+        if (category.getParentId() != null) {
+            try {
+                namedJdbcTemplate.update(INSERT_OUTER_CLOSURE, params);
+            } catch (DataIntegrityViolationException e) {
+                throw new InvalidIdentityException(e);
+            }
+        }
+
+        namedJdbcTemplate.update(MOVE_PATHS, params);
+    }
+
+    @Override
+    public void lockTrees(Collection<UUID> rootIds) {
+        if (rootIds.isEmpty()) {
+            return;
+        }
+
+        Object[] keys = rootIds.stream()
+            .map(id -> id.getMostSignificantBits() ^ id.getLeastSignificantBits())
+            .distinct()
+            .sorted()
+            .toArray();
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(LOCK_TREES);
+            ps.setArray(1, con.createArrayOf("bigint", keys));
+            return ps;
+        }, rs -> {
+        });
+    }
+
+    @Override
+    public void applyAggregateDeltas(Map<UUID, PriceAggregate> deltas, Instant updateDate) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+
+        List<Map.Entry<UUID, PriceAggregate>> entries = List.copyOf(deltas.entrySet());
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(APPLY_AGGREGATE_DELTAS);
+            ps.setArray(1, con.createArrayOf("uuid",
+                entries.stream().map(Map.Entry::getKey).toArray()));
+            ps.setArray(2, con.createArrayOf("bigint",
+                entries.stream().map(e -> e.getValue().sum()).toArray()));
+            ps.setArray(3, con.createArrayOf("bigint",
+                entries.stream().map(e -> e.getValue().count()).toArray()));
+            ps.setTimestamp(4, updateDate != null ? Timestamp.from(updateDate) : null);
+            return ps;
+        });
+    }
+
+    @Override
+    public void recomputePrices(Collection<UUID> ids, Instant updateDate) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+            .addValue("ids", ids)
+            .addValue("date", updateDate != null ? Timestamp.from(updateDate) : null,
+                Types.TIMESTAMP);
+        namedJdbcTemplate.update(RECOMPUTE_PRICES, params);
+    }
+
+    @Override
+    public Collection<AggregateDrift> findAggregateDrift() {
+        return jdbcTemplate.query(SELECT_AGGREGATE_DRIFT, (rs, rowNum) -> new AggregateDrift(
+            rs.getObject("category_id", UUID.class),
+            new PriceAggregate(rs.getLong("offer_sum"), rs.getLong("offer_count")),
+            new PriceAggregate(rs.getLong("actual_sum"), rs.getLong("actual_count"))
+        ));
+    }
+
     private Category mapRowToObject(ResultSet rs, int rowNum) throws SQLException {
         return new Category(
             rs.getObject("category_id", UUID.class),
             rs.getObject("parent_id", UUID.class),
             rs.getString("category_name"),
             rs.getObject("price", Long.class),
-            rs.getTimestamp("last_update").toInstant()
+            rs.getTimestamp("last_update").toInstant(),
+            new PriceAggregate(rs.getLong("offer_sum"), rs.getLong("offer_count"))
         );
     }
 }
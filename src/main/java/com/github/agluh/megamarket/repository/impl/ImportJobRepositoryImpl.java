@@ -0,0 +1,144 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import com.github.agluh.megamarket.dto.ImportJob;
+import com.github.agluh.megamarket.dto.ImportJobStatus;
+import com.github.agluh.megamarket.model.PendingImportJob;
+import com.github.agluh.megamarket.repository.ImportJobRepository;
+import io.micrometer.core.annotation.Timed;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Optional;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * DB based implementation of repository for queue of asynchronous imports.
+ *
+ * <p>A worker locks a job for the whole import, so a running job is told
+ * from a queued one by trying to lock it without waiting.
+ */
+@Component
+@Timed("megamarket.repository")
+@AllArgsConstructor
+public class ImportJobRepositoryImpl implements ImportJobRepository {
+
+    private static final String INSERT_JOB = """
+        INSERT INTO import_jobs (job_id, status, tree_ids, items, update_date, created_at,
+            payload)
+        VALUES (?, 'QUEUED', ?, ?, ?, ?, ?)
+        """;
+    private static final String SELECT_JOB = """
+        SELECT j.job_id, j.status, j.items, j.update_date, j.created_at, j.started_at,
+            j.finished_at, j.error_code, j.error_message,
+            j.status = 'QUEUED' AND NOT EXISTS (
+                SELECT 1
+                FROM import_jobs l
+                WHERE l.job_id = j.job_id
+                FOR KEY SHARE SKIP LOCKED
+            ) AS locked
+        FROM import_jobs j
+        WHERE j.job_id = ?
+        """;
+    private static final String LOCK_NEXT_JOB = """
+        SELECT j.job_id, j.update_date, j.created_at, j.payload, j.attempts
+        FROM import_jobs j
+        WHERE j.status = 'QUEUED'
+            AND NOT EXISTS (
+                SELECT 1
+                FROM import_jobs e
+                WHERE e.status = 'QUEUED'
+                    AND e.seq < j.seq
+                    AND e.tree_ids && j.tree_ids
+            )
+        ORDER BY j.seq
+        LIMIT 1
+        FOR UPDATE OF j SKIP LOCKED
+        """;
+    private static final String ADD_ATTEMPT = """
+        UPDATE import_jobs
+        SET attempts = attempts + 1
+        WHERE job_id = ?
+            AND status = 'QUEUED'
+        """;
+    private static final String FINISH_JOB = """
+        UPDATE import_jobs
+        SET status = ?, payload = NULL, started_at = ?, finished_at = ?,
+            error_code = ?, error_message = ?
+        WHERE job_id = ?
+            AND status = 'QUEUED'
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void add(UUID jobId, Collection<UUID> treeIds, int items, Instant updateDate,
+            Instant createdAt, byte[] payload) {
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(INSERT_JOB);
+            ps.setObject(1, jobId);
+            ps.setArray(2, con.createArrayOf("uuid", treeIds.toArray()));
+            ps.setInt(3, items);
+            ps.setTimestamp(4, Timestamp.from(updateDate));
+            ps.setTimestamp(5, Timestamp.from(createdAt));
+            ps.setBytes(6, payload);
+            return ps;
+        });
+    }
+
+    @Override
+    public Optional<ImportJob> findById(UUID jobId) {
+        return jdbcTemplate.query(SELECT_JOB, this::mapRowToObject, jobId).stream().findAny();
+    }
+
+    @Override
+    public Optional<PendingImportJob> lockNext() {
+        return jdbcTemplate.query(LOCK_NEXT_JOB, (rs, rowNum) -> new PendingImportJob(
+            rs.getObject("job_id", UUID.class),
+            rs.getTimestamp("update_date").toInstant(),
+            rs.getTimestamp("created_at").toInstant(),
+            rs.getBytes("payload"),
+            rs.getInt("attempts")
+        )).stream().findAny();
+    }
+
+    @Override
+    public void addAttempt(UUID jobId) {
+        jdbcTemplate.update(ADD_ATTEMPT, jobId);
+    }
+
+    @Override
+    public void finish(UUID jobId, Instant startedAt, Instant finishedAt, Integer errorCode,
+            String errorMessage) {
+        ImportJobStatus status = errorCode == null ? ImportJobStatus.DONE : ImportJobStatus.FAILED;
+        jdbcTemplate.update(FINISH_JOB, status.name(), Timestamp.from(startedAt),
+            Timestamp.from(finishedAt), errorCode, errorMessage, jobId);
+    }
+
+    private ImportJob mapRowToObject(ResultSet rs, int rowNum) throws SQLException {
+        ImportJobStatus status = rs.getBoolean("locked")
+            ? ImportJobStatus.RUNNING
+            : ImportJobStatus.valueOf(rs.getString("status"));
+        Integer errorCode = rs.getObject("error_code", Integer.class);
+
+        return new ImportJob(
+            rs.getObject("job_id", UUID.class),
+            status,
+            rs.getInt("items"),
+            rs.getTimestamp("update_date").toInstant(),
+            rs.getTimestamp("created_at").toInstant(),
+            toInstant(rs.getTimestamp("started_at")),
+            toInstant(rs.getTimestamp("finished_at")),
+            errorCode != null ? new ImportJob.Error(errorCode, rs.getString("error_message")) : null
+        );
+    }
+
+    private static Instant toInstant(Timestamp timestamp) {
+        return timestamp != null ? timestamp.toInstant() : null;
+    }
+}
@@ -0,0 +1,368 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import com.github.agluh.megamarket.dto.SalesCursor;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import com.github.agluh.megamarket.repository.ShopUnitReadModel;
+import io.micrometer.core.annotation.Timed;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import javax.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * In-memory index of the whole catalog.
+ *
+ * <p>Nodes are loaded from DB at startup and kept linked with their parents
+ * and children, so reading of a subtree doesn't touch the database at all.
+ * After every committed change, changed elements and their upstream
+ * categories (both old and new ones) are reloaded from DB.
+ * Offers updated in a range of dates are still read from DB.
+ * The index is eventually consistent, so it serves subtrees only,
+ * while lookups deciding what to write go to DB.
+ */
+@Slf4j
+@Component
+@Timed("megamarket.repository")
+@ConditionalOnProperty(name = "megamarket.catalog-index.enabled", havingValue = "true")
+public class InMemoryShopUnitReadModel implements ShopUnitReadModel {
+
+    private static final String SELECT_ALL_NODES = """
+        SELECT
+            category_id AS element_id,
+            parent_id,
+            category_name AS element_name,
+            'CATEGORY' AS element_type,
+            price,
+            last_update
+        FROM categories
+
+        UNION ALL
+            SELECT
+                offer_id AS element_id,
+                category_id AS parent_id,
+                offer_name AS element_name,
+                'OFFER' AS element_type,
+                price,
+                last_update
+            FROM offers
+        """;
+    private static final String SELECT_NODES_WITH_PARENTS = """
+        WITH nodes AS (
+            SELECT unnest(?::uuid[]) AS node_id
+        ),
+
+        /* Upstream categories of passed categories and offers */
+        parents AS (
+            SELECT cc.ancestor_id AS node_id
+            FROM nodes
+            INNER JOIN category_closure cc ON cc.descendant_id = nodes.node_id
+            UNION
+                SELECT cc.ancestor_id
+                FROM nodes
+                INNER JOIN offers o ON o.offer_id = nodes.node_id
+                INNER JOIN category_closure cc ON cc.descendant_id = o.category_id
+        )
+
+        SELECT
+            category_id AS element_id,
+            parent_id,
+            category_name AS element_name,
+            'CATEGORY' AS element_type,
+            price,
+            last_update
+        FROM categories
+        WHERE category_id IN (SELECT node_id FROM nodes UNION SELECT node_id FROM parents)
+
+        UNION ALL
+            SELECT
+                offer_id AS element_id,
+                category_id AS parent_id,
+                offer_name AS element_name,
+                'OFFER' AS element_type,
+                price,
+                last_update
+            FROM offers
+            WHERE offer_id IN (SELECT node_id FROM nodes)
+        """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ShopUnitReadModel dbReadModel;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Lock refreshLock = new ReentrantLock();
+    private Map<UUID, Node> nodes = new HashMap<>();
+
+    public InMemoryShopUnitReadModel(JdbcTemplate jdbcTemplate,
+            ShopUnitReadModelImpl dbReadModel) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dbReadModel = dbReadModel;
+    }
+
+    /**
+     * Loads the whole catalog from DB replacing current content of the index.
+     * Reloading is serialized with refreshing of changed nodes, so a change committed
+     * meanwhile is applied after the snapshot replaces the index, rather than lost with
+     * the replaced one.
+     */
+    @PostConstruct
+    public void reload() {
+        refreshLock.lock();
+        Map<UUID, Node> loaded = new HashMap<>();
+        try {
+            jdbcTemplate.query(SELECT_ALL_NODES, this::mapRowToObject)
+                .forEach(unit -> loaded.put(unit.getId(), new Node(unit)));
+            loaded.values().forEach(n -> link(loaded, n));
+
+            lock.writeLock().lock();
+            try {
+                nodes = loaded;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+
+        log.info("Catalog index loaded with {} nodes", loaded.size());
+    }
+
+    /**
+     * Reloads changed nodes after the transaction which changed them is committed.
+     *
+     * <p>Nodes are queried without blocking readers, the write lock is taken
+     * only to apply them. Refreshes are serialized, so a result of an earlier query
+     * can't overwrite a later one.
+     */
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        refreshLock.lock();
+        try {
+            Set<UUID> changed = new HashSet<>();
+            lock.readLock().lock();
+            try {
+                for (UUID id : event.nodeIds()) {
+                    changed.add(id);
+                    Node n = nodes.get(id);
+                    while (n != null && n.unit.getParentId() != null) {
+                        changed.add(n.unit.getParentId());
+                        n = nodes.get(n.unit.getParentId());
+                    }
+                }
+            } finally {
+                lock.readLock().unlock();
+            }
+
+            Collection<ShopUnit> units = jdbcTemplate.query(con -> {
+                var ps = con.prepareStatement(SELECT_NODES_WITH_PARENTS);
+                Array ids = con.createArrayOf("uuid", changed.toArray());
+                ps.setArray(1, ids);
+                return ps;
+            }, this::mapRowToObject);
+
+            lock.writeLock().lock();
+            try {
+                Set<UUID> missing = new HashSet<>(changed);
+                List<Node> updated = new ArrayList<>();
+                for (ShopUnit unit : units) {
+                    missing.remove(unit.getId());
+                    updated.add(update(unit));
+                }
+                updated.forEach(n -> link(nodes, n));
+                missing.forEach(this::remove);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        } finally {
+            refreshLock.unlock();
+        }
+    }
+
+    @Override
+    public Optional<ShopUnit> getNode(UUID nodeId) {
+        lock.readLock().lock();
+        try {
+            return Optional.ofNullable(nodes.get(nodeId)).map(Node::copy);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<ShopUnit> getNodeWithSubtree(UUID nodeId) {
+        lock.readLock().lock();
+        try {
+            Node root = nodes.get(nodeId);
+            if (root == null) {
+                return List.of();
+            }
+
+            List<ShopUnit> subtree = new ArrayList<>();
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node n = stack.pop();
+                subtree.add(n.copy());
+                n.children.forEach(stack::push);
+            }
+
+            return subtree;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<ShopUnitTree> getSubtree(UUID nodeId) {
+        lock.readLock().lock();
+        try {
+            Node root = nodes.get(nodeId);
+            if (root == null) {
+                return Optional.empty();
+            }
+
+            ShopUnitTree.Builder builder = new ShopUnitTree.Builder();
+            Deque<Node> stack = new ArrayDeque<>();
+            stack.push(root);
+            while (!stack.isEmpty()) {
+                Node n = stack.pop();
+                ShopUnit unit = n.unit;
+                builder.add(unit.getId(), unit.getParentId(), unit.getName(), unit.getPrice(),
+                    unit.getDate().toEpochMilli(), unit.getType());
+                n.children.forEach(stack::push);
+            }
+
+            return Optional.of(builder.build());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Collection<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding,
+            Instant toIncluding) {
+        return dbReadModel.getOffersUpdatedBetween(fromIncluding, toIncluding);
+    }
+
+    @Override
+    public void streamOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+            Consumer<ShopUnit> consumer) {
+        dbReadModel.streamOffersUpdatedBetween(fromIncluding, toIncluding, consumer);
+    }
+
+    @Override
+    public List<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+            SalesCursor after, int limit) {
+        return dbReadModel.getOffersUpdatedBetween(fromIncluding, toIncluding, after, limit);
+    }
+
+    /**
+     * Stores new data of a node, node is unlinked from its parent if the parent is changed.
+     */
+    private Node update(ShopUnit unit) {
+        Node n = nodes.get(unit.getId());
+        if (n == null) {
+            n = new Node(unit);
+            nodes.put(unit.getId(), n);
+        } else {
+            if (!Objects.equals(n.unit.getParentId(), unit.getParentId())) {
+                unlink(n);
+            }
+            n.unit = unit;
+        }
+
+        return n;
+    }
+
+    /**
+     * Removes a node together with its subtree.
+     */
+    private void remove(UUID nodeId) {
+        Node root = nodes.get(nodeId);
+        if (root == null) {
+            return;
+        }
+
+        unlink(root);
+        Deque<Node> stack = new ArrayDeque<>();
+        stack.push(root);
+        while (!stack.isEmpty()) {
+            Node n = stack.pop();
+            nodes.remove(n.unit.getId());
+            n.children.forEach(stack::push);
+        }
+    }
+
+    private void unlink(Node n) {
+        UUID parentId = n.unit.getParentId();
+        if (parentId != null && nodes.containsKey(parentId)) {
+            nodes.get(parentId).children.remove(n);
+        }
+    }
+
+    private static void link(Map<UUID, Node> nodes, Node n) {
+        UUID parentId = n.unit.getParentId();
+        if (parentId != null && nodes.containsKey(parentId)) {
+            nodes.get(parentId).children.add(n);
+        }
+    }
+
+    private ShopUnit mapRowToObject(ResultSet rs, int rowNum) throws SQLException {
+        return new ShopUnit(
+            rs.getObject("element_id", UUID.class),
+            rs.getObject("parent_id", UUID.class),
+            rs.getString("element_name"),
+            rs.getObject("price", Long.class),
+            rs.getTimestamp("last_update").toInstant(),
+            ShopUnitType.valueOf(rs.getString("element_type"))
+        );
+    }
+
+    /**
+     * Node of the index, children are compared by identity.
+     */
+    private static class Node {
+        ShopUnit unit;
+        final Set<Node> children = new LinkedHashSet<>();
+
+        Node(ShopUnit unit) {
+            this.unit = unit;
+        }
+
+        /**
+         * Returns a detached copy of the node data, so callers are free to link it.
+         */
+        ShopUnit copy() {
+            return new ShopUnit(unit.getId(), unit.getParentId(), unit.getName(),
+                unit.getPrice(), unit.getDate(), unit.getType());
+        }
+    }
+}
@@ -3,6 +3,7 @@ package com.github.agluh.megamarket.repository.impl;
 import com.github.agluh.megamarket.model.Offer;
 import com.github.agluh.megamarket.repository.OfferRepository;
 import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import io.micrometer.core.annotation.Timed;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -12,7 +13,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -23,18 +24,41 @@ import org.springframework.stereotype.Component;
  * DB based implementation of offer's repository.
  */
 @Component
-@AllArgsConstructor
+@Timed("megamarket.repository")
 public class OfferRepositoryImpl implements OfferRepository {
 
     private static final String INSERT_OFFERS = """
-        INSERT INTO offers (offer_id, category_id, offer_name, price, last_update)
-        VALUES (?, ?, ?, ?, ?)
+        INSERT INTO offers (offer_id, category_id, offer_name, price, last_update, path)
+        VALUES (?, ?, ?, ?, ?,
+            COALESCE((SELECT path FROM categories WHERE category_id = ?), ''::bytea)
+                || '/'::bytea || uuid_send(?))
         ON CONFLICT (offer_id) DO UPDATE
         SET category_id = EXCLUDED.category_id,
             offer_name = EXCLUDED.offer_name,
             price = EXCLUDED.price,
-            last_update = EXCLUDED.last_update
+            last_update = EXCLUDED.last_update,
+            path = EXCLUDED.path
         """;
+    private static final String COPY_OFFERS = """
+        COPY offers_staging (import_id, offer_id, category_id, offer_name, price, last_update)
+        FROM STDIN (FORMAT BINARY)
+        """;
+    private static final String MERGE_OFFERS = """
+        INSERT INTO offers (offer_id, category_id, offer_name, price, last_update, path)
+        SELECT s.offer_id, s.category_id, s.offer_name, s.price, s.last_update,
+            COALESCE(c.path, ''::bytea) || '/'::bytea || uuid_send(s.offer_id)
+        FROM offers_staging s
+        LEFT JOIN categories c ON c.category_id = s.category_id
+        WHERE s.import_id = ?
+        ON CONFLICT (offer_id) DO UPDATE
+        SET category_id = EXCLUDED.category_id,
+            offer_name = EXCLUDED.offer_name,
+            price = EXCLUDED.price,
+            last_update = EXCLUDED.last_update,
+            path = EXCLUDED.path
+        """;
+    private static final String DELETE_STAGED_OFFERS =
+        "DELETE FROM offers_staging WHERE import_id IN (:ids)";
     private static final String DELETE_OFFER =
         "DELETE FROM offers WHERE offer_id = ?";
     private static final String SELECT_OFFERS = """
@@ -42,26 +66,29 @@ public class OfferRepositoryImpl implements OfferRepository {
         FROM offers
         WHERE offer_id IN (:ids)
         """;
-    private static final String SELECT_AVG_PRICE = """
-        WITH RECURSIVE sub_offers AS (
-            SELECT category_id, parent_id
-            FROM categories
-            WHERE category_id = :node_id -- Start recursion here
-            UNION
-                SELECT categories.category_id, categories.parent_id
-                FROM categories
-                INNER JOIN sub_offers ON sub_offers.category_id = categories.parent_id
-        )
-        SELECT FLOOR(AVG(price))
-        FROM sub_offers
-        LEFT JOIN offers ON sub_offers.category_id = offers.category_id
-        """;
 
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final JdbcTemplate jdbcTemplate;
+    private final int bulkLoadThreshold;
 
+    public OfferRepositoryImpl(NamedParameterJdbcTemplate namedJdbcTemplate,
+            JdbcTemplate jdbcTemplate,
+            @Value("${megamarket.bulk-load.threshold}") int bulkLoadThreshold) {
+        this.namedJdbcTemplate = namedJdbcTemplate;
+        this.jdbcTemplate = jdbcTemplate;
+        this.bulkLoadThreshold = bulkLoadThreshold;
+    }
+
+    /**
+     * Saves offers by batch of upserts, or by bulk load for large collections.
+     */
     @Override
     public void save(Collection<Offer> offers) {
+        if (BulkLoadSupport.isApplicable(offers.size(), bulkLoadThreshold)) {
+            bulkSave(offers);
+            return;
+        }
+
         List<Offer> list = offers.stream().toList();
         try {
             jdbcTemplate.batchUpdate(INSERT_OFFERS, new BatchPreparedStatementSetter() {
@@ -73,6 +100,8 @@ public class OfferRepositoryImpl implements OfferRepository {
                     ps.setString(3, offer.getName());
                     ps.setLong(4, offer.getPrice());
                     ps.setTimestamp(5, Timestamp.from(offer.getDate()));
+                    ps.setObject(6, offer.getParentId());
+                    ps.setObject(7, offer.getId());
                 }
 
                 @Override
@@ -85,6 +114,44 @@ public class OfferRepositoryImpl implements OfferRepository {
         }
     }
 
+    private void bulkSave(Collection<Offer> offers) {
+        UUID stageId = UUID.randomUUID();
+        stage(stageId, offers);
+        mergeStaged(stageId);
+        deleteStaged(List.of(stageId));
+    }
+
+    @Override
+    public void stage(UUID stageId, Collection<Offer> offers) {
+        BulkLoadSupport.copy(jdbcTemplate, COPY_OFFERS, writer -> {
+            for (Offer offer : offers) {
+                writer.startRow(6);
+                writer.writeUuid(stageId);
+                writer.writeUuid(offer.getId());
+                writer.writeUuid(offer.getParentId());
+                writer.writeText(offer.getName());
+                writer.writeLong(offer.getPrice());
+                writer.writeTimestamp(offer.getDate());
+            }
+        });
+    }
+
+    @Override
+    public void mergeStaged(UUID stageId) {
+        try {
+            jdbcTemplate.update(MERGE_OFFERS, stageId);
+        } catch (DataIntegrityViolationException e) {
+            throw new InvalidIdentityException(e);
+        }
+    }
+
+    @Override
+    public void deleteStaged(Collection<UUID> stageIds) {
+        if (!stageIds.isEmpty()) {
+            namedJdbcTemplate.update(DELETE_STAGED_OFFERS, Map.of("ids", stageIds));
+        }
+    }
+
     @Override
     public void delete(UUID offerId) {
         jdbcTemplate.update(DELETE_OFFER, offerId);
@@ -99,12 +166,6 @@ public class OfferRepositoryImpl implements OfferRepository {
         return namedJdbcTemplate.query(SELECT_OFFERS, Map.of("ids", ids), this::mapRowToObject);
     }
 
-    @Override
-    public Long getAvgPriceOfCategory(UUID categoryId) {
-        return namedJdbcTemplate.queryForObject(SELECT_AVG_PRICE,
-            Map.of("node_id", categoryId), Long.class);
-    }
-
     private Offer mapRowToObject(ResultSet rs, int rowNum) throws SQLException {
         return new Offer(
             rs.getObject("offer_id", UUID.class),
@@ -0,0 +1,95 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+/**
+ * Writes rows to PostgreSQL by {@code COPY ... FROM STDIN (FORMAT BINARY)}.
+ *
+ * <p>Rows are streamed to the server as they are written, so nothing
+ * but a write buffer is kept in memory.
+ */
+class PgBinaryCopyWriter implements AutoCloseable {
+
+    private static final byte[] SIGNATURE =
+        {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xff, '\r', '\n', 0};
+    private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final PGCopyOutputStream copy;
+    private final DataOutputStream out;
+
+    /**
+     * Starts copying by passed {@code COPY} statement.
+     */
+    PgBinaryCopyWriter(Connection con, String copySql) throws SQLException, IOException {
+        copy = new PGCopyOutputStream(con.unwrap(PGConnection.class), copySql);
+        out = new DataOutputStream(new BufferedOutputStream(copy, BUFFER_SIZE));
+        out.write(SIGNATURE);
+        out.writeInt(0);
+        out.writeInt(0);
+    }
+
+    void startRow(int fields) throws IOException {
+        out.writeShort(fields);
+    }
+
+    void writeUuid(UUID value) throws IOException {
+        if (value == null) {
+            writeNull();
+            return;
+        }
+
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    void writeText(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    void writeLong(long value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(value);
+    }
+
+    /**
+     * Writes timestamp as microseconds since PostgreSQL epoch.
+     */
+    void writeTimestamp(Instant value) throws IOException {
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value));
+    }
+
+    void writeNull() throws IOException {
+        out.writeInt(-1);
+    }
+
+    /**
+     * Finishes copying, returns number of copied rows.
+     */
+    long finish() throws IOException, SQLException {
+        out.writeShort(-1);
+        out.flush();
+        return copy.endCopy();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (copy.isActive()) {
+            copy.cancelCopy();
+        }
+    }
+}
@@ -1,26 +1,42 @@
 package com.github.agluh.megamarket.repository.impl;
 
+import static com.github.agluh.megamarket.DataSourceConfiguration.READ_DATA_SOURCE;
+
+import com.github.agluh.megamarket.dto.SalesCursor;
 import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
 import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.HierarchyMode;
 import com.github.agluh.megamarket.repository.ShopUnitReadModel;
+import io.micrometer.core.annotation.Timed;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
 import java.time.Instant;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import java.util.function.Consumer;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.ConnectionCallback;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
 /**
  * DB based implementation of read model for catalog item.
+ *
+ * <p>Queries go to the read data source, which may be a replica of the primary database.
  */
+@Primary
 @Component
-@AllArgsConstructor
+@Timed("megamarket.repository")
 public class ShopUnitReadModelImpl implements ShopUnitReadModel {
 
     private static final String SELECT_NODE = """
@@ -47,7 +63,7 @@ public class ShopUnitReadModelImpl implements ShopUnitReadModel {
             FROM offers
             WHERE offer_id = :node_id
         """;
-    private static final String SELECT_NODE_SUBTREE = """
+    private static final String SELECT_NODE_SUBTREE_RECURSIVE = """
         /* Here we just describe a table of all subcategories of category with passed ID */
         WITH RECURSIVE tree AS (
             SELECT category_id, parent_id, category_name, price, last_update
@@ -95,6 +111,78 @@ public class ShopUnitReadModelImpl implements ShopUnitReadModel {
                 FROM offers o
                 WHERE offer_id = :node_id
         """;
+    private static final String SELECT_NODE_SUBTREE_BY_CLOSURE = """
+        /* Here we directly select all subcategories of category with passed ID... */
+        SELECT
+            c.category_id AS element_id,
+            c.parent_id AS parent_id,
+            c.category_name AS element_name,
+            'CATEGORY' AS element_type,
+            c.price,
+            c.last_update
+        FROM category_closure cc
+        INNER JOIN categories c ON c.category_id = cc.descendant_id
+        WHERE cc.ancestor_id = :node_id
+        
+        /* ...here we join any offers from them too */
+        UNION ALL
+            SELECT
+                o.offer_id AS element_id,
+                o.category_id AS parent_id,
+                o.offer_name AS element_name,
+                'OFFER' AS element_type,
+                o.price,
+                o.last_update
+            FROM category_closure cc
+            INNER JOIN offers o ON o.category_id = cc.descendant_id
+            WHERE cc.ancestor_id = :node_id
+            
+            /* ...and finally we're trying to find a single offer
+            if none categories found by such ID */
+            UNION ALL
+                SELECT
+                    offer_id AS element_id,
+                    category_id AS parent_id,
+                    offer_name AS element_name,
+                    'OFFER' AS element_type,
+                    price,
+                    last_update
+                FROM offers
+                WHERE offer_id = :node_id
+        """;
+    private static final String SELECT_NODE_SUBTREE_BY_PATH = """
+        /* Path of the node is a prefix of paths of all elements in its subtree,
+        no matter whether it's a category or an offer */
+        WITH node AS (
+            SELECT path
+            FROM categories
+            WHERE category_id = :node_id
+            UNION ALL
+                SELECT path
+                FROM offers
+                WHERE offer_id = :node_id
+        )
+        SELECT
+            c.category_id AS element_id,
+            c.parent_id AS parent_id,
+            c.category_name AS element_name,
+            'CATEGORY' AS element_type,
+            c.price,
+            c.last_update
+        FROM node
+        INNER JOIN categories c ON c.path >= node.path AND c.path < node.path || '0'::bytea
+        
+        UNION ALL
+            SELECT
+                o.offer_id AS element_id,
+                o.category_id AS parent_id,
+                o.offer_name AS element_name,
+                'OFFER' AS element_type,
+                o.price,
+                o.last_update
+            FROM node
+            INNER JOIN offers o ON o.path >= node.path AND o.path < node.path || '0'::bytea
+        """;
     private static final String SELECT_OFFERS_UPDATED_BETWEEN = """
         SELECT
             offer_id AS element_id,
@@ -106,19 +194,59 @@ public class ShopUnitReadModelImpl implements ShopUnitReadModel {
         FROM offers
         WHERE last_update BETWEEN ? AND ?
         """;
+    private static final String ORDER_BY_DATE_AND_ID = " ORDER BY last_update, offer_id";
+    private static final String AND_AFTER_CURSOR = " AND (last_update, offer_id) > (?, ?)";
+    private static final String LIMIT = " LIMIT ?";
+    private static final int FETCH_SIZE = 1000;
 
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
     private final JdbcTemplate jdbcTemplate;
+    private final String selectNodeSubtree;
+
+    public ShopUnitReadModelImpl(@Qualifier(READ_DATA_SOURCE) DataSource dataSource,
+            @Value("${megamarket.hierarchy.mode}") HierarchyMode hierarchyMode) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.selectNodeSubtree = switch (hierarchyMode) {
+            case ADJACENCY_LIST -> SELECT_NODE_SUBTREE_RECURSIVE;
+            case CLOSURE_TABLE -> SELECT_NODE_SUBTREE_BY_CLOSURE;
+            case MATERIALIZED_PATH -> SELECT_NODE_SUBTREE_BY_PATH;
+        };
+    }
 
     @Override
     public Collection<ShopUnit> getNodeWithSubtree(UUID nodeId) {
         return namedJdbcTemplate.query(
-            SELECT_NODE_SUBTREE,
+            selectNodeSubtree,
             Map.of("node_id", nodeId),
             this::mapRowToObject
         );
     }
 
+    @Override
+    public Optional<ShopUnitTree> getSubtree(UUID nodeId) {
+        ShopUnitTree.Builder builder = namedJdbcTemplate.query(
+            selectNodeSubtree,
+            Map.of("node_id", nodeId),
+            rs -> {
+                ShopUnitTree.Builder b = new ShopUnitTree.Builder();
+                while (rs.next()) {
+                    b.add(
+                        rs.getObject("element_id", UUID.class),
+                        rs.getObject("parent_id", UUID.class),
+                        rs.getString("element_name"),
+                        rs.getObject("price", Long.class),
+                        rs.getTimestamp("last_update").getTime(),
+                        ShopUnitType.valueOf(rs.getString("element_type"))
+                    );
+                }
+                return b;
+            }
+        );
+
+        return builder.isEmpty() ? Optional.empty() : Optional.of(builder.build());
+    }
+
     @Override
     public Collection<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding,
             Instant toIncluding) {
@@ -130,6 +258,58 @@ public class ShopUnitReadModelImpl implements ShopUnitReadModel {
             Timestamp.from(fromIncluding), Timestamp.from(toIncluding));
     }
 
+    @Override
+    public void streamOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+            Consumer<ShopUnit> consumer) {
+        if (fromIncluding.isAfter(toIncluding)) {
+            throw new IllegalArgumentException("Incorrect range");
+        }
+
+        jdbcTemplate.execute((ConnectionCallback<Void>) con -> {
+            // PostgreSQL fetches rows by portions within a transaction only,
+            // which is begun here, so a replica connection could be used
+            boolean autoCommit = con.getAutoCommit();
+            con.setAutoCommit(false);
+            try (PreparedStatement ps = con.prepareStatement(
+                    SELECT_OFFERS_UPDATED_BETWEEN + ORDER_BY_DATE_AND_ID)) {
+                ps.setFetchSize(FETCH_SIZE);
+                ps.setTimestamp(1, Timestamp.from(fromIncluding));
+                ps.setTimestamp(2, Timestamp.from(toIncluding));
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        consumer.accept(mapRowToObject(rs, rs.getRow()));
+                    }
+                }
+            } finally {
+                if (autoCommit) {
+                    con.rollback();
+                    con.setAutoCommit(true);
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public List<ShopUnit> getOffersUpdatedBetween(Instant fromIncluding, Instant toIncluding,
+            SalesCursor after, int limit) {
+        if (fromIncluding.isAfter(toIncluding)) {
+            throw new IllegalArgumentException("Incorrect range");
+        }
+
+        if (after == null) {
+            return jdbcTemplate.query(SELECT_OFFERS_UPDATED_BETWEEN + ORDER_BY_DATE_AND_ID + LIMIT,
+                this::mapRowToObject,
+                Timestamp.from(fromIncluding), Timestamp.from(toIncluding), limit);
+        }
+
+        return jdbcTemplate.query(
+            SELECT_OFFERS_UPDATED_BETWEEN + AND_AFTER_CURSOR + ORDER_BY_DATE_AND_ID + LIMIT,
+            this::mapRowToObject,
+            Timestamp.from(fromIncluding), Timestamp.from(toIncluding),
+            Timestamp.from(after.date()), after.id(), limit);
+    }
+
     @Override
     public Optional<ShopUnit> getNode(UUID nodeId) {
         return namedJdbcTemplate.query(
@@ -1,8 +1,11 @@
 package com.github.agluh.megamarket.repository.impl;
 
+import static com.github.agluh.megamarket.DataSourceConfiguration.READ_DATA_SOURCE;
+
 import com.github.agluh.megamarket.dto.ShopUnitStatistic;
 import com.github.agluh.megamarket.dto.ShopUnitType;
 import com.github.agluh.megamarket.repository.ShopUnitStatisticReadModel;
+import io.micrometer.core.annotation.Timed;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Timestamp;
@@ -11,15 +14,18 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
-import lombok.AllArgsConstructor;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.springframework.stereotype.Component;
 
 /**
  * DB based implementation of read model for statistics of catalog item.
+ *
+ * <p>Queries go to the read data source, which may be a replica of the primary database.
  */
 @Component
-@AllArgsConstructor
+@Timed("megamarket.repository")
 public class ShopUnitStatisticReadModelImpl implements ShopUnitStatisticReadModel {
 
     private static final String SELECT_NODES = """
@@ -32,6 +38,10 @@ public class ShopUnitStatisticReadModelImpl implements ShopUnitStatisticReadMode
 
     private final NamedParameterJdbcTemplate namedJdbcTemplate;
 
+    public ShopUnitStatisticReadModelImpl(@Qualifier(READ_DATA_SOURCE) DataSource dataSource) {
+        this.namedJdbcTemplate = new NamedParameterJdbcTemplate(dataSource);
+    }
+
     @Override
     public Collection<ShopUnitStatistic> getNodeStatistics(UUID nodeId, Instant fromIncluding,
             Instant toExcluding) {
@@ -0,0 +1,139 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import com.github.agluh.megamarket.repository.StatisticsRepository;
+import io.micrometer.core.annotation.Timed;
+import java.sql.PreparedStatement;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import lombok.AllArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * DB based implementation of repository for history of catalog items.
+ */
+@Component
+@Timed("megamarket.repository")
+@AllArgsConstructor
+public class StatisticsRepositoryImpl implements StatisticsRepository {
+
+    private static final String INSERT_OFFERS_STATISTICS = """
+        INSERT INTO offers_statistics (offer_id, category_id, offer_name, price, last_update)
+        SELECT offer_id, category_id, offer_name, price, last_update
+        FROM offers
+        WHERE offer_id = ANY(?)
+        """;
+    private static final String INSERT_CATEGORIES_STATISTICS = """
+        INSERT INTO categories_statistics (category_id, parent_id, category_name, price,
+            last_update)
+        SELECT category_id, parent_id, category_name, price, last_update
+        FROM categories
+        WHERE category_id IN (
+            SELECT ancestor_id
+            FROM category_closure
+            WHERE descendant_id = ANY(?)
+        )
+        ON CONFLICT ON CONSTRAINT cat_stat_entry_unique
+        DO UPDATE SET parent_id = EXCLUDED.parent_id,
+            category_name = EXCLUDED.category_name,
+            price = EXCLUDED.price
+        """;
+
+    private static final List<String> PARTITIONED_TABLES =
+        List.of("offers_statistics", "categories_statistics");
+    private static final DateTimeFormatter PARTITION_SUFFIX =
+        DateTimeFormatter.ofPattern("'_p'uuuu_MM");
+    private static final String SELECT_PARTITIONS = """
+        SELECT c.relname
+        FROM pg_inherits i
+        INNER JOIN pg_class c ON c.oid = i.inhrelid
+        WHERE i.inhparent = ?::regclass
+            AND c.relname ~ '_p[0-9]{4}_[0-9]{2}$'
+        """;
+    private static final String SELECT_DEFAULT_PARTITION_MONTHS = """
+        SELECT DISTINCT date_trunc('month', last_update AT TIME ZONE 'UTC')::date
+        FROM %s_default
+        """;
+    private static final String CREATE_PARTITION =
+        "SELECT create_statistics_partition(?, ?)";
+    private static final String DETACH_PARTITION = "ALTER TABLE %s DETACH PARTITION %s";
+    private static final String DROP_PARTITION = "DROP TABLE %s";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    @Override
+    public void recordOffers(Collection<UUID> offerIds) {
+        update(INSERT_OFFERS_STATISTICS, offerIds);
+    }
+
+    @Override
+    public void recordCategoriesWithAncestors(Collection<UUID> categoryIds) {
+        update(INSERT_CATEGORIES_STATISTICS, categoryIds);
+    }
+
+    @Override
+    public Collection<YearMonth> findPartitions() {
+        Collection<YearMonth> months = new TreeSet<>();
+        for (String table : PARTITIONED_TABLES) {
+            findPartitionNames(table).forEach(name ->
+                months.add(YearMonth.parse(name.substring(table.length()), PARTITION_SUFFIX)));
+        }
+
+        return months;
+    }
+
+    @Override
+    public Collection<YearMonth> findMonthsWithoutPartition() {
+        Collection<YearMonth> months = new TreeSet<>();
+        for (String table : PARTITIONED_TABLES) {
+            jdbcTemplate.queryForList(SELECT_DEFAULT_PARTITION_MONTHS.formatted(table),
+                LocalDate.class).forEach(date -> months.add(YearMonth.from(date)));
+        }
+
+        return months;
+    }
+
+    @Override
+    public boolean createPartitions(YearMonth month) {
+        boolean created = false;
+        for (String table : PARTITIONED_TABLES) {
+            created |= Boolean.TRUE.equals(jdbcTemplate.queryForObject(CREATE_PARTITION,
+                Boolean.class, table, month.atDay(1)));
+        }
+
+        return created;
+    }
+
+    @Override
+    public void removePartitions(YearMonth month, boolean archive) {
+        for (String table : PARTITIONED_TABLES) {
+            String partition = table + PARTITION_SUFFIX.format(month);
+            if (findPartitionNames(table).contains(partition)) {
+                jdbcTemplate.execute(archive
+                    ? DETACH_PARTITION.formatted(table, partition)
+                    : DROP_PARTITION.formatted(partition));
+            }
+        }
+    }
+
+    private List<String> findPartitionNames(String table) {
+        return jdbcTemplate.queryForList(SELECT_PARTITIONS, String.class, table);
+    }
+
+    private void update(String sql, Collection<UUID> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        jdbcTemplate.update(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setArray(1, con.createArrayOf("uuid", ids.toArray()));
+            return ps;
+        });
+    }
+}
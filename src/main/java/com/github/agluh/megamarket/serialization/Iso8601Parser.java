@@ -0,0 +1,151 @@
+package com.github.agluh.megamarket.serialization;
+
+import java.time.Instant;
+
+/**
+ * Parser of dates in the subset of ISO 8601 accepted by API.
+ *
+ * <p>Accepted form is {@code uuuu-MM-dd'T'HH:mm:ss} followed by optional fraction
+ * of 1 to 3 digits and mandatory zone, which is either {@code Z} or offset
+ * in {@code +HH}, {@code +HHmm} or {@code +HH:mm} form. Dates are parsed
+ * in place without intermediate objects and an invalid date gives null
+ * instead of an exception.
+ */
+public final class Iso8601Parser {
+
+    private static final int MAX_OFFSET_HOURS = 18;
+    private static final long DAYS_0000_TO_1970 = 146097 * 5L - (30L * 365L + 7L);
+    private static final int[] NANOS_SCALE = {0, 100_000_000, 10_000_000, 1_000_000};
+
+    private Iso8601Parser() {
+    }
+
+    /**
+     * Returns instant of passed date or null if it isn't valid.
+     */
+    public static Instant parseInstant(CharSequence value) {
+        int length = value.length();
+        if (length < 20 || value.charAt(4) != '-' || value.charAt(7) != '-'
+                || value.charAt(10) != 'T' || value.charAt(13) != ':'
+                || value.charAt(16) != ':') {
+            return null;
+        }
+
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        int hour = digits(value, 11, 2);
+        int minute = digits(value, 14, 2);
+        int second = digits(value, 17, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+                || hour < 0 || hour > 23 || minute < 0 || minute > 59
+                || second < 0 || second > 59) {
+            return null;
+        }
+
+        int pos = 19;
+        int nanos = 0;
+        if (value.charAt(pos) == '.') {
+            int start = ++pos;
+            while (pos < length && pos - start < 3 && isDigit(value.charAt(pos))) {
+                pos++;
+            }
+            if (pos == start) {
+                return null;
+            }
+            nanos = digits(value, start, pos - start) * NANOS_SCALE[pos - start];
+        }
+
+        int offsetSeconds = parseOffset(value, pos);
+        if (offsetSeconds == Integer.MIN_VALUE) {
+            return null;
+        }
+
+        long epochSecond = epochDay(year, month, day) * 86400
+            + hour * 3600 + minute * 60 + second - offsetSeconds;
+        return Instant.ofEpochSecond(epochSecond, nanos);
+    }
+
+    /**
+     * Returns offset in seconds of zone which ends the value
+     * or {@link Integer#MIN_VALUE} if it isn't valid.
+     */
+    private static int parseOffset(CharSequence value, int pos) {
+        int remaining = value.length() - pos;
+        if (remaining == 1 && value.charAt(pos) == 'Z') {
+            return 0;
+        }
+
+        if (remaining != 3 && remaining != 5 && remaining != 6) {
+            return Integer.MIN_VALUE;
+        }
+
+        char sign = value.charAt(pos);
+        if (sign != '+' && sign != '-') {
+            return Integer.MIN_VALUE;
+        }
+
+        int hours = digits(value, pos + 1, 2);
+        int minutes = 0;
+        if (remaining == 5) {
+            minutes = digits(value, pos + 3, 2);
+        } else if (remaining == 6) {
+            minutes = value.charAt(pos + 3) == ':' ? digits(value, pos + 4, 2) : -1;
+        }
+        if (hours < 0 || minutes < 0 || minutes > 59
+                || hours * 60 + minutes > MAX_OFFSET_HOURS * 60) {
+            return Integer.MIN_VALUE;
+        }
+
+        int seconds = hours * 3600 + minutes * 60;
+        return sign == '+' ? seconds : -seconds;
+    }
+
+    /**
+     * Returns number written by passed count of digits or -1 if there is a non-digit.
+     */
+    private static int digits(CharSequence value, int start, int count) {
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (!isDigit(c)) {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+
+        return result;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static int lengthOfMonth(int year, int month) {
+        return switch (month) {
+            case 2 -> isLeap(year) ? 29 : 28;
+            case 4, 6, 9, 11 -> 30;
+            default -> 31;
+        };
+    }
+
+    private static boolean isLeap(int year) {
+        return (year & 3) == 0 && (year % 100 != 0 || year % 400 == 0);
+    }
+
+    /**
+     * Same as {@link java.time.LocalDate#toEpochDay()} for non-negative years.
+     */
+    private static long epochDay(int year, int month, int day) {
+        long total = 365L * year + (year + 3) / 4 - (year + 99) / 100 + (year + 399) / 400
+            + (367 * month - 362) / 12 + day - 1;
+        if (month > 2) {
+            total--;
+            if (!isLeap(year)) {
+                total--;
+            }
+        }
+
+        return total - DAYS_0000_TO_1970;
+    }
+}
@@ -1,48 +1,191 @@
 package com.github.agluh.megamarket.serialization;
 
 import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonSerializer;
 import com.fasterxml.jackson.databind.SerializerProvider;
 import com.github.agluh.megamarket.dto.ShopUnit;
 import java.io.IOException;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeFormatterBuilder;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.UUID;
 
 /**
  * Serializer of a catalog element.
+ *
+ * <p>The tree is walked with an explicit stack instead of recursion, so its depth
+ * isn't limited by thread stack, and children are written directly without
+ * serializer lookup. Identities and dates are written from a char buffer
+ * reused for the whole tree.
  */
 public class ShopUnitSerializer extends JsonSerializer<ShopUnit> {
 
     public static DateTimeFormatter ISO8601_DATE_TIME =
         new DateTimeFormatterBuilder().appendInstant(3).toFormatter();
 
+    static final SerializableString ID = new SerializedString("id");
+    static final SerializableString NAME = new SerializedString("name");
+    static final SerializableString TYPE = new SerializedString("type");
+    static final SerializableString PARENT_ID = new SerializedString("parentId");
+    static final SerializableString DATE = new SerializedString("date");
+    static final SerializableString PRICE = new SerializedString("price");
+    static final SerializableString CHILDREN = new SerializedString("children");
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+    static final int UUID_LENGTH = 36;
+    private static final int DATE_LENGTH = 24;
+    private static final int MAX_YEAR = 9999;
+    private static final int SECONDS_PER_DAY = 86400;
+    private static final long DAYS_0000_TO_1970 = 719468;
+    private static final int DAYS_PER_400_YEARS = 146097;
+
     @Override
     public void serialize(ShopUnit shopUnit, JsonGenerator jsonGenerator,
             SerializerProvider serializerProvider) throws IOException {
+        char[] buffer = new char[UUID_LENGTH];
+        Deque<Iterator<ShopUnit>> stack = new ArrayDeque<>();
+
+        writeStart(shopUnit, jsonGenerator, buffer, stack);
+        while (!stack.isEmpty()) {
+            Iterator<ShopUnit> children = stack.peek();
+            if (children.hasNext()) {
+                writeStart(children.next(), jsonGenerator, buffer, stack);
+            } else {
+                stack.pop();
+                jsonGenerator.writeEndArray();
+                jsonGenerator.writeEndObject();
+            }
+        }
+    }
+
+    /**
+     * Writes fields of the element. An offer is written completely, while a category
+     * is left with open children array and its children are pushed to the stack.
+     */
+    private static void writeStart(ShopUnit shopUnit, JsonGenerator jsonGenerator, char[] buffer,
+            Deque<Iterator<ShopUnit>> stack) throws IOException {
         jsonGenerator.writeStartObject();
 
-        jsonGenerator.writeObjectField("id", shopUnit.getId());
-        jsonGenerator.writeStringField("name", shopUnit.getName());
-        jsonGenerator.writeObjectField("type", shopUnit.getType());
-        jsonGenerator.writeObjectField("parentId", shopUnit.getParentId());
-        jsonGenerator.writeStringField("date", ISO8601_DATE_TIME.format(shopUnit.getDate()));
+        jsonGenerator.writeFieldName(ID);
+        writeUuid(shopUnit.getId(), jsonGenerator, buffer);
+        jsonGenerator.writeFieldName(NAME);
+        jsonGenerator.writeString(shopUnit.getName());
+        jsonGenerator.writeFieldName(TYPE);
+        jsonGenerator.writeString(shopUnit.getType().name());
+        jsonGenerator.writeFieldName(PARENT_ID);
+        writeUuid(shopUnit.getParentId(), jsonGenerator, buffer);
+        jsonGenerator.writeFieldName(DATE);
+        writeDate(shopUnit.getDate(), jsonGenerator, buffer);
 
+        jsonGenerator.writeFieldName(PRICE);
         if (shopUnit.getPrice() != null) {
-            jsonGenerator.writeNumberField("price", shopUnit.getPrice());
+            jsonGenerator.writeNumber(shopUnit.getPrice());
         } else {
-            jsonGenerator.writeObjectField("price", null);
+            jsonGenerator.writeNull();
         }
 
+        jsonGenerator.writeFieldName(CHILDREN);
         if (shopUnit.isCategory()) {
-            jsonGenerator.writeArrayFieldStart("children");
-            for (ShopUnit s : shopUnit.getChildren()) {
-                jsonGenerator.writeObject(s);
-            }
-            jsonGenerator.writeEndArray();
+            jsonGenerator.writeStartArray();
+            stack.push(shopUnit.getChildren().iterator());
         } else {
-            jsonGenerator.writeStringField("children", null);
+            jsonGenerator.writeNull();
+            jsonGenerator.writeEndObject();
+        }
+    }
+
+    private static void writeUuid(UUID uuid, JsonGenerator jsonGenerator, char[] buffer)
+            throws IOException {
+        if (uuid == null) {
+            jsonGenerator.writeNull();
+            return;
         }
 
-        jsonGenerator.writeEndObject();
+        writeUuid(uuid.getMostSignificantBits(), uuid.getLeastSignificantBits(), jsonGenerator,
+            buffer);
+    }
+
+    /**
+     * Writes identity given by its halves, buffer should be able to hold it.
+     */
+    static void writeUuid(long msb, long lsb, JsonGenerator jsonGenerator, char[] buffer)
+            throws IOException {
+        writeHex(buffer, 0, msb >>> 32, 8);
+        buffer[8] = '-';
+        writeHex(buffer, 9, msb >>> 16, 4);
+        buffer[13] = '-';
+        writeHex(buffer, 14, msb, 4);
+        buffer[18] = '-';
+        writeHex(buffer, 19, lsb >>> 48, 4);
+        buffer[23] = '-';
+        writeHex(buffer, 24, lsb, 12);
+        jsonGenerator.writeString(buffer, 0, UUID_LENGTH);
+    }
+
+    private static void writeDate(Instant date, JsonGenerator jsonGenerator, char[] buffer)
+            throws IOException {
+        writeDate(date.getEpochSecond(), date.getNano() / 1_000_000, jsonGenerator, buffer);
+    }
+
+    /**
+     * Writes date as {@link #ISO8601_DATE_TIME} does, that is in UTC with milliseconds.
+     * Buffer should be able to hold an identity.
+     */
+    static void writeDate(long epochSecond, int millis, JsonGenerator jsonGenerator,
+            char[] buffer) throws IOException {
+        long epochDay = Math.floorDiv(epochSecond, SECONDS_PER_DAY);
+        int secondOfDay = (int) Math.floorMod(epochSecond, SECONDS_PER_DAY);
+
+        // Civil date of the day counted from 0000-03-01, so leap day ends a year
+        long zeroDay = epochDay + DAYS_0000_TO_1970;
+        long era = Math.floorDiv(zeroDay, DAYS_PER_400_YEARS);
+        int dayOfEra = (int) (zeroDay - era * DAYS_PER_400_YEARS);
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int shiftedMonth = (5 * dayOfYear + 2) / 153;
+        int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+        int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+        long year = era * 400 + yearOfEra + (month <= 2 ? 1 : 0);
+
+        if (year < 0 || year > MAX_YEAR) {
+            jsonGenerator.writeString(ISO8601_DATE_TIME.format(
+                Instant.ofEpochSecond(epochSecond, millis * 1_000_000L)));
+            return;
+        }
+
+        writeDigits(buffer, 0, (int) year, 4);
+        buffer[4] = '-';
+        writeDigits(buffer, 5, month, 2);
+        buffer[7] = '-';
+        writeDigits(buffer, 8, day, 2);
+        buffer[10] = 'T';
+        writeDigits(buffer, 11, secondOfDay / 3600, 2);
+        buffer[13] = ':';
+        writeDigits(buffer, 14, secondOfDay / 60 % 60, 2);
+        buffer[16] = ':';
+        writeDigits(buffer, 17, secondOfDay % 60, 2);
+        buffer[19] = '.';
+        writeDigits(buffer, 20, millis, 3);
+        buffer[23] = 'Z';
+        jsonGenerator.writeString(buffer, 0, DATE_LENGTH);
+    }
+
+    private static void writeHex(char[] buffer, int offset, long value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    private static void writeDigits(char[] buffer, int offset, int value, int count) {
+        for (int i = offset + count - 1; i >= offset; i--) {
+            buffer[i] = (char) ('0' + value % 10);
+            value /= 10;
+        }
     }
 }
@@ -0,0 +1,115 @@
+package com.github.agluh.megamarket.serialization;
+
+import static com.github.agluh.megamarket.dto.ShopUnitTree.NONE;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.CHILDREN;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.DATE;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.ID;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.NAME;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.PARENT_ID;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.PRICE;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.TYPE;
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.UUID_LENGTH;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Serializer of a catalog element with its subtree kept in columnar form.
+ *
+ * <p>Writes the same JSON as {@link ShopUnitSerializer} does. The tree is walked
+ * by its child and sibling links, so neither recursion nor a stack is needed.
+ */
+public class ShopUnitTreeSerializer extends JsonSerializer<ShopUnitTree> {
+
+    private static final String CATEGORY = ShopUnitType.CATEGORY.name();
+    private static final String OFFER = ShopUnitType.OFFER.name();
+
+    @Override
+    public void serialize(ShopUnitTree tree, JsonGenerator jsonGenerator,
+            SerializerProvider serializerProvider) throws IOException {
+        char[] buffer = new char[UUID_LENGTH];
+        int root = tree.root();
+        int node = root;
+        while (true) {
+            writeStart(tree, node, jsonGenerator, buffer);
+            if (tree.firstChild(node) != NONE) {
+                node = tree.firstChild(node);
+                continue;
+            }
+
+            writeEnd(tree, node, jsonGenerator);
+            while (node != root && tree.nextSibling(node) == NONE) {
+                node = tree.parent(node);
+                writeEnd(tree, node, jsonGenerator);
+            }
+            if (node == root) {
+                return;
+            }
+            node = tree.nextSibling(node);
+        }
+    }
+
+    /**
+     * Writes fields of the node, children array of a category is left open.
+     */
+    private static void writeStart(ShopUnitTree tree, int node, JsonGenerator jsonGenerator,
+            char[] buffer) throws IOException {
+        jsonGenerator.writeStartObject();
+
+        jsonGenerator.writeFieldName(ID);
+        ShopUnitSerializer.writeUuid(tree.idMostSignificantBits(node),
+            tree.idLeastSignificantBits(node), jsonGenerator, buffer);
+        jsonGenerator.writeFieldName(NAME);
+        jsonGenerator.writeString(tree.names(), tree.nameStart(node),
+            tree.nameEnd(node) - tree.nameStart(node));
+        jsonGenerator.writeFieldName(TYPE);
+        jsonGenerator.writeString(tree.isCategory(node) ? CATEGORY : OFFER);
+
+        jsonGenerator.writeFieldName(PARENT_ID);
+        int parent = tree.parent(node);
+        if (parent != NONE) {
+            ShopUnitSerializer.writeUuid(tree.idMostSignificantBits(parent),
+                tree.idLeastSignificantBits(parent), jsonGenerator, buffer);
+        } else {
+            UUID parentId = tree.rootParentId();
+            if (parentId != null) {
+                ShopUnitSerializer.writeUuid(parentId.getMostSignificantBits(),
+                    parentId.getLeastSignificantBits(), jsonGenerator, buffer);
+            } else {
+                jsonGenerator.writeNull();
+            }
+        }
+
+        jsonGenerator.writeFieldName(DATE);
+        long date = tree.dateMillis(node);
+        ShopUnitSerializer.writeDate(Math.floorDiv(date, 1000), (int) Math.floorMod(date, 1000),
+            jsonGenerator, buffer);
+
+        jsonGenerator.writeFieldName(PRICE);
+        if (tree.hasPrice(node)) {
+            jsonGenerator.writeNumber(tree.price(node));
+        } else {
+            jsonGenerator.writeNull();
+        }
+
+        jsonGenerator.writeFieldName(CHILDREN);
+        if (tree.isCategory(node)) {
+            jsonGenerator.writeStartArray();
+        } else {
+            jsonGenerator.writeNull();
+        }
+    }
+
+    private static void writeEnd(ShopUnitTree tree, int node, JsonGenerator jsonGenerator)
+            throws IOException {
+        if (tree.isCategory(node)) {
+            jsonGenerator.writeEndArray();
+        }
+        jsonGenerator.writeEndObject();
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.agluh.megamarket.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Runs actions by transactions which are retried on deadlocks and serialization failures.
+ *
+ * <p>Such a failure rolls back the whole transaction, so an action joining an outer
+ * transaction isn't retried, failure is left to the outer one. Attempts are spread
+ * by a random backoff, so transactions failed together don't collide again.
+ */
+@Slf4j
+@Component
+public class ConcurrencyRetry {
+
+    private static final String RETRIES = "megamarket.transaction.retries";
+
+    private final TransactionTemplate transactionTemplate;
+    private final MeterRegistry meterRegistry;
+    private final int maxAttempts;
+    private final Duration backoff;
+
+    public ConcurrencyRetry(PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${megamarket.transaction-retry.max-attempts}") int maxAttempts,
+            @Value("${megamarket.transaction-retry.backoff}") Duration backoff) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+    }
+
+    /**
+     * Runs the action by a transaction, retrying it up to configured number of attempts.
+     *
+     * @param operation name of the operation for metrics
+     */
+    public void run(String operation, Runnable action) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            action.run();
+            return;
+        }
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                transactionTemplate.executeWithoutResult(status -> action.run());
+                return;
+            } catch (ConcurrencyFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw e;
+                }
+
+                log.debug("Retrying {} after concurrency failure, attempt {}",
+                    operation, attempt, e);
+                meterRegistry.counter(RETRIES, "operation", operation).increment();
+                sleep(attempt);
+            }
+        }
+    }
+
+    private void sleep(int attempt) {
+        long bound = backoff.toMillis() * attempt;
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Retry is interrupted", e);
+        }
+    }
+}
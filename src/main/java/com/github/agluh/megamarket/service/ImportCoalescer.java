@@ -0,0 +1,243 @@
+package com.github.agluh.megamarket.service;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.service.exceptions.IdentityIsNotUniqueException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+/**
+ * Coalesces concurrent imports into a single transaction.
+ *
+ * <p>Every import updates aggregates of all its upstream categories, so concurrent
+ * imports queue up on row locks of top categories, each holding them until its commit.
+ * Being enabled, imports arriving within a window are applied one after another
+ * by a single transaction, which takes those locks and commits once per window.
+ * Every import is applied within its own savepoint, so it keeps its update date,
+ * history entries and failure, which is rethrown to its caller only.
+ * The caller returns once the whole window is committed, listeners are notified
+ * of imports which have survived the window only. A window failed by a deadlock
+ * or a serialization failure is rolled back and applied again as a whole.
+ * Imports are spread between several committers by the root of their trees,
+ * so imports of the same tree are coalesced, while distinct trees are committed
+ * in parallel.
+ */
+@Slf4j
+@Component
+public class ImportCoalescer {
+
+    private static final String BATCH_SIZE = "megamarket.import.coalesced.batch";
+    private static final String OPERATION = "coalesced-import";
+    private static final String SAVEPOINT = "SAVEPOINT coalesced_import";
+    private static final String RELEASE_SAVEPOINT = "RELEASE SAVEPOINT coalesced_import";
+    private static final String ROLLBACK_TO_SAVEPOINT =
+        "ROLLBACK TO SAVEPOINT coalesced_import";
+
+    private final ShopService shopService;
+    private final JdbcTemplate jdbcTemplate;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final MeterRegistry meterRegistry;
+    private final boolean enabled;
+    private final Duration window;
+    private final int maxImports;
+    private final int committers;
+    private final Duration timeout;
+    private final List<BlockingQueue<PendingImport>> queues = new ArrayList<>();
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public ImportCoalescer(ShopService shopService,
+            JdbcTemplate jdbcTemplate,
+            ConcurrencyRetry concurrencyRetry,
+            MeterRegistry meterRegistry,
+            @Value("${megamarket.import.coalescing.enabled}") boolean enabled,
+            @Value("${megamarket.import.coalescing.window}") Duration window,
+            @Value("${megamarket.import.coalescing.max-imports}") int maxImports,
+            @Value("${megamarket.import.coalescing.committers}") int committers,
+            @Value("${megamarket.import.coalescing.timeout}") Duration timeout) {
+        this.shopService = shopService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.concurrencyRetry = concurrencyRetry;
+        this.meterRegistry = meterRegistry;
+        this.enabled = enabled;
+        this.window = window;
+        this.maxImports = maxImports;
+        this.committers = committers;
+        this.timeout = timeout;
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+
+        running = true;
+        for (int i = 1; i <= committers; i++) {
+            BlockingQueue<PendingImport> queue = new LinkedBlockingQueue<>();
+            Thread committer = new Thread(() -> commitLoop(queue), "import-coalescer-" + i);
+            committer.setDaemon(true);
+            queues.add(queue);
+            threads.add(committer);
+            committer.start();
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        for (Thread committer : threads) {
+            committer.interrupt();
+            committer.join();
+        }
+
+        List<PendingImport> rejected = new ArrayList<>();
+        queues.forEach(queue -> queue.drainTo(rejected));
+        rejected.forEach(p -> p.result().completeExceptionally(
+            new IllegalStateException("Import coalescer is stopped")));
+    }
+
+    /**
+     * Imports data into catalog, as {@link ShopService#importData} does.
+     *
+     * @throws IdentityIsNotUniqueException in case ids are not unique
+     */
+    public void importData(Collection<ShopUnitImport> items, Instant updateDate) {
+        if (!enabled) {
+            shopService.importData(items, updateDate);
+            return;
+        }
+
+        int committer = getCommitter(items);
+        if (!running || !threads.get(committer).isAlive()) {
+            throw new IllegalStateException("Import coalescer is stopped");
+        }
+
+        PendingImport pending = new PendingImport(items, updateDate, new CompletableFuture<>());
+        queues.get(committer).add(pending);
+        try {
+            pending.result().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new IllegalStateException("Coalesced import isn't committed in " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Import is interrupted", e);
+        }
+    }
+
+    /**
+     * Returns committer of the tree with the least root the import touches.
+     */
+    private int getCommitter(Collection<ShopUnitImport> items) {
+        if (committers == 1) {
+            return 0;
+        }
+
+        return shopService.getTreeIds(items).stream()
+            .min(Comparator.naturalOrder())
+            .map(root -> Math.floorMod(root.hashCode(), committers))
+            .orElse(0);
+    }
+
+    private void commitLoop(BlockingQueue<PendingImport> queue) {
+        while (running) {
+            List<PendingImport> batch = new ArrayList<>();
+            try {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + window.toNanos();
+                while (batch.size() < maxImports) {
+                    PendingImport next =
+                        queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+            } catch (InterruptedException e) {
+                queue.addAll(batch);
+                return;
+            }
+
+            commit(batch);
+        }
+    }
+
+    /**
+     * Applies imports by a single transaction, a failed import is rolled back alone.
+     * Callers are completed once the transaction is committed, since a retried
+     * window may end up differently. Any failure of the window, including an error,
+     * fails all its imports, while the committer goes on with the next window.
+     */
+    private void commit(List<PendingImport> batch) {
+        meterRegistry.summary(BATCH_SIZE).record(batch.size());
+
+        Map<PendingImport, RuntimeException> failures = new HashMap<>();
+        Throwable windowFailure = null;
+        try {
+            concurrencyRetry.run(OPERATION, () -> {
+                failures.clear();
+                List<ShopService.AppliedImport> applied = new ArrayList<>();
+                for (PendingImport pending : batch) {
+                    jdbcTemplate.execute(SAVEPOINT);
+                    try {
+                        applied.add(shopService.applyImport(pending.items(), pending.updateDate()));
+                    } catch (ConcurrencyFailureException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        jdbcTemplate.execute(ROLLBACK_TO_SAVEPOINT);
+                        failures.put(pending, e);
+                        continue;
+                    }
+                    jdbcTemplate.execute(RELEASE_SAVEPOINT);
+                }
+                applied.forEach(ShopService.AppliedImport::publish);
+            });
+        } catch (Throwable e) {
+            log.warn("Coalesced imports failed to commit", e);
+            windowFailure = e;
+        } finally {
+            for (PendingImport pending : batch) {
+                Throwable failure = windowFailure != null
+                    ? windowFailure
+                    : failures.get(pending);
+                if (failure == null) {
+                    pending.result().complete(null);
+                } else {
+                    pending.result().completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private record PendingImport(Collection<ShopUnitImport> items, Instant updateDate,
+                                 CompletableFuture<Void> result) {
+
+    }
+}
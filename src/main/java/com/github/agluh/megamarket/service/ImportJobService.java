@@ -0,0 +1,250 @@
+package com.github.agluh.megamarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.github.agluh.megamarket.dto.ImportJob;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitImportRequest;
+import com.github.agluh.megamarket.model.PendingImportJob;
+import com.github.agluh.megamarket.repository.ImportJobRepository;
+import com.github.agluh.megamarket.service.exceptions.ImportJobNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.annotation.AnnotatedElementUtils;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Imports data into catalog asynchronously.
+ *
+ * <p>Submitted imports are queued in the database and processed by a fixed number
+ * of workers. A worker locks a job and imports it within the same transaction,
+ * so a job is either finished or stays queued even if the instance crashes.
+ * Failure of the import is recorded once it's rolled back, unless another worker
+ * has taken the job meanwhile. Trees of the catalog touched by a job are determined
+ * at submission, both by current and by imported parents, and a job isn't taken
+ * while an earlier queued job touches any of its trees. So imports of a tree
+ * are applied in order of submission, while imports of distinct trees
+ * are processed concurrently. A job failed by a deadlock or a serialization failure
+ * is left queued to be taken again, until it reaches the limit of attempts.
+ */
+@Slf4j
+@Service
+@ConditionalOnProperty(name = "megamarket.import-jobs.enabled", havingValue = "true")
+public class ImportJobService {
+
+    private static final String JOB_WAIT = "megamarket.import.job.wait";
+    private static final String JOB_DURATION = "megamarket.import.job.duration";
+    private static final String JOB_RETRIES = "megamarket.import.job.retries";
+
+    private static final TypeReference<List<ShopUnitImport>> ITEMS = new TypeReference<>() {
+    };
+
+    private final ShopService shopService;
+    private final ImportJobRepository importJobRepository;
+    private final ObjectWriter itemsWriter;
+    private final ObjectReader itemsReader;
+    private final TransactionTemplate jobTransaction;
+    private final MeterRegistry meterRegistry;
+    private final int workers;
+    private final int maxAttempts;
+    private final Duration pollInterval;
+    private final Semaphore wakeups = new Semaphore(0);
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+
+    public ImportJobService(ShopService shopService,
+            ImportJobRepository importJobRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${megamarket.import-jobs.workers}") int workers,
+            @Value("${megamarket.import-jobs.max-attempts}") int maxAttempts,
+            @Value("${megamarket.import-jobs.poll-interval}") Duration pollInterval) {
+        this.shopService = shopService;
+        this.importJobRepository = importJobRepository;
+        this.itemsWriter = objectMapper.writerFor(ITEMS);
+        this.itemsReader = objectMapper.readerFor(ITEMS)
+            .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.jobTransaction = new TransactionTemplate(transactionManager);
+        this.meterRegistry = meterRegistry;
+        this.workers = workers;
+        this.maxAttempts = maxAttempts;
+        this.pollInterval = pollInterval;
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 1; i <= workers; i++) {
+            Thread thread = new Thread(this::work, "import-job-worker-" + i);
+            thread.setDaemon(true);
+            thread.start();
+            threads.add(thread);
+        }
+    }
+
+    /**
+     * Stops taking new jobs and waits for running ones.
+     */
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        wakeups.release(workers);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+    }
+
+    /**
+     * Queues import of data into catalog.
+     *
+     * @return queued job
+     */
+    public ImportJob submit(ShopUnitImportRequest request) {
+        UUID jobId = UUID.randomUUID();
+        byte[] payload;
+        try {
+            payload = itemsWriter.writeValueAsBytes(request.getItems());
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+
+        importJobRepository.add(jobId, shopService.getTreeIds(request.getItems()),
+            request.getItems().size(), request.getUpdateDate(), Instant.now(), payload);
+        wakeups.release();
+
+        return getJob(jobId);
+    }
+
+    /**
+     * Returns import job by its identity.
+     *
+     * @throws ImportJobNotFoundException in case job not found by its identity
+     */
+    public ImportJob getJob(UUID jobId) {
+        return importJobRepository.findById(jobId).orElseThrow(ImportJobNotFoundException::new);
+    }
+
+    private void work() {
+        while (running) {
+            try {
+                if (!processNext()) {
+                    wakeups.tryAcquire(pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (RuntimeException e) {
+                log.warn("Import job worker failed, retrying in {}", pollInterval, e);
+                try {
+                    Thread.sleep(pollInterval.toMillis());
+                } catch (InterruptedException ie) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Processes the next available job, if any.
+     *
+     * @return true if a job is processed
+     */
+    boolean processNext() {
+        try {
+            return Boolean.TRUE.equals(jobTransaction.execute(status -> {
+                PendingImportJob job = importJobRepository.lockNext().orElse(null);
+                if (job == null) {
+                    return false;
+                }
+
+                Instant startedAt = Instant.now();
+                meterRegistry.timer(JOB_WAIT).record(Duration.between(job.createdAt(), startedAt));
+                try {
+                    List<ShopUnitImport> items = itemsReader.readValue(job.payload());
+                    shopService.importData(items, job.updateDate());
+                } catch (IOException | RuntimeException e) {
+                    throw new FailedImport(job.id(), startedAt, job.attempts() + 1, e);
+                }
+
+                finish(job.id(), startedAt, null);
+                return true;
+            }));
+        } catch (FailedImport e) {
+            if (e.getCause() instanceof ConcurrencyFailureException
+                    && e.attempts < maxAttempts) {
+                log.info("Import job {} is left queued after concurrency failure", e.jobId,
+                    e.getCause());
+                jobTransaction.executeWithoutResult(
+                    status -> importJobRepository.addAttempt(e.jobId));
+                meterRegistry.counter(JOB_RETRIES).increment();
+                return true;
+            }
+
+            log.info("Import job {} failed", e.jobId, e.getCause());
+            jobTransaction.executeWithoutResult(
+                status -> finish(e.jobId, e.startedAt, getResponseStatus(e.getCause())));
+            return true;
+        }
+    }
+
+    /**
+     * Finishes the job, failed one is finished by a separate transaction
+     * once the import is rolled back.
+     */
+    private void finish(UUID jobId, Instant startedAt, HttpStatus error) {
+        Instant finishedAt = Instant.now();
+        importJobRepository.finish(jobId, startedAt, finishedAt,
+            error != null ? error.value() : null,
+            error != null ? error.getReasonPhrase() : null);
+        meterRegistry.timer(JOB_DURATION, "status", error == null ? "done" : "failed")
+            .record(Duration.between(startedAt, finishedAt));
+    }
+
+    /**
+     * Returns status the synchronous import would respond with.
+     */
+    private static HttpStatus getResponseStatus(Throwable e) {
+        ResponseStatus status =
+            AnnotatedElementUtils.findMergedAnnotation(e.getClass(), ResponseStatus.class);
+        return status != null ? status.code() : HttpStatus.INTERNAL_SERVER_ERROR;
+    }
+
+    /**
+     * Carries failure of an import out of the rolled back transaction.
+     */
+    private static class FailedImport extends RuntimeException {
+
+        private final UUID jobId;
+        private final Instant startedAt;
+        private final int attempts;
+
+        FailedImport(UUID jobId, Instant startedAt, int attempts, Exception cause) {
+            super(cause);
+            this.jobId = jobId;
+            this.startedAt = startedAt;
+            this.attempts = attempts;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.agluh.megamarket.service;
+
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.repository.OfferRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Saves imported categories and offers, staging large imports over several connections.
+ *
+ * <p>Categories of a large import are grouped by dependency levels, every level and offers
+ * are split into chunks which are copied into staging tables in parallel, each chunk
+ * by its own connection outside of the import transaction. The import transaction
+ * merges every level as soon as all its chunks are staged, while chunks of next levels
+ * and of offers are still being copied. Offers are merged after all categories.
+ * Staged rows are deleted once the import is done, whether it succeeds or not.
+ * Small imports and imports with parallelism of one are saved by the import
+ * transaction alone.
+ *
+ * <p>Staging connections are shared by all imports, while each staged import holds
+ * a connection of its own waiting for them. So the number of imports staged at once
+ * is bounded by the connection pool size less the parallelism, imports above it are
+ * saved by their transactions alone instead of waiting for connections of the pool.
+ */
+@Slf4j
+@Component
+public class ImportPipeline {
+
+    private final CategoryRepository categoryRepository;
+    private final OfferRepository offerRepository;
+    private final int chunkSize;
+    private final int threshold;
+    private final ExecutorService executor;
+    private final Semaphore stagedImports;
+
+    public ImportPipeline(CategoryRepository categoryRepository,
+            OfferRepository offerRepository,
+            @Value("${megamarket.import.parallelism}") int parallelism,
+            @Value("${megamarket.import.chunk-size}") int chunkSize,
+            @Value("${megamarket.bulk-load.threshold}") int threshold,
+            @Value("${megamarket.import.pool-size}") int poolSize) {
+        this.categoryRepository = categoryRepository;
+        this.offerRepository = offerRepository;
+        this.chunkSize = chunkSize;
+        this.threshold = threshold;
+        this.executor = parallelism > 1 ? newExecutor(parallelism) : null;
+        this.stagedImports = new Semaphore(Math.max(poolSize - parallelism, 0));
+        if (executor != null && poolSize <= parallelism) {
+            log.warn("Connection pool of {} can't stage imports by {} connections",
+                poolSize, parallelism);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Starts saving of imported elements.
+     *
+     * @param levels categories grouped by dependency levels, parents go in earlier levels
+     * @param offers offers of the import
+     * @return saving to be closed once the import is done
+     */
+    public Saving start(List<List<Category>> levels, Collection<Offer> offers) {
+        int size = offers.size() + levels.stream().mapToInt(List::size).sum();
+        if (executor == null || size < threshold
+                || !TransactionSynchronizationManager.isActualTransactionActive()
+                || !stagedImports.tryAcquire()) {
+            return new DirectSaving(levels, offers);
+        }
+
+        try {
+            return new StagedSaving(levels, offers);
+        } catch (RuntimeException | Error e) {
+            stagedImports.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Saving of imported elements within the import transaction.
+     */
+    public interface Saving extends AutoCloseable {
+
+        /**
+         * Saves all categories, so they can be linked into the hierarchy.
+         */
+        void saveCategories();
+
+        /**
+         * Saves all offers, should be called after their categories are in the hierarchy.
+         */
+        void saveOffers();
+
+        @Override
+        void close();
+    }
+
+    private class DirectSaving implements Saving {
+
+        private final List<List<Category>> levels;
+        private final Collection<Offer> offers;
+
+        DirectSaving(List<List<Category>> levels, Collection<Offer> offers) {
+            this.levels = levels;
+            this.offers = offers;
+        }
+
+        @Override
+        public void saveCategories() {
+            categoryRepository.save(levels.stream().flatMap(List::stream).toList());
+        }
+
+        @Override
+        public void saveOffers() {
+            offerRepository.save(offers);
+        }
+
+        @Override
+        public void close() {
+            // Nothing is staged
+        }
+    }
+
+    private class StagedSaving implements Saving {
+
+        private final List<UUID> levelIds = new ArrayList<>();
+        private final List<List<Future<?>>> levelChunks = new ArrayList<>();
+        private final UUID offersId = UUID.randomUUID();
+        private final List<Future<?>> offerChunks;
+
+        /**
+         * Submits all chunks at once, lower levels first, so workers copy them
+         * in the order they are merged.
+         */
+        StagedSaving(List<List<Category>> levels, Collection<Offer> offers) {
+            for (List<Category> level : levels) {
+                UUID levelId = UUID.randomUUID();
+                levelIds.add(levelId);
+                levelChunks.add(submit(level,
+                    chunk -> categoryRepository.stage(levelId, chunk)));
+            }
+            offerChunks = submit(List.copyOf(offers),
+                chunk -> offerRepository.stage(offersId, chunk));
+        }
+
+        @Override
+        public void saveCategories() {
+            for (int i = 0; i < levelIds.size(); i++) {
+                await(levelChunks.get(i));
+                categoryRepository.mergeStaged(levelIds.get(i));
+            }
+        }
+
+        @Override
+        public void saveOffers() {
+            await(offerChunks);
+            offerRepository.mergeStaged(offersId);
+        }
+
+        /**
+         * Stops copying of chunks which aren't started yet and deletes staged rows
+         * by another connection, so they are deleted even if the import is rolled back.
+         */
+        @Override
+        public void close() {
+            try {
+                cancelAndDelete();
+            } finally {
+                stagedImports.release();
+            }
+        }
+
+        private void cancelAndDelete() {
+            List<Future<?>> chunks = new ArrayList<>(offerChunks);
+            levelChunks.forEach(chunks::addAll);
+            chunks.forEach(chunk -> chunk.cancel(false));
+            for (Future<?> chunk : chunks) {
+                try {
+                    chunk.get();
+                } catch (ExecutionException | CancellationException e) {
+                    // Failure is reported by the import itself
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+            }
+
+            try {
+                await(List.of(executor.submit(() -> {
+                    categoryRepository.deleteStaged(levelIds);
+                    offerRepository.deleteStaged(List.of(offersId));
+                })));
+            } catch (RuntimeException e) {
+                log.warn("Failed to delete staged rows of import", e);
+            }
+        }
+
+        private <T> List<Future<?>> submit(List<T> items, ChunkStage<T> stage) {
+            List<Future<?>> chunks = new ArrayList<>();
+            for (int from = 0; from < items.size(); from += chunkSize) {
+                List<T> chunk = items.subList(from, Math.min(from + chunkSize, items.size()));
+                chunks.add(executor.submit(() -> stage.stage(chunk)));
+            }
+
+            return chunks;
+        }
+    }
+
+    /**
+     * Copies a chunk of elements into staging table.
+     */
+    @FunctionalInterface
+    private interface ChunkStage<T> {
+
+        void stage(List<T> chunk);
+    }
+
+    /**
+     * Waits for all chunks, rethrowing failure of any of them.
+     */
+    private static void await(List<Future<?>> chunks) {
+        for (Future<?> chunk : chunks) {
+            try {
+                chunk.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                if (e.getCause() instanceof Error cause) {
+                    throw cause;
+                }
+                throw new IllegalStateException(e.getCause());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Import is interrupted", e);
+            }
+        }
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        AtomicInteger threads = new AtomicInteger();
+        return Executors.newFixedThreadPool(parallelism, task -> {
+            Thread thread = new Thread(task, "import-stage-" + threads.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.agluh.megamarket.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.io.UncheckedIOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Cache of serialized responses for catalog nodes with their subtrees.
+ *
+ * <p>Size of the cache is bounded by total length of cached responses.
+ * Changing of a node invalidates it and all its upstream categories,
+ * both previous and current ones. Concurrent requests of the same node wait
+ * for a single load, a load that races with invalidation of the node can't be cached.
+ * A load runs outside of cache locks, so a virtual thread waiting for a database
+ * connection there doesn't pin its carrier.
+ * Invalidation runs after the in-memory catalog index is refreshed, if any.
+ */
+@Component
+public class NodeResponseCache {
+
+    private final AsyncCache<UUID, byte[]> cache;
+    private final ObjectMapper objectMapper;
+    private final CategoryRepository categoryRepository;
+    private final boolean enabled;
+
+    public NodeResponseCache(ObjectMapper objectMapper,
+            CategoryRepository categoryRepository,
+            MeterRegistry meterRegistry,
+            @Value("${megamarket.node-cache.enabled}") boolean enabled,
+            @Value("${megamarket.node-cache.max-bytes}") long maxBytes) {
+        this.objectMapper = objectMapper;
+        this.categoryRepository = categoryRepository;
+        this.enabled = enabled;
+        this.cache = Caffeine.newBuilder()
+            .maximumWeight(maxBytes)
+            .weigher((UUID id, byte[] response) -> response.length)
+            .recordStats()
+            .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "nodes");
+    }
+
+    /**
+     * Returns serialized node, loading it by passed supplier if it's not cached.
+     */
+    public byte[] get(UUID nodeId, Supplier<?> loader) {
+        if (!enabled) {
+            return serialize(loader.get());
+        }
+
+        CompletableFuture<byte[]> loading = new CompletableFuture<>();
+        CompletableFuture<byte[]> cached = cache.get(nodeId, (id, executor) -> loading);
+        if (cached != loading) {
+            return join(cached);
+        }
+
+        try {
+            loading.complete(serialize(loader.get()));
+        } catch (RuntimeException | Error e) {
+            loading.completeExceptionally(e);
+            throw e;
+        }
+
+        return loading.join();
+    }
+
+    @Order(Ordered.LOWEST_PRECEDENCE)
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!enabled) {
+            return;
+        }
+
+        Set<UUID> invalidated = new HashSet<>(event.nodeIds());
+        if (!event.parentIds().isEmpty()) {
+            categoryRepository.getAllUpstreamCategories(event.parentIds()).stream()
+                .map(Category::getId)
+                .forEach(invalidated::add);
+        }
+        cache.synchronous().invalidateAll(invalidated);
+    }
+
+    /**
+     * Drops all cached responses.
+     */
+    public void invalidateAll() {
+        cache.synchronous().invalidateAll();
+    }
+
+    private static byte[] join(CompletableFuture<byte[]> response) {
+        try {
+            return response.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private byte[] serialize(Object node) {
+        try {
+            return objectMapper.writeValueAsBytes(node);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.agluh.megamarket.service;
+
+import com.github.agluh.megamarket.model.AggregateDrift;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.repository.StatisticsRepository;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Periodically verifies price aggregates of categories.
+ *
+ * <p>Aggregates are maintained incrementally during imports and deletes,
+ * so any bug there accumulates silently. This job recalculates them
+ * from scratch and reports every category which stored values differ.
+ * If repairing is enabled, drifted categories and their upstream categories
+ * get their prices recomputed without changing of dates.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class PriceAggregatesConsistencyCheck {
+
+    private final CategoryRepository categoryRepository;
+    private final StatisticsRepository statisticsRepository;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${megamarket.aggregates.consistency-check.repair}")
+    private boolean repair;
+
+    /**
+     * Returns list of categories with drifted aggregates.
+     */
+    @Scheduled(cron = "${megamarket.aggregates.consistency-check.cron}")
+    @Transactional
+    public Collection<AggregateDrift> check() {
+        Collection<AggregateDrift> drift = categoryRepository.findAggregateDrift();
+
+        if (drift.isEmpty()) {
+            log.info("Price aggregates of categories are consistent");
+            return drift;
+        }
+
+        drift.forEach(d -> log.warn("Price aggregate of category {} drifted: stored {}, actual {}",
+            d.categoryId(), d.stored(), d.actual()));
+        log.warn("Found {} categories with drifted price aggregates", drift.size());
+
+        if (repair) {
+            List<UUID> drifted = drift.stream().map(AggregateDrift::categoryId).toList();
+            categoryRepository.recomputePrices(drifted, null);
+            statisticsRepository.recordCategoriesWithAncestors(drifted);
+            eventPublisher.publishEvent(new CatalogChangedEvent(drifted, List.of()));
+            log.info("Price aggregates of {} categories were repaired", drift.size());
+        }
+
+        return drift;
+    }
+}
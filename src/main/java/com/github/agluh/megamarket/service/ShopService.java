@@ -1,87 +1,208 @@
 package com.github.agluh.megamarket.service;
 
+import com.github.agluh.megamarket.dto.SalesCursor;
 import com.github.agluh.megamarket.dto.ShopUnit;
 import com.github.agluh.megamarket.dto.ShopUnitImport;
 import com.github.agluh.megamarket.dto.ShopUnitStatistic;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
 import com.github.agluh.megamarket.model.Category;
 import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
 import com.github.agluh.megamarket.repository.CategoryRepository;
 import com.github.agluh.megamarket.repository.OfferRepository;
 import com.github.agluh.megamarket.repository.ShopUnitReadModel;
 import com.github.agluh.megamarket.repository.ShopUnitStatisticReadModel;
+import com.github.agluh.megamarket.repository.StatisticsRepository;
+import com.github.agluh.megamarket.repository.impl.InMemoryShopUnitReadModel;
 import com.github.agluh.megamarket.service.exceptions.IdentityIsNotUniqueException;
 import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Queue;
+import java.util.Optional;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
-import lombok.AllArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.lang.Nullable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * Provides management for catalog related tasks.
  */
 @Service
-@AllArgsConstructor
 public class ShopService {
 
+    private static final String IMPORT_ITEMS = "megamarket.import.items";
+    private static final String IMPORT_PHASE = "megamarket.import.phase";
+    private static final String IMPORT_REPRICED = "megamarket.import.categories.repriced";
+    private static final String IMPORT_UPSERTED = "megamarket.import.rows.upserted";
+    private static final String IMPORT_SKIPPED = "megamarket.import.rows.skipped";
+    private static final String NODE_TREE_SIZE = "megamarket.node.tree.size";
+    private static final String NODE_TREE_DEPTH = "megamarket.node.tree.depth";
+
     private final OfferRepository offerRepository;
     private final CategoryRepository categoryRepository;
     private final ShopUnitReadModel shopUnitReadModel;
+    private final ShopUnitReadModel subtreeReadModel;
     private final ShopUnitStatisticReadModel statisticReadModel;
+    private final StatisticsRepository statisticsRepository;
+    private final ApplicationEventPublisher eventPublisher;
+    private final MeterRegistry meterRegistry;
+    private final ImportPipeline importPipeline;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final boolean skipUnchanged;
+
+    public ShopService(OfferRepository offerRepository,
+            CategoryRepository categoryRepository,
+            ShopUnitReadModel shopUnitReadModel,
+            Optional<InMemoryShopUnitReadModel> catalogIndex,
+            ShopUnitStatisticReadModel statisticReadModel,
+            StatisticsRepository statisticsRepository,
+            ApplicationEventPublisher eventPublisher,
+            MeterRegistry meterRegistry,
+            ImportPipeline importPipeline,
+            ConcurrencyRetry concurrencyRetry,
+            @Value("${megamarket.import.skip-unchanged}") boolean skipUnchanged) {
+        this.offerRepository = offerRepository;
+        this.categoryRepository = categoryRepository;
+        this.shopUnitReadModel = shopUnitReadModel;
+        this.subtreeReadModel = catalogIndex.<ShopUnitReadModel>map(index -> index)
+            .orElse(shopUnitReadModel);
+        this.statisticReadModel = statisticReadModel;
+        this.statisticsRepository = statisticsRepository;
+        this.eventPublisher = eventPublisher;
+        this.meterRegistry = meterRegistry;
+        this.importPipeline = importPipeline;
+        this.concurrencyRetry = concurrencyRetry;
+        this.skipUnchanged = skipUnchanged;
+    }
 
     /**
      * Imports data into catalog.
      *
      * <p>For the best performance we do some logic on application side
      * before sending data to the storage. Firstly we separate offers
-     * and categories. Then we're sorting imported categories so that
+     * and categories. Then we're grouping imported categories by levels so that
      * all dependent categories being stored after their parents.
-     * After that we can safely store offers too. We're also keep
-     * list of categories being affected by this import, and then
-     * we'll run batch updating of prices and dates on them.
-     * If an element is changes their parent, we store id of previous parent
-     * in as separate field in the storage, so afterwards we can update them too.
+     * After that we can safely store offers too. Large imports are staged
+     * in parallel chunks by {@link ImportPipeline} while earlier levels are stored.
+     * Every category keeps sum and count of offer prices within its subtree,
+     * so instead of recalculating average prices we apply signed deltas
+     * to upstream categories: offers leaving a category are subtracted
+     * before the tree is changed, and offers coming to a category are added
+     * after that. Only categories moved to another parent together with their
+     * offers get their upstream prices recalculated from scratch, which is done
+     * by a single set-based statement.
+     * Hierarchy index of categories is kept in sync too: new categories
+     * are added to it and moved ones are re-linked together with their subtrees.
      * All elements being affected by this import operation (both implicitly or explicitly)
      * will get an updated date field.
+     * History entries of all changed elements are written at the end
+     * by one statement for offers and one for categories.
+     * Being enabled by {@code megamarket.import.skip-unchanged}, imported elements
+     * which name, parent and price are equal to stored ones are neither stored
+     * nor get a new date and a history entry.
+     * Once the import is committed, listeners are notified of imported elements.
+     * Every step is timed separately as a phase of importing.
+     * Before any change, trees of the catalog touched by the import are locked
+     * in order of their roots, so concurrent imports of overlapping trees are serialized
+     * instead of deadlocking on shared ancestors. Deadlocks still possible, e.g. when
+     * a tree is changed by another import before it's locked, are retried
+     * by {@link ConcurrencyRetry} unless the import joins an outer transaction.
+     * Stored rows the import is compared with are read once the trees are locked.
+     * Metrics of the import are recorded once it's committed.
      *
      * @param items collection of items to be imported
      * @param updateDate date of importing
      * @throws IdentityIsNotUniqueException in case ids are not unique
      */
-    @Transactional
     public void importData(Collection<ShopUnitImport> items, Instant updateDate) {
-        ensureIdUniqueness(items);
+        concurrencyRetry.run("import",
+            () -> applyImport(items, updateDate).publish());
+    }
+
+    /**
+     * Imports data into catalog within current transaction, as {@link #importData} does,
+     * except that neither the change is published nor metrics are recorded.
+     *
+     * @return applied import, which is to be published unless it's rolled back
+     */
+    AppliedImport applyImport(Collection<ShopUnitImport> items, Instant updateDate) {
+        final ImportMetrics metrics = new ImportMetrics();
+        metrics.add(registry -> registry.summary(IMPORT_ITEMS).record(items.size()));
 
-        Collection<Category> cats = items.stream()
+        metrics.timed("validate", () -> ensureIdUniqueness(items));
+
+        final StoredRows stored = metrics.timed("lock", () -> lockTrees(items));
+
+        Collection<Category> importedCats = items.stream()
             .filter(ShopUnitImport::isCategory)
             .map(e -> e.toCategory(updateDate))
             .collect(Collectors.toSet());
 
-        Collection<Offer> offers = items.stream()
+        Collection<Offer> importedOffers = items.stream()
             .filter(ShopUnitImport::isOffer)
             .map(e -> e.toOffer(updateDate))
             .collect(Collectors.toSet());
 
-        final Set<UUID> affectedCatsIds = getCategoriesWithUpdatedPrice(offers, cats);
+        final ImportChanges changes =
+            metrics.timed("diff", () ->
+                getCategoriesWithUpdatedPrice(importedOffers, importedCats, stored));
+
+        Collection<Category> cats =
+            withoutUnchanged(importedCats, Category::getId, changes, "category", metrics);
+        Collection<Offer> offers =
+            withoutUnchanged(importedOffers, Offer::getId, changes, "offer", metrics);
+
+        metrics.timed("detach", () ->
+            categoryRepository.applyAggregateDeltas(changes.detached(), updateDate));
+
+        List<List<Category>> levels = metrics.timed("order", () -> groupByDependencyLevel(cats));
+        try (ImportPipeline.Saving saving = importPipeline.start(levels, offers)) {
+            metrics.timed("save-categories", saving::saveCategories);
+            metrics.timed("hierarchy", () -> updateHierarchy(flatten(levels), changes));
+
+            metrics.timed("save-offers", saving::saveOffers);
+        }
+
+        metrics.timed("attach", () ->
+            categoryRepository.applyAggregateDeltas(changes.attached(), updateDate));
 
-        categoryRepository.save(orderByDependency(cats));
+        metrics.timed("recompute", () ->
+            categoryRepository.recomputePrices(changes.movedSubtrees(), updateDate));
 
-        offerRepository.save(offers);
+        metrics.timed("history", () -> writeHistory(cats, offers, changes));
 
-        updateCategoriesPrice(affectedCatsIds, updateDate);
+        recordImportSize(cats, offers, changes, metrics);
+
+        Set<UUID> parentIds = new HashSet<>(changes.previousParents());
+        items.stream()
+            .map(ShopUnitImport::getParentId)
+            .filter(Objects::nonNull)
+            .forEach(parentIds::add);
+        CatalogChangedEvent event = new CatalogChangedEvent(items.stream()
+            .map(ShopUnitImport::getId)
+            .filter(id -> !skipUnchanged || !changes.unchanged().contains(id))
+            .toList(), parentIds);
+
+        return new AppliedImport(event, metrics);
     }
 
     /**
@@ -94,12 +215,32 @@ public class ShopService {
      * @throws ShopUnitNotFoundException in case element not found by its identity
      */
     public ShopUnit getNode(UUID nodeId) {
-        Collection<ShopUnit> nodes = shopUnitReadModel.getNodeWithSubtree(nodeId);
+        Collection<ShopUnit> nodes = subtreeReadModel.getNodeWithSubtree(nodeId);
         if (nodes.isEmpty()) {
             throw new ShopUnitNotFoundException();
         }
 
-        return buildTree(nodes);
+        ShopUnit root = buildTree(nodes);
+        meterRegistry.summary(NODE_TREE_SIZE).record(nodes.size());
+        meterRegistry.summary(NODE_TREE_DEPTH).record(depth(root));
+
+        return root;
+    }
+
+    /**
+     * Retrieves an element of catalog with its subtree in columnar form,
+     * which takes much less memory for large subtrees than {@link #getNode(UUID)}.
+     *
+     * @return fetched node with its subtree
+     * @throws ShopUnitNotFoundException in case element not found by its identity
+     */
+    public ShopUnitTree getNodeTree(UUID nodeId) {
+        ShopUnitTree tree = subtreeReadModel.getSubtree(nodeId)
+            .orElseThrow(ShopUnitNotFoundException::new);
+        meterRegistry.summary(NODE_TREE_SIZE).record(tree.size());
+        meterRegistry.summary(NODE_TREE_DEPTH).record(tree.depth());
+
+        return tree;
     }
 
     /**
@@ -109,25 +250,65 @@ public class ShopService {
      * and products from them are deleted too.
      * All upstream categories being affected by this operation
      * will update their prices accordingly.
+     * The tree of the element is locked first, as by {@link #importData}.
      * This operation not changes last update date of any elements.
      *
      * @throws ShopUnitNotFoundException in case element not found by its identity
      */
-    @Transactional
     public void deleteNode(UUID nodeId) {
-        ShopUnit node = shopUnitReadModel.getNode(nodeId)
-            .orElseThrow(ShopUnitNotFoundException::new);
+        concurrencyRetry.run("delete", () -> delete(nodeId));
+    }
 
-        if (node.isCategory()) {
-            categoryRepository.delete(node.getId());
+    private void delete(UUID nodeId) {
+        StoredNode node = findStoredNode(nodeId);
+        Set<UUID> lockedTrees = new HashSet<>();
+        Set<UUID> treeIds = getTreeIds(List.of(node.treeMemberId()));
+        while (!lockedTrees.containsAll(treeIds)) {
+            categoryRepository.lockTrees(treeIds);
+            lockedTrees.addAll(treeIds);
+            // The node could be changed or moved to another tree before the lock is taken
+            node = findStoredNode(nodeId);
+            treeIds = getTreeIds(List.of(node.treeMemberId()));
+        }
+
+        Collection<UUID> removedIds = List.of(nodeId);
+        if (node.category()) {
+            removedIds = categoryRepository.getSubtreeIds(nodeId);
+            categoryRepository.delete(nodeId);
         } else {
-            offerRepository.delete(node.getId());
+            offerRepository.delete(nodeId);
         }
 
-        UUID parentId = node.getParentId();
-        if (parentId != null) {
-            updateCategoriesPrice(List.of(parentId), null);
+        UUID parentId = node.parentId();
+        if (parentId != null && !node.aggregate().isEmpty()) {
+            categoryRepository.applyAggregateDeltas(
+                Map.of(parentId, node.aggregate().negate()), null);
+            statisticsRepository.recordCategoriesWithAncestors(List.of(parentId));
         }
+
+        eventPublisher.publishEvent(new CatalogChangedEvent(removedIds,
+            parentId == null ? List.of() : List.of(parentId)));
+    }
+
+    /**
+     * Reads a node from the primary database, rather than from a read model,
+     * since the delete is based on it.
+     *
+     * @throws ShopUnitNotFoundException in case element not found by its identity
+     */
+    private StoredNode findStoredNode(UUID nodeId) {
+        Optional<Category> category =
+            categoryRepository.findByIds(List.of(nodeId)).stream().findAny();
+        if (category.isPresent()) {
+            return new StoredNode(nodeId, true, category.get().getParentId(),
+                Optional.ofNullable(category.get().getAggregate()).orElse(PriceAggregate.EMPTY));
+        }
+
+        Offer offer = offerRepository.findByIds(List.of(nodeId)).stream()
+            .findAny()
+            .orElseThrow(ShopUnitNotFoundException::new);
+        return new StoredNode(nodeId, false, offer.getParentId(),
+            PriceAggregate.of(offer.getPrice()));
     }
 
     /**
@@ -138,6 +319,26 @@ public class ShopService {
         return shopUnitReadModel.getOffersUpdatedBetween(from, now);
     }
 
+    /**
+     * Passes offers that being updated in last 24 hours from {@code now} to consumer
+     * one by one, so they aren't loaded into memory at once.
+     * No transaction is needed, so offers are streamed from the read replica if there is one.
+     */
+    public void streamSales(Instant now, Consumer<ShopUnit> consumer) {
+        Instant from = now.minus(24, ChronoUnit.HOURS);
+        shopUnitReadModel.streamOffersUpdatedBetween(from, now, consumer);
+    }
+
+    /**
+     * Returns a page of offers that being updated in last 24 hours from {@code now}.
+     *
+     * @param after position of the last offer of previous page, if any
+     */
+    public List<ShopUnit> getSales(Instant now, @Nullable SalesCursor after, int limit) {
+        Instant from = now.minus(24, ChronoUnit.HOURS);
+        return shopUnitReadModel.getOffersUpdatedBetween(from, now, after, limit);
+    }
+
     /**
      * Returns list of node statistics.
      */
@@ -153,7 +354,7 @@ public class ShopService {
      * @return root of the tree
      * @throws IdentityIsNotUniqueException in case ids are not unique
      */
-    private ShopUnit buildTree(Collection<ShopUnit> flatList) {
+    ShopUnit buildTree(Collection<ShopUnit> flatList) {
         Map<UUID, ShopUnit> map = new HashMap<>();
 
         flatList.forEach(item -> {
@@ -181,57 +382,160 @@ public class ShopService {
     }
 
     /**
-     * Reorders collection so that parent elements goes before any of their children.
+     * Groups categories by levels, so that parent of every category is either
+     * in a previous level or isn't imported at all. First level holds categories
+     * which parents aren't imported.
      */
-    private Collection<Category> orderByDependency(Collection<Category> categories) {
-        class Node<T> {
-            final T data;
-            final List<Node<T>> children = new ArrayList<>();
-            boolean isTopLevel = false;
-
-            public Node(T data) {
-                this.data = data;
+    List<List<Category>> groupByDependencyLevel(Collection<Category> categories) {
+        Map<UUID, List<Category>> children = new HashMap<>();
+        List<Category> level = new ArrayList<>();
+
+        Set<UUID> ids = categories.stream().map(Category::getId).collect(Collectors.toSet());
+        for (Category c : categories) {
+            UUID parentId = c.getParentId();
+            if (parentId == null || !ids.contains(parentId)) {
+                level.add(c);
+            } else {
+                children.computeIfAbsent(parentId, id -> new ArrayList<>()).add(c);
             }
+        }
 
-            public boolean isTopLevel() {
-                return isTopLevel;
+        List<List<Category>> levels = new ArrayList<>();
+        while (!level.isEmpty()) {
+            levels.add(level);
+            List<Category> next = new ArrayList<>();
+            for (Category c : level) {
+                next.addAll(children.getOrDefault(c.getId(), List.of()));
             }
+            level = next;
         }
 
-        Map<UUID, Node<Category>> map =
-            categories.stream().collect(Collectors.toMap(Category::getId, Node::new));
+        return levels;
+    }
 
-        for (Node<Category> n : map.values()) {
-            UUID parentId = n.data.getParentId();
-            if (parentId == null || !map.containsKey(parentId)) {
-                n.isTopLevel = true;
-                continue;
-            }
+    /**
+     * Returns roots of trees which imported items belong to, both before and after the import.
+     */
+    Set<UUID> getTreeIds(Collection<ShopUnitImport> items) {
+        return getTreeIds(items, loadStoredRows(items));
+    }
 
-            Node<Category> parent = map.get(parentId);
-            parent.children.add(n);
+    /**
+     * Locks trees which imported items belong to.
+     *
+     * <p>Rows read before the lock could be changed meanwhile, so they're read again
+     * once it's taken, and trees they've been moved to are locked too.
+     *
+     * @return stored rows read under the lock
+     */
+    private StoredRows lockTrees(Collection<ShopUnitImport> items) {
+        StoredRows stored = loadStoredRows(items);
+        Set<UUID> lockedTrees = new HashSet<>();
+        Set<UUID> treeIds = getTreeIds(items, stored);
+        while (!lockedTrees.containsAll(treeIds)) {
+            categoryRepository.lockTrees(treeIds);
+            lockedTrees.addAll(treeIds);
+            stored = loadStoredRows(items);
+            treeIds = getTreeIds(items, stored);
         }
 
-        List<Node<Category>> topNodes = map.values().stream()
-            .filter(Node::isTopLevel)
+        return stored;
+    }
+
+    /**
+     * Reads stored offers being imported and all upstream categories of imported items,
+     * their parents and previous parents.
+     */
+    StoredRows loadStoredRows(Collection<ShopUnitImport> items) {
+        List<UUID> offerIds = items.stream()
+            .filter(ShopUnitImport::isOffer)
+            .map(ShopUnitImport::getId)
             .toList();
+        Map<UUID, Offer> offers = offerRepository.findByIds(offerIds).stream()
+            .collect(Collectors.toMap(Offer::getId, Function.identity()));
+
+        Map<UUID, Category> categories = categoryRepository
+            .getAllUpstreamCategories(getReferencedIds(items, offers)).stream()
+            .collect(Collectors.toMap(Category::getId, Function.identity()));
+
+        return new StoredRows(offers, categories);
+    }
+
+    private Set<UUID> getTreeIds(Collection<ShopUnitImport> items, StoredRows stored) {
+        Map<UUID, UUID> storedParents = new HashMap<>();
+        stored.categories().values().forEach(c -> storedParents.put(c.getId(), c.getParentId()));
+        Map<UUID, UUID> importedParents = new HashMap<>(storedParents);
+        items.forEach(item -> importedParents.put(item.getId(), item.getParentId()));
 
-        Queue<Node<Category>> queue = new LinkedList<>(topNodes);
-        List<Category> orderedCategories = new LinkedList<>();
+        Set<UUID> treeIds = new HashSet<>();
+        getReferencedIds(items, stored.offers())
+            .forEach(id -> treeIds.add(getRoot(id, storedParents)));
+        items.forEach(item -> treeIds.add(getRoot(item.getId(), importedParents)));
+
+        return treeIds;
+    }
 
-        while (!queue.isEmpty()) {
-            Node<Category> n = queue.poll();
-            orderedCategories.add(n.data);
-            queue.addAll(n.children);
+    /**
+     * Returns imported categories, parents of imported items and previous parents
+     * of stored offers.
+     */
+    private static Set<UUID> getReferencedIds(Collection<ShopUnitImport> items,
+            Map<UUID, Offer> storedOffers) {
+        Set<UUID> referenced = new HashSet<>();
+        for (ShopUnitImport item : items) {
+            if (item.getParentId() != null) {
+                referenced.add(item.getParentId());
+            }
+            if (item.isCategory()) {
+                referenced.add(item.getId());
+            }
         }
+        storedOffers.values().stream()
+            .map(Offer::getParentId)
+            .filter(Objects::nonNull)
+            .forEach(referenced::add);
 
-        return orderedCategories;
+        return referenced;
+    }
+
+    /**
+     * Returns roots of trees which passed stored elements belong to.
+     */
+    private Set<UUID> getTreeIds(List<UUID> ids) {
+        Map<UUID, UUID> storedParents = getStoredParents(ids);
+        return ids.stream().map(id -> getRoot(id, storedParents)).collect(Collectors.toSet());
+    }
+
+    private Map<UUID, UUID> getStoredParents(Collection<UUID> ids) {
+        Map<UUID, UUID> parents = new HashMap<>();
+        for (Category c : categoryRepository.getAllUpstreamCategories(ids)) {
+            parents.put(c.getId(), c.getParentId());
+        }
+
+        return parents;
+    }
+
+    /**
+     * Returns the topmost ancestor known by passed parents. Walking stops at a cycle,
+     * since such an import fails anyway.
+     */
+    private static UUID getRoot(UUID id, Map<UUID, UUID> parents) {
+        UUID root = id;
+        for (int steps = 0; steps <= parents.size(); steps++) {
+            UUID parentId = parents.get(root);
+            if (parentId == null) {
+                return root;
+            }
+            root = parentId;
+        }
+
+        return root;
     }
 
     /**
      * Checks if all IDs in importing collection are unique.
      */
-    private void ensureIdUniqueness(Collection<ShopUnitImport> items) {
+    void ensureIdUniqueness(Collection<ShopUnitImport> items) {
         Map<UUID, ShopUnitImport> map = new HashMap<>();
 
         items.forEach(item -> {
@@ -244,42 +548,24 @@ public class ShopService {
     }
 
     /**
-     * Updates price and date (if passed) for list of collection IDs.
-     */
-    private void updateCategoriesPrice(Collection<UUID> catsIds, @Nullable Instant updateDate) {
-        Collection<Category> categories =
-            categoryRepository.getAllUpstreamCategories(catsIds);
-
-        for (Category c : categories) {
-            Long avgPrice = offerRepository.getAvgPriceOfCategory(c.getId());
-            c.setPrice(avgPrice);
-
-            if (updateDate != null) {
-                c.setDate(updateDate);
-            }
-        }
-
-        categoryRepository.save(categories);
-    }
-
-    /**
-     * Returns a list of IDs of categories that are affected in some way by
-     * offers importing.
+     * Returns changes of price aggregates of categories that are affected
+     * in some way by importing.
      *
      * <p>Category consider affected in case:
      * <ul>
      * <li>it has new offers</li>
      * <li>some offers has been removed from it</li>
      * <li>price of any offer has been changed</li>
+     * <li>subcategory with offers has been moved to or from it</li>
      * </ul>
      */
-    private Set<UUID> getCategoriesWithUpdatedPrice(Collection<Offer> importingOffers,
-            Collection<Category> importingCategories) {
-        Collection<Offer> oldOffers = offerRepository.findByIds(
-            importingOffers.stream().map(Offer::getId).toList());
-        Map<UUID, Offer> oldOffersMap =
-            oldOffers.stream().collect(Collectors.toMap(Offer::getId, Function.identity()));
-        List<UUID> affectedCats = new ArrayList<>();
+    ImportChanges getCategoriesWithUpdatedPrice(Collection<Offer> importingOffers,
+            Collection<Category> importingCategories, StoredRows stored) {
+        Map<UUID, Offer> oldOffersMap = stored.offers();
+        Map<UUID, PriceAggregate> detached = new HashMap<>();
+        Map<UUID, PriceAggregate> attached = new HashMap<>();
+        Set<UUID> previousParents = new HashSet<>();
+        Set<UUID> unchanged = new HashSet<>();
 
         for (Offer o : importingOffers) {
             UUID parentId = o.getParentId();
@@ -290,21 +576,25 @@ public class ShopService {
 
                 if (Objects.equals(parentId, oldParentId)) {
                     if (o.getPrice() != old.getPrice()) {
-                        affectedCats.add(parentId);
+                        addDelta(attached, parentId,
+                            new PriceAggregate(o.getPrice() - old.getPrice(), 0));
+                    } else if (Objects.equals(o.getName(), old.getName())) {
+                        unchanged.add(o.getId());
                     }
                 } else {
-                    affectedCats.add(parentId);
-                    affectedCats.add(oldParentId);
+                    addPreviousParent(previousParents, oldParentId);
+                    addDelta(detached, oldParentId, PriceAggregate.of(old.getPrice()).negate());
+                    addDelta(attached, parentId, PriceAggregate.of(o.getPrice()));
                 }
             } else {
-                affectedCats.add(parentId);
+                addDelta(attached, parentId, PriceAggregate.of(o.getPrice()));
             }
         }
 
-        Collection<Category> oldCats = categoryRepository.findByIds(
-            importingCategories.stream().map(Category::getId).toList());
-        Map<UUID, Category> oldCatsMap =
-            oldCats.stream().collect(Collectors.toMap(Category::getId, Function.identity()));
+        Map<UUID, Category> oldCatsMap = stored.categories();
+        List<UUID> movedSubtrees = new ArrayList<>();
+        Set<UUID> newCats = new HashSet<>();
+        Set<UUID> movedCats = new HashSet<>();
 
         for (Category c : importingCategories) {
             UUID parentId = c.getParentId();
@@ -313,15 +603,251 @@ public class ShopService {
                 Category old = oldCatsMap.get(c.getId());
                 UUID oldParentId = old.getParentId();
 
-                if (!Objects.equals(parentId, oldParentId) && old.getPrice() != null) {
-                    affectedCats.add(c.getId());
-                    affectedCats.add(oldParentId);
+                if (Objects.equals(parentId, oldParentId)) {
+                    if (Objects.equals(c.getName(), old.getName())) {
+                        unchanged.add(c.getId());
+                    }
+                } else {
+                    movedCats.add(c.getId());
+                    addPreviousParent(previousParents, oldParentId);
+
+                    if (!old.getAggregate().isEmpty()) {
+                        movedSubtrees.add(c.getId());
+                        movedSubtrees.add(oldParentId);
+                    }
                 }
+            } else {
+                newCats.add(c.getId());
             }
         }
 
-        return affectedCats.stream()
+        return new ImportChanges(detached, attached, movedSubtrees.stream()
             .filter(Objects::nonNull)
-            .collect(Collectors.toSet());
+            .collect(Collectors.toSet()), newCats, movedCats, previousParents, unchanged);
+    }
+
+    /**
+     * Updates hierarchy index for new and moved categories.
+     *
+     * <p>Categories are processed in passed order, so every category is linked
+     * after its parent. Consecutive new categories are linked by a single batch.
+     */
+    private void updateHierarchy(Collection<Category> orderedCategories, ImportChanges changes) {
+        List<Category> added = new ArrayList<>();
+
+        for (Category c : orderedCategories) {
+            if (changes.newCategories().contains(c.getId())) {
+                added.add(c);
+            } else if (changes.movedCategories().contains(c.getId())) {
+                categoryRepository.addToHierarchy(added);
+                added.clear();
+                categoryRepository.moveInHierarchy(c);
+            }
+        }
+
+        categoryRepository.addToHierarchy(added);
+    }
+
+    /**
+     * Records history of imported elements and upstream categories
+     * which prices or dates are changed by importing.
+     */
+    private void writeHistory(Collection<Category> categories, Collection<Offer> offers,
+            ImportChanges changes) {
+        statisticsRepository.recordOffers(offers.stream().map(Offer::getId).toList());
+
+        Set<UUID> changedCategories = new HashSet<>(changes.movedSubtrees());
+        categories.forEach(c -> changedCategories.add(c.getId()));
+        changedCategories.addAll(changes.detached().keySet());
+        changedCategories.addAll(changes.attached().keySet());
+        statisticsRepository.recordCategoriesWithAncestors(changedCategories);
+    }
+
+    /**
+     * Records number of upserted rows and number of categories which prices are changed
+     * directly. Upstream categories of them are re-priced too, but aren't counted.
+     */
+    private static void recordImportSize(Collection<Category> categories,
+            Collection<Offer> offers, ImportChanges changes, ImportMetrics metrics) {
+        Set<UUID> repriced = new HashSet<>(changes.movedSubtrees());
+        repriced.addAll(changes.detached().keySet());
+        repriced.addAll(changes.attached().keySet());
+        metrics.add(registry -> {
+            registry.counter(IMPORT_UPSERTED, "type", "category").increment(categories.size());
+            registry.counter(IMPORT_UPSERTED, "type", "offer").increment(offers.size());
+            registry.summary(IMPORT_REPRICED).record(repriced.size());
+        });
+    }
+
+    /**
+     * Drops imported elements equal to stored ones, if skipping of them is enabled.
+     */
+    private <T> Collection<T> withoutUnchanged(Collection<T> imported, Function<T, UUID> idOf,
+            ImportChanges changes, String type, ImportMetrics metrics) {
+        if (!skipUnchanged) {
+            return imported;
+        }
+
+        List<T> changed = imported.stream()
+            .filter(e -> !changes.unchanged().contains(idOf.apply(e)))
+            .toList();
+        int skipped = imported.size() - changed.size();
+        metrics.add(registry -> registry.counter(IMPORT_SKIPPED, "type", type).increment(skipped));
+
+        return changed;
+    }
+
+    private static List<Category> flatten(List<List<Category>> levels) {
+        return levels.stream().flatMap(List::stream).toList();
+    }
+
+    /**
+     * Returns number of levels in a tree.
+     */
+    private static int depth(ShopUnit root) {
+        int depth = 0;
+        List<ShopUnit> level = List.of(root);
+        while (!level.isEmpty()) {
+            depth++;
+            level = level.stream()
+                .flatMap(unit -> unit.getChildren().stream())
+                .toList();
+        }
+
+        return depth;
+    }
+
+    private static void addPreviousParent(Set<UUID> previousParents,
+            @Nullable UUID parentId) {
+        if (parentId != null) {
+            previousParents.add(parentId);
+        }
+    }
+
+    private static void addDelta(Map<UUID, PriceAggregate> deltas, @Nullable UUID categoryId,
+            PriceAggregate delta) {
+        if (categoryId != null) {
+            deltas.merge(categoryId, delta, PriceAggregate::plus);
+        }
+    }
+
+    /**
+     * Stored rows an import is compared with.
+     *
+     * @param offers stored offers being imported
+     * @param categories stored upstream categories of imported items, including
+     *                   imported categories themselves
+     */
+    record StoredRows(Map<UUID, Offer> offers, Map<UUID, Category> categories) {
+
+    }
+
+    /**
+     * Import applied within current transaction, which listeners aren't notified of yet.
+     */
+    final class AppliedImport {
+
+        private final CatalogChangedEvent event;
+        private final ImportMetrics metrics;
+
+        private AppliedImport(CatalogChangedEvent event, ImportMetrics metrics) {
+            this.event = event;
+            this.metrics = metrics;
+        }
+
+        /**
+         * Notifies listeners of the import and records its metrics once it's committed.
+         * Should be called within the transaction the import is applied by.
+         */
+        void publish() {
+            eventPublisher.publishEvent(event);
+            metrics.recordAfterCommit();
+        }
+    }
+
+    /**
+     * Metrics of an import, which are kept until it's committed,
+     * so attempts being rolled back aren't counted.
+     */
+    private final class ImportMetrics {
+
+        private final List<Consumer<MeterRegistry>> records = new ArrayList<>();
+
+        private void add(Consumer<MeterRegistry> record) {
+            records.add(record);
+        }
+
+        private void timed(String phase, Runnable action) {
+            timed(phase, () -> {
+                action.run();
+                return null;
+            });
+        }
+
+        private <T> T timed(String phase, Supplier<T> action) {
+            long start = System.nanoTime();
+            T result = action.get();
+            long duration = System.nanoTime() - start;
+            add(registry -> registry.timer(IMPORT_PHASE, "phase", phase)
+                .record(duration, TimeUnit.NANOSECONDS));
+
+            return result;
+        }
+
+        /**
+         * Records metrics once the current transaction is committed,
+         * or at once if there is no transaction.
+         */
+        private void recordAfterCommit() {
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                records.forEach(record -> record.accept(meterRegistry));
+                return;
+            }
+
+            TransactionSynchronizationManager.registerSynchronization(
+                new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        records.forEach(record -> record.accept(meterRegistry));
+                    }
+                });
+        }
+    }
+
+    /**
+     * Stored state of a node being deleted.
+     *
+     * @param aggregate sum and count of offer prices removed together with the node
+     */
+    private record StoredNode(UUID id, boolean category, @Nullable UUID parentId,
+                              PriceAggregate aggregate) {
+
+        /**
+         * Returns a category of the tree the node belongs to.
+         */
+        UUID treeMemberId() {
+            return category || parentId == null ? id : parentId;
+        }
+    }
+
+    /**
+     * Changes of catalog structure and price aggregates caused by importing.
+     *
+     * @param detached deltas to be applied to categories before the tree is changed
+     * @param attached deltas to be applied to categories after the tree is changed
+     * @param movedSubtrees categories which prices should be recalculated from scratch
+     * @param newCategories categories which aren't stored yet
+     * @param movedCategories stored categories which parent is changed
+     * @param previousParents categories which elements are moved to another parent
+     * @param unchanged stored elements which name, parent and price aren't changed
+     */
+    record ImportChanges(Map<UUID, PriceAggregate> detached,
+                         Map<UUID, PriceAggregate> attached,
+                         Set<UUID> movedSubtrees,
+                         Set<UUID> newCategories,
+                         Set<UUID> movedCategories,
+                         Set<UUID> previousParents,
+                         Set<UUID> unchanged) {
+
     }
 }
@@ -0,0 +1,79 @@
+package com.github.agluh.megamarket.service;
+
+import com.github.agluh.megamarket.repository.StatisticsRepository;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Maintains monthly partitions of statistics tables.
+ *
+ * <p>Partitions are created for a few upcoming months and for every month
+ * which rows got to default partitions, since update dates come from imports.
+ * Partitions older than retention period are dropped or, if archiving is enabled,
+ * detached and kept as regular tables. Zero retention keeps all partitions.
+ */
+@Slf4j
+@Component
+public class StatisticsPartitionMaintenance {
+
+    private final StatisticsRepository statisticsRepository;
+    private final int monthsAhead;
+    private final int retentionMonths;
+    private final boolean archive;
+
+    public StatisticsPartitionMaintenance(StatisticsRepository statisticsRepository,
+            @Value("${megamarket.statistics.partitions.months-ahead}") int monthsAhead,
+            @Value("${megamarket.statistics.partitions.retention-months}") int retentionMonths,
+            @Value("${megamarket.statistics.partitions.archive}") boolean archive) {
+        this.statisticsRepository = statisticsRepository;
+        this.monthsAhead = monthsAhead;
+        this.retentionMonths = retentionMonths;
+        this.archive = archive;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${megamarket.statistics.partitions.cron}")
+    @Transactional
+    public void maintain() {
+        maintain(YearMonth.now(ZoneOffset.UTC));
+    }
+
+    /**
+     * Maintains partitions as if passed month is the current one.
+     */
+    @Transactional
+    public void maintain(YearMonth currentMonth) {
+        for (YearMonth month : statisticsRepository.findMonthsWithoutPartition()) {
+            createPartitions(month);
+        }
+        for (int i = 0; i <= monthsAhead; i++) {
+            createPartitions(currentMonth.plusMonths(i));
+        }
+
+        if (retentionMonths <= 0) {
+            return;
+        }
+
+        YearMonth oldestKept = currentMonth.minusMonths(retentionMonths - 1L);
+        for (YearMonth month : statisticsRepository.findPartitions()) {
+            if (month.isBefore(oldestKept)) {
+                statisticsRepository.removePartitions(month, archive);
+                log.info("Statistics partitions for {} were {}", month,
+                    archive ? "detached" : "dropped");
+            }
+        }
+    }
+
+    private void createPartitions(YearMonth month) {
+        if (statisticsRepository.createPartitions(month)) {
+            log.info("Statistics partitions for {} were created", month);
+        }
+    }
+}
@@ -0,0 +1,356 @@
+package com.github.agluh.megamarket.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitImportRequest;
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.service.exceptions.IdentityIsNotUniqueException;
+import com.github.agluh.megamarket.service.exceptions.InvalidImportException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import javax.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Service;
+
+/**
+ * Imports data into catalog reading the request body token by token.
+ *
+ * <p>Items are validated as they arrive and imported by chunks of fixed size
+ * within a single transaction, so memory doesn't depend on size of the import
+ * as long as update date goes before items in the request. Otherwise, items
+ * are kept in memory until the date is read.
+ * An item which parent is neither stored nor imported yet is postponed
+ * until the parent arrives. Items which parents never arrive are imported
+ * at the end, so they fail the same way as in a regular import.
+ * The body is spooled to a temporary file first. Trees touched by the items are
+ * collected by a first pass over it and locked at once in order of their roots,
+ * as a regular import does, so concurrent imports don't lock trees chunk by chunk
+ * in different orders. A deadlock still possible, e.g. when a tree is changed
+ * before it's locked, is retried from the start by {@link ConcurrencyRetry}.
+ */
+@Slf4j
+@Service
+public class StreamingImportService {
+
+    private static final String ITEMS = "items";
+    private static final String UPDATE_DATE = "updateDate";
+
+    private final ShopService shopService;
+    private final ConcurrencyRetry concurrencyRetry;
+    private final CategoryRepository categoryRepository;
+    private final ObjectMapper objectMapper;
+    private final Validator validator;
+    private final int chunkSize;
+
+    public StreamingImportService(ShopService shopService,
+            ConcurrencyRetry concurrencyRetry,
+            CategoryRepository categoryRepository,
+            ObjectMapper objectMapper,
+            Validator validator,
+            @Value("${megamarket.import.chunk-size}") int chunkSize) {
+        this.shopService = shopService;
+        this.concurrencyRetry = concurrencyRetry;
+        this.categoryRepository = categoryRepository;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Imports data from JSON document with the same structure as {@link ShopUnitImportRequest}.
+     *
+     * @throws InvalidImportException in case the document is malformed or any item is invalid
+     * @throws IdentityIsNotUniqueException in case ids are not unique
+     */
+    public void importData(InputStream body) {
+        Path spool = null;
+        try {
+            spool = Files.createTempFile("megamarket-import-", ".json");
+            Files.copy(body, spool, StandardCopyOption.REPLACE_EXISTING);
+            Path spooled = spool;
+            concurrencyRetry.run("streaming-import", () -> {
+                categoryRepository.lockTrees(getTreeIds(spooled));
+                importSpooled(spooled);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            deleteQuietly(spool);
+        }
+    }
+
+    /**
+     * Returns roots of trees touched by spooled items, reading them by chunks.
+     * Parents imported by other chunks aren't known to a chunk, such items are locked
+     * by their own ids, while trees of those parents are locked by their chunks.
+     */
+    private Set<UUID> getTreeIds(Path spool) {
+        Set<UUID> treeIds = new HashSet<>();
+        List<ShopUnitImport> chunk = new ArrayList<>();
+        try (InputStream body = Files.newInputStream(spool);
+             JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidImportException();
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                if (parser.nextToken() != JsonToken.START_ARRAY || !ITEMS.equals(field)) {
+                    parser.skipChildren();
+                    continue;
+                }
+
+                while (parser.nextToken() != JsonToken.END_ARRAY) {
+                    chunk.add(readItem(parser));
+                    if (chunk.size() >= chunkSize) {
+                        treeIds.addAll(shopService.getTreeIds(chunk));
+                        chunk.clear();
+                    }
+                }
+            }
+        } catch (JsonProcessingException e) {
+            throw new InvalidImportException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        treeIds.addAll(shopService.getTreeIds(chunk));
+
+        return treeIds;
+    }
+
+    private void importSpooled(Path spool) {
+        try (InputStream body = Files.newInputStream(spool);
+             JsonParser parser = objectMapper.getFactory().createParser(body)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new InvalidImportException();
+            }
+
+            ChunkedImport chunkedImport = new ChunkedImport();
+            List<ShopUnitImport> itemsBeforeDate = null;
+            boolean itemsRead = false;
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                parser.nextToken();
+
+                if (UPDATE_DATE.equals(field) && chunkedImport.updateDate == null) {
+                    chunkedImport.updateDate = readUpdateDate(parser);
+                    if (itemsBeforeDate != null) {
+                        itemsBeforeDate.forEach(chunkedImport::add);
+                        itemsBeforeDate = null;
+                    }
+                } else if (ITEMS.equals(field) && !itemsRead) {
+                    if (parser.currentToken() != JsonToken.START_ARRAY) {
+                        throw new InvalidImportException();
+                    }
+
+                    itemsRead = true;
+                    if (chunkedImport.updateDate == null) {
+                        itemsBeforeDate = new ArrayList<>();
+                    }
+                    while (parser.nextToken() != JsonToken.END_ARRAY) {
+                        ShopUnitImport item = readItem(parser);
+                        if (itemsBeforeDate != null) {
+                            itemsBeforeDate.add(item);
+                        } else {
+                            chunkedImport.add(item);
+                        }
+                    }
+                } else {
+                    throw new InvalidImportException();
+                }
+            }
+
+            if (parser.currentToken() != JsonToken.END_OBJECT
+                    || !itemsRead || chunkedImport.updateDate == null) {
+                throw new InvalidImportException();
+            }
+
+            chunkedImport.finish();
+        } catch (JsonProcessingException e) {
+            throw new InvalidImportException(e);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void deleteQuietly(@Nullable Path spool) {
+        if (spool == null) {
+            return;
+        }
+
+        try {
+            Files.deleteIfExists(spool);
+        } catch (IOException e) {
+            log.warn("Failed to delete spooled import {}", spool, e);
+        }
+    }
+
+    /**
+     * Reads update date the same way as it's bound to {@link ShopUnitImportRequest}.
+     */
+    private Instant readUpdateDate(JsonParser parser) throws IOException {
+        ObjectNode request = objectMapper.createObjectNode();
+        request.set(UPDATE_DATE, parser.readValueAsTree());
+        Instant updateDate =
+            objectMapper.treeToValue(request, ShopUnitImportRequest.class).getUpdateDate();
+        if (updateDate == null) {
+            throw new InvalidImportException();
+        }
+
+        return updateDate;
+    }
+
+    private ShopUnitImport readItem(JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            throw new InvalidImportException();
+        }
+
+        ShopUnitImport item = objectMapper.readValue(parser, ShopUnitImport.class);
+        if (!validator.validate(item).isEmpty()) {
+            throw new InvalidImportException();
+        }
+
+        return item;
+    }
+
+    /**
+     * State of a single import being fed by chunks.
+     */
+    private class ChunkedImport {
+        Instant updateDate;
+        final Set<UUID> importedIds = new HashSet<>();
+        final Set<UUID> knownCategories = new HashSet<>();
+        final Map<UUID, List<ShopUnitImport>> postponed = new HashMap<>();
+        List<ShopUnitImport> chunk = new ArrayList<>();
+
+        void add(ShopUnitImport item) {
+            if (!importedIds.add(item.getId())) {
+                throw new IdentityIsNotUniqueException();
+            }
+
+            chunk.add(item);
+            if (chunk.size() >= chunkSize) {
+                flush();
+            }
+        }
+
+        void finish() {
+            flush();
+
+            List<ShopUnitImport> orphans = postponed.values().stream()
+                .flatMap(List::stream)
+                .toList();
+            if (!orphans.isEmpty()) {
+                shopService.importData(orphans, updateDate);
+            }
+        }
+
+        /**
+         * Imports current chunk except items with unknown parents,
+         * then imports postponed items which parents became known.
+         */
+        void flush() {
+            while (!chunk.isEmpty()) {
+                List<ShopUnitImport> ready = takeReady();
+                if (ready.isEmpty()) {
+                    return;
+                }
+
+                shopService.importData(ready, updateDate);
+
+                List<ShopUnitImport> released = new ArrayList<>();
+                ready.stream()
+                    .filter(ShopUnitImport::isCategory)
+                    .map(ShopUnitImport::getId)
+                    .forEach(id -> {
+                        knownCategories.add(id);
+                        List<ShopUnitImport> children = postponed.remove(id);
+                        if (children != null) {
+                            released.addAll(children);
+                        }
+                    });
+                chunk = released;
+            }
+        }
+
+        /**
+         * Removes items from current chunk which can be imported right now.
+         * Postponed items are not counted as known parents.
+         */
+        List<ShopUnitImport> takeReady() {
+            Set<UUID> chunkCategories = new HashSet<>();
+            Set<UUID> unknownParents = new HashSet<>();
+            for (ShopUnitImport item : chunk) {
+                if (item.isCategory()) {
+                    chunkCategories.add(item.getId());
+                }
+            }
+            for (ShopUnitImport item : chunk) {
+                UUID parentId = item.getParentId();
+                if (parentId != null && !knownCategories.contains(parentId)
+                        && !chunkCategories.contains(parentId)) {
+                    unknownParents.add(parentId);
+                }
+            }
+
+            if (!unknownParents.isEmpty()) {
+                categoryRepository.findByIds(unknownParents).stream()
+                    .map(Category::getId)
+                    .forEach(id -> {
+                        knownCategories.add(id);
+                        unknownParents.remove(id);
+                    });
+            }
+
+            /* Children of postponed categories have to be postponed too */
+            Set<UUID> postponedCategories = new HashSet<>();
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (ShopUnitImport item : chunk) {
+                    UUID parentId = item.getParentId();
+                    if (item.isCategory() && !postponedCategories.contains(item.getId())
+                            && parentId != null && (unknownParents.contains(parentId)
+                            || postponedCategories.contains(parentId))) {
+                        postponedCategories.add(item.getId());
+                        changed = true;
+                    }
+                }
+            }
+
+            List<ShopUnitImport> ready = new ArrayList<>();
+            for (ShopUnitImport item : chunk) {
+                UUID parentId = item.getParentId();
+                if (parentId != null && (unknownParents.contains(parentId)
+                        || postponedCategories.contains(parentId))) {
+                    postponed.computeIfAbsent(parentId, id -> new ArrayList<>()).add(item);
+                } else {
+                    ready.add(item);
+                }
+            }
+            chunk = new ArrayList<>();
+
+            return ready;
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.github.agluh.megamarket.service.exceptions;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * This error being thrown in case of malformed or invalid data during streaming import.
+ */
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+public class InvalidImportException extends RuntimeException {
+
+    public InvalidImportException() {
+    }
+
+    public InvalidImportException(Throwable cause) {
+        super(cause);
+    }
+}
@@ -0,0 +1,8 @@
+/* Statistics are written by the application once per import with set-based statements */
+DROP TRIGGER on_offer_updated ON offers;
+
+DROP TRIGGER on_category_updated ON categories;
+
+DROP FUNCTION insert_offer_statistics();
+
+DROP FUNCTION insert_category_statistics();
@@ -0,0 +1,22 @@
+/* Staging tables for bulk loading by COPY, rows of concurrent imports are separated by import_id */
+CREATE UNLOGGED TABLE offers_staging (
+    import_id UUID NOT NULL,
+    offer_id UUID NOT NULL,
+    category_id UUID,
+    offer_name VARCHAR NOT NULL,
+    price BIGINT NOT NULL,
+    last_update TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX offers_staging_import_idx ON offers_staging (import_id);
+
+CREATE UNLOGGED TABLE categories_staging (
+    import_id UUID NOT NULL,
+    category_id UUID NOT NULL,
+    parent_id UUID,
+    category_name VARCHAR NOT NULL,
+    price BIGINT,
+    last_update TIMESTAMP WITH TIME ZONE NOT NULL
+);
+
+CREATE INDEX categories_staging_import_idx ON categories_staging (import_id);
@@ -0,0 +1,22 @@
+CREATE TABLE category_closure (
+    ancestor_id UUID NOT NULL REFERENCES categories (category_id) ON DELETE CASCADE,
+    descendant_id UUID NOT NULL REFERENCES categories (category_id) ON DELETE CASCADE,
+    depth INTEGER NOT NULL,
+    PRIMARY KEY (ancestor_id, descendant_id)
+);
+
+CREATE INDEX category_closure_descendant_idx ON category_closure (descendant_id, ancestor_id);
+
+CREATE INDEX offers_category_idx ON offers (category_id);
+
+WITH RECURSIVE closure AS (
+    SELECT category_id AS ancestor_id, category_id AS descendant_id, 0 AS depth
+    FROM categories
+    UNION
+        SELECT closure.ancestor_id, c.category_id, closure.depth + 1
+        FROM categories c
+        INNER JOIN closure ON closure.descendant_id = c.parent_id
+)
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+SELECT ancestor_id, descendant_id, depth
+FROM closure;
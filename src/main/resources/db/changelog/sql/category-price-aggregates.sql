@@ -0,0 +1,28 @@
+ALTER TABLE categories
+    ADD COLUMN offer_sum BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN offer_count BIGINT NOT NULL DEFAULT 0;
+
+/* Backfill aggregates of already stored categories without touching statistics */
+ALTER TABLE categories DISABLE TRIGGER on_category_updated;
+
+WITH RECURSIVE tree AS (
+    SELECT category_id AS root_id, category_id
+    FROM categories
+    UNION
+        SELECT tree.root_id, c.category_id
+        FROM categories c
+        INNER JOIN tree ON tree.category_id = c.parent_id
+),
+actual AS (
+    SELECT tree.root_id, COALESCE(SUM(o.price), 0) AS offer_sum, COUNT(o.offer_id) AS offer_count
+    FROM tree
+    LEFT JOIN offers o ON o.category_id = tree.category_id
+    GROUP BY tree.root_id
+)
+UPDATE categories c
+SET offer_sum = actual.offer_sum,
+    offer_count = actual.offer_count
+FROM actual
+WHERE c.category_id = actual.root_id;
+
+ALTER TABLE categories ENABLE TRIGGER on_category_updated;
@@ -0,0 +1,3 @@
+/* Number of attempts of a job failed by deadlocks or serialization failures,
+a job is failed once it reaches the limit */
+ALTER TABLE import_jobs ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,22 @@
+/* Queue of asynchronous imports. A job being processed is locked by its worker and stays
+queued until the import is committed, so jobs of a crashed worker are processed again.
+Trees touched by a job are known at submission, jobs sharing a tree are processed by seq */
+CREATE TABLE import_jobs (
+    job_id UUID PRIMARY KEY,
+    seq BIGSERIAL NOT NULL,
+    status VARCHAR NOT NULL,
+    tree_ids UUID[] NOT NULL,
+    items INTEGER NOT NULL,
+    update_date TIMESTAMP WITH TIME ZONE NOT NULL,
+    payload BYTEA,
+    created_at TIMESTAMP WITH TIME ZONE NOT NULL,
+    started_at TIMESTAMP WITH TIME ZONE,
+    finished_at TIMESTAMP WITH TIME ZONE,
+    error_code INTEGER,
+    error_message VARCHAR
+);
+
+CREATE INDEX import_jobs_queued_idx ON import_jobs (seq) WHERE status = 'QUEUED';
+
+CREATE INDEX import_jobs_queued_trees_idx ON import_jobs USING GIN (tree_ids)
+    WHERE status = 'QUEUED';
@@ -0,0 +1,44 @@
+/* Path is a concatenation of '/' byte and binary UUID for every node from root to the node itself,
+so all descendants of a node have paths within [path, path || '0') range */
+ALTER TABLE categories ADD COLUMN path BYTEA;
+
+ALTER TABLE offers ADD COLUMN path BYTEA;
+
+/* Rewriting of paths alone shouldn't produce statistics entries */
+DROP TRIGGER on_offer_updated ON offers;
+
+CREATE TRIGGER on_offer_updated
+    AFTER INSERT OR UPDATE OF category_id, offer_name, price, last_update
+    ON offers
+    FOR EACH ROW
+EXECUTE PROCEDURE insert_offer_statistics();
+
+DROP TRIGGER on_category_updated ON categories;
+
+CREATE TRIGGER on_category_updated
+    AFTER INSERT OR UPDATE OF parent_id, category_name, price, last_update
+    ON categories
+    FOR EACH ROW
+EXECUTE PROCEDURE insert_category_statistics();
+
+WITH RECURSIVE paths AS (
+    SELECT category_id, '/'::bytea || uuid_send(category_id) AS path
+    FROM categories
+    WHERE parent_id IS NULL
+    UNION ALL
+        SELECT c.category_id, paths.path || '/'::bytea || uuid_send(c.category_id)
+        FROM categories c
+        INNER JOIN paths ON paths.category_id = c.parent_id
+)
+UPDATE categories c
+SET path = paths.path
+FROM paths
+WHERE c.category_id = paths.category_id;
+
+UPDATE offers o
+SET path = COALESCE((SELECT c.path FROM categories c WHERE c.category_id = o.category_id), ''::bytea)
+    || '/'::bytea || uuid_send(o.offer_id);
+
+CREATE INDEX categories_path_idx ON categories (path);
+
+CREATE INDEX offers_path_idx ON offers (path);
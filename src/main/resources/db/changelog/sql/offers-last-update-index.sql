@@ -0,0 +1,2 @@
+/* Serves both range queries of sales and keyset pagination over them */
+CREATE INDEX offers_last_update_idx ON offers (last_update, offer_id);
@@ -0,0 +1,25 @@
+/* Rows of the month are moved out of the default partition under its lock,
+so a row inserted meanwhile can't get there and fail the attachment */
+CREATE OR REPLACE FUNCTION create_statistics_partition(parent TEXT, month DATE)
+    RETURNS BOOLEAN AS
+$$
+DECLARE
+    partition TEXT := parent || '_p' || to_char(month, 'YYYY_MM');
+    lower_bound TIMESTAMP WITH TIME ZONE := month::timestamp AT TIME ZONE 'UTC';
+    upper_bound TIMESTAMP WITH TIME ZONE := (month + INTERVAL '1 month') AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('LOCK TABLE %I IN EXCLUSIVE MODE', parent || '_default');
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS)', partition, parent);
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE last_update >= $1 AND last_update < $2 '
+        'RETURNING *) INSERT INTO %I SELECT * FROM moved', parent || '_default', partition)
+        USING lower_bound, upper_bound;
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        parent, partition, lower_bound, upper_bound);
+    RETURN TRUE;
+END;
+$$
+    LANGUAGE 'plpgsql';
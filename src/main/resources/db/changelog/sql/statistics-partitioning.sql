@@ -0,0 +1,104 @@
+/* Statistics tables are partitioned by months of update date, rows for months
+without partition go to default partitions until partitions are created */
+DROP VIEW common_statistics;
+
+ALTER TABLE offers_statistics RENAME TO offers_statistics_old;
+
+ALTER TABLE categories_statistics RENAME TO categories_statistics_old;
+
+ALTER TABLE categories_statistics_old RENAME CONSTRAINT cat_stat_entry_unique TO cat_stat_entry_unique_old;
+
+CREATE TABLE offers_statistics (
+    id BIGINT NOT NULL DEFAULT nextval('offers_statistics_id_seq'),
+    offer_id UUID REFERENCES offers (offer_id) ON DELETE CASCADE,
+    category_id UUID,
+    offer_name VARCHAR NOT NULL,
+    price BIGINT NOT NULL,
+    last_update TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, last_update)
+) PARTITION BY RANGE (last_update);
+
+CREATE TABLE categories_statistics (
+    id BIGINT NOT NULL DEFAULT nextval('categories_statistics_id_seq'),
+    category_id UUID REFERENCES categories (category_id) ON DELETE CASCADE,
+    parent_id UUID,
+    category_name VARCHAR NOT NULL,
+    price BIGINT,
+    last_update TIMESTAMP WITH TIME ZONE NOT NULL,
+    PRIMARY KEY (id, last_update),
+    CONSTRAINT cat_stat_entry_unique UNIQUE (category_id, last_update)
+) PARTITION BY RANGE (last_update);
+
+CREATE INDEX offers_statistics_offer_idx ON offers_statistics (offer_id, last_update);
+
+CREATE TABLE offers_statistics_default PARTITION OF offers_statistics DEFAULT;
+
+CREATE TABLE categories_statistics_default PARTITION OF categories_statistics DEFAULT;
+
+ALTER SEQUENCE offers_statistics_id_seq OWNED BY offers_statistics.id;
+
+ALTER SEQUENCE categories_statistics_id_seq OWNED BY categories_statistics.id;
+
+/* Creates monthly partition of passed table, rows of the month are moved there
+from default partition. Returns false if the partition already exists. */
+CREATE FUNCTION create_statistics_partition(parent TEXT, month DATE)
+    RETURNS BOOLEAN AS
+$$
+DECLARE
+    partition TEXT := parent || '_p' || to_char(month, 'YYYY_MM');
+    lower_bound TIMESTAMP WITH TIME ZONE := month::timestamp AT TIME ZONE 'UTC';
+    upper_bound TIMESTAMP WITH TIME ZONE := (month + INTERVAL '1 month') AT TIME ZONE 'UTC';
+BEGIN
+    IF to_regclass(partition) IS NOT NULL THEN
+        RETURN FALSE;
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE %I INCLUDING DEFAULTS)', partition, parent);
+    EXECUTE format('WITH moved AS (DELETE FROM %I WHERE last_update >= $1 AND last_update < $2 '
+        'RETURNING *) INSERT INTO %I SELECT * FROM moved', parent || '_default', partition)
+        USING lower_bound, upper_bound;
+    EXECUTE format('ALTER TABLE %I ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+        parent, partition, lower_bound, upper_bound);
+    RETURN TRUE;
+END;
+$$
+    LANGUAGE 'plpgsql';
+
+INSERT INTO offers_statistics SELECT * FROM offers_statistics_old;
+
+INSERT INTO categories_statistics SELECT * FROM categories_statistics_old;
+
+DROP TABLE offers_statistics_old;
+
+DROP TABLE categories_statistics_old;
+
+SELECT create_statistics_partition('offers_statistics', month)
+FROM (
+    SELECT DISTINCT date_trunc('month', last_update AT TIME ZONE 'UTC')::date AS month
+    FROM offers_statistics
+) months;
+
+SELECT create_statistics_partition('categories_statistics', month)
+FROM (
+    SELECT DISTINCT date_trunc('month', last_update AT TIME ZONE 'UTC')::date AS month
+    FROM categories_statistics
+) months;
+
+CREATE VIEW common_statistics AS
+SELECT
+    category_id AS element_id,
+    parent_id,
+    category_name AS element_name,
+    'CATEGORY' as element_type,
+    price,
+    last_update
+FROM categories_statistics
+UNION ALL
+    SELECT
+        offer_id AS element_id,
+        category_id AS parent_id,
+        offer_name AS element_name,
+        'OFFER' as element_type,
+        price,
+        last_update
+    FROM offers_statistics;
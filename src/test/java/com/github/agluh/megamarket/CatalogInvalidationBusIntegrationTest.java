@@ -0,0 +1,141 @@
+package com.github.agluh.megamarket;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.awaitility.Awaitility.await;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.service.NodeResponseCache;
+import com.github.agluh.megamarket.service.ShopService;
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * Runs two application instances against the same database, both of them
+ * cache responses and keep the catalog index.
+ */
+class CatalogInvalidationBusIntegrationTest {
+
+    private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+    private static ConfigurableApplicationContext writer;
+    private static ConfigurableApplicationContext reader;
+
+    @BeforeAll
+    static void startInstances() {
+        writer = startInstance();
+        reader = startInstance();
+    }
+
+    @AfterAll
+    static void stopInstances() {
+        reader.close();
+        writer.close();
+    }
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(writer.getBean(JdbcTemplate.class),
+            "categories", "offers");
+    }
+
+    @Test
+    void givenCachedNodes_whenOfferUpdatedByAnotherInstance_thenUpstreamNodesShouldBeFresh() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport category = createCategory(root.getId(), "Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100);
+        importData(writer, List.of(root, category, offer), "2022-06-13T10:30:00.000Z");
+        await().atMost(TIMEOUT)
+            .untilAsserted(() -> then(cachedPrice(reader, root.getId())).isEqualTo(100));
+
+        // When
+        offer.setPrice(300L);
+        importData(writer, List.of(offer), "2022-06-14T10:30:00.000Z");
+
+        // Then
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            then(cachedPrice(reader, root.getId())).isEqualTo(300);
+            then(cachedPrice(reader, category.getId())).isEqualTo(300);
+            then(cachedPrice(reader, offer.getId())).isEqualTo(300);
+        });
+    }
+
+    @Test
+    void givenCachedNodes_whenOfferDeletedByAnotherInstance_thenItShouldBeEvicted()
+            throws IOException {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport first = createOffer(root.getId(), "First", 100);
+        final ShopUnitImport second = createOffer(root.getId(), "Second", 300);
+        importData(writer, List.of(root, first, second), "2022-06-13T10:30:00.000Z");
+        await().atMost(TIMEOUT)
+            .untilAsserted(() -> then(cachedPrice(reader, root.getId())).isEqualTo(200));
+        cachedPrice(reader, second.getId());
+
+        // When
+        writer.getBean(ShopService.class).deleteNode(second.getId());
+
+        // Then
+        await().atMost(TIMEOUT).untilAsserted(() -> {
+            then(cachedPrice(reader, root.getId())).isEqualTo(100);
+            then(catchNotFound(reader, second.getId())).isTrue();
+        });
+    }
+
+    private static ConfigurableApplicationContext startInstance() {
+        return new SpringApplicationBuilder(MegamarketApplication.class)
+            .web(WebApplicationType.NONE)
+            .run("--megamarket.invalidation-bus.enabled=true",
+                "--megamarket.node-cache.enabled=true",
+                "--megamarket.catalog-index.enabled=true");
+    }
+
+    private static void importData(ConfigurableApplicationContext instance,
+            List<ShopUnitImport> items, String date) {
+        instance.getBean(ShopService.class).importData(items, Instant.parse(date));
+    }
+
+    /**
+     * Reads node from response cache of the instance as the controller does.
+     */
+    private static long cachedPrice(ConfigurableApplicationContext instance, UUID id)
+            throws IOException {
+        ShopService shopService = instance.getBean(ShopService.class);
+        byte[] response = instance.getBean(NodeResponseCache.class)
+            .get(id, () -> shopService.getNode(id));
+        return instance.getBean(ObjectMapper.class).readTree(response).get("price").asLong();
+    }
+
+    private static boolean catchNotFound(ConfigurableApplicationContext instance, UUID id)
+            throws IOException {
+        try {
+            cachedPrice(instance, id);
+            return false;
+        } catch (ShopUnitNotFoundException e) {
+            return true;
+        }
+    }
+
+    private static ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private static ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
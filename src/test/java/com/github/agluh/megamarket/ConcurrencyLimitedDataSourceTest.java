@@ -0,0 +1,74 @@
+package com.github.agluh.megamarket;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.mock;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.time.Duration;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitedDataSourceTest {
+
+    @Mock
+    private DataSource target;
+
+    @Test
+    void givenAllPermitsTaken_whenGetConnection_thenWillThrowException() throws SQLException {
+        // Given
+        given(target.getConnection()).willReturn(mock(Connection.class));
+        final DataSource dataSource = limited(1);
+        dataSource.getConnection();
+
+        // When
+        final Throwable throwable = catchThrowable(dataSource::getConnection);
+
+        // Then
+        then(throwable).isInstanceOf(SQLTransientConnectionException.class);
+    }
+
+    @Test
+    void givenClosedConnection_whenGetConnection_thenPermitShouldBeReused() throws SQLException {
+        // Given
+        given(target.getConnection()).willReturn(mock(Connection.class));
+        final DataSource dataSource = limited(1);
+        final Connection connection = dataSource.getConnection();
+        connection.close();
+        connection.close();
+
+        // When
+        final Connection next = dataSource.getConnection();
+        final Throwable throwable = catchThrowable(dataSource::getConnection);
+
+        // Then
+        then(next).isNotNull();
+        then(throwable).isInstanceOf(SQLTransientConnectionException.class);
+    }
+
+    @Test
+    void givenFailedConnection_whenGetConnection_thenPermitShouldBeReturned() throws SQLException {
+        // Given
+        willThrow(new SQLException()).given(target).getConnection();
+        final DataSource dataSource = limited(1);
+        catchThrowable(dataSource::getConnection);
+
+        // When
+        final Throwable throwable = catchThrowable(dataSource::getConnection);
+
+        // Then
+        then(throwable).isExactlyInstanceOf(SQLException.class);
+    }
+
+    private DataSource limited(int permits) {
+        return new ConcurrencyLimitedDataSource(target, permits, Duration.ofMillis(50));
+    }
+}
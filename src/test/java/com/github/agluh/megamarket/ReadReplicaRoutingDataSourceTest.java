@@ -0,0 +1,227 @@
+package com.github.agluh.megamarket;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+import com.github.agluh.megamarket.ReadReplicaRoutingDataSource.ReadYourWrites;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import javax.sql.DataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+@ExtendWith(MockitoExtension.class)
+class ReadReplicaRoutingDataSourceTest {
+
+    private static final Instant NOW = Instant.parse("2022-06-01T00:00:00Z");
+    private static final Duration MAX_LAG = Duration.ofSeconds(5);
+    private static final Duration RETRY_AFTER = Duration.ofSeconds(30);
+    private static final CatalogChangedEvent CHANGE = new CatalogChangedEvent(List.of(), List.of());
+
+    @Mock
+    private DataSource primary;
+
+    @Mock
+    private DataSource replica;
+
+    @Mock
+    private Clock clock;
+
+    private final Connection primaryConnection = mock(Connection.class);
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        lenient().when(primary.getConnection()).thenReturn(primaryConnection);
+        lenient().when(clock.instant()).thenReturn(NOW);
+    }
+
+    @Test
+    void givenNoReplica_whenGetConnection_thenPrimaryShouldBeUsed() throws SQLException {
+        // Given
+        final DataSource dataSource = routing(null, ReadYourWrites.LSN);
+
+        // When
+        final Connection connection = dataSource.getConnection();
+
+        // Then
+        then(connection).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void givenReplica_whenGetConnection_thenReplicaShouldBeUsed() throws SQLException {
+        // Given
+        final Connection replicaConnection = mock(Connection.class);
+        given(replica.getConnection()).willReturn(replicaConnection);
+        final DataSource dataSource = routing(replica, ReadYourWrites.NONE);
+
+        // When
+        final Connection connection = dataSource.getConnection();
+
+        // Then
+        then(connection).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void givenCredentials_whenGetConnection_thenReplicaShouldBeUsedWithThem()
+            throws SQLException {
+        // Given
+        final Connection replicaConnection = mock(Connection.class);
+        given(replica.getConnection("reader", "secret")).willReturn(replicaConnection);
+        final DataSource dataSource = routing(replica, ReadYourWrites.NONE);
+
+        // When
+        final Connection connection = dataSource.getConnection("reader", "secret");
+
+        // Then
+        then(connection).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void givenActiveTransaction_whenGetConnection_thenPrimaryShouldBeUsed() throws SQLException {
+        // Given
+        final DataSource dataSource = routing(replica, ReadYourWrites.NONE);
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+
+        // When
+        final Connection connection;
+        try {
+            connection = dataSource.getConnection();
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Then
+        then(((ConnectionProxy) connection).getTargetConnection()).isSameAs(primaryConnection);
+        verifyNoInteractions(replica);
+    }
+
+    @Test
+    void givenUnavailableReplica_whenGetConnection_thenPrimaryShouldBeUsedUntilRetry()
+            throws SQLException {
+        // Given
+        final Connection replicaConnection = mock(Connection.class);
+        given(replica.getConnection())
+            .willThrow(new SQLException())
+            .willReturn(replicaConnection);
+        final DataSource dataSource = routing(replica, ReadYourWrites.NONE);
+        dataSource.getConnection();
+
+        // When
+        final Connection beforeRetry = dataSource.getConnection();
+        given(clock.instant()).willReturn(NOW.plus(RETRY_AFTER));
+        final Connection afterRetry = dataSource.getConnection();
+
+        // Then
+        then(beforeRetry).isSameAs(primaryConnection);
+        then(afterRetry).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void givenReplicaBehindLastChange_whenGetConnection_thenPrimaryShouldBeUsed()
+            throws SQLException {
+        // Given
+        final Connection primaryLsnConnection = lsnConnection("16/B374D848");
+        final Connection replicaLsnConnection = lsnConnection("16/B374D847");
+        given(primary.getConnection()).willReturn(primaryLsnConnection);
+        given(replica.getConnection()).willReturn(replicaLsnConnection);
+        final ReadReplicaRoutingDataSource dataSource = routing(replica, ReadYourWrites.LSN);
+        dataSource.onCatalogChanged(CHANGE);
+        given(primary.getConnection()).willReturn(primaryConnection);
+
+        // When
+        final Connection connection = dataSource.getConnection();
+
+        // Then
+        then(connection).isSameAs(primaryConnection);
+    }
+
+    @Test
+    void givenReplicaReplayedLastChange_whenGetConnection_thenReplicaShouldBeUsed()
+            throws SQLException {
+        // Given
+        final Connection replicaConnection = lsnConnection("17/0");
+        final Connection primaryLsnConnection = lsnConnection("16/B374D848");
+        given(primary.getConnection()).willReturn(primaryLsnConnection);
+        given(replica.getConnection()).willReturn(replicaConnection);
+        final ReadReplicaRoutingDataSource dataSource = routing(replica, ReadYourWrites.LSN);
+        dataSource.onCatalogChanged(CHANGE);
+
+        // When
+        final Connection connection = dataSource.getConnection();
+
+        // Then
+        then(connection).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void givenRecentChange_whenGetConnectionByTimestamp_thenPrimaryShouldBeUsedDuringLag()
+            throws SQLException {
+        // Given
+        final Connection replicaConnection = mock(Connection.class);
+        given(replica.getConnection()).willReturn(replicaConnection);
+        final ReadReplicaRoutingDataSource dataSource =
+            routing(replica, ReadYourWrites.TIMESTAMP);
+        dataSource.onCatalogChanged(CHANGE);
+
+        // When
+        final Connection duringLag = dataSource.getConnection();
+        given(clock.instant()).willReturn(NOW.plus(MAX_LAG));
+        final Connection afterLag = dataSource.getConnection();
+
+        // Then
+        then(duringLag).isSameAs(primaryConnection);
+        then(afterLag).isSameAs(replicaConnection);
+    }
+
+    @Test
+    void givenLsnText_whenParseLsn_thenOrderShouldBeKept() {
+        // When
+        final long low = ReadReplicaRoutingDataSource.parseLsn("16/B374D848");
+        final long high = ReadReplicaRoutingDataSource.parseLsn("17/0");
+
+        // Then
+        then(low).isEqualTo(0x16B374D848L);
+        then(high).isGreaterThan(low);
+    }
+
+    private ReadReplicaRoutingDataSource routing(DataSource replica,
+            ReadYourWrites readYourWrites) {
+        return new ReadReplicaRoutingDataSource(primary, replica, readYourWrites, MAX_LAG,
+            RETRY_AFTER, clock);
+    }
+
+    /**
+     * Returns connection answering any query with a single row holding passed LSN.
+     */
+    private static Connection lsnConnection(String lsn) throws SQLException {
+        final Connection connection = mock(Connection.class);
+        final Statement statement = mock(Statement.class);
+        final ResultSet rs = mock(ResultSet.class);
+        final ResultSetMetaData metaData = mock(ResultSetMetaData.class);
+        given(connection.createStatement()).willReturn(statement);
+        given(statement.executeQuery(anyString())).willReturn(rs);
+        given(rs.next()).willReturn(true, false);
+        given(rs.getString(1)).willReturn(lsn);
+        lenient().when(rs.getMetaData()).thenReturn(metaData);
+        lenient().when(metaData.getColumnCount()).thenReturn(1);
+
+        return connection;
+    }
+}
@@ -0,0 +1,155 @@
+package com.github.agluh.megamarket.controller;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT, properties = {
+    "megamarket.import-jobs.enabled=true",
+    "megamarket.import-jobs.poll-interval=100ms"
+})
+class ImportJobControllerIntegrationTest {
+
+    private static final String CATEGORY_ID = "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1";
+    private static final String IMPORT = """
+        {
+          "items": [
+            {
+              "id": "%s",
+              "name": "Category",
+              "type": "CATEGORY"
+            }
+          ],
+          "updateDate": "2022-05-28T21:12:01.000Z"
+        }
+        """.formatted(CATEGORY_ID);
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_OBJECT =
+        new ParameterizedTypeReference<>() {
+        };
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @LocalServerPort
+    private int randomServerPort;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers", "import_jobs");
+    }
+
+    @Test
+    void givenCorrectImportData_whenPostAsync_thenJobShouldBeAcceptedAndDone()
+            throws InterruptedException {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Map<String, Object>> accepted =
+            doJsonPost(baseUrl + "/imports?async=true", IMPORT);
+
+        // Then
+        then(accepted.getStatusCode()).isEqualTo(HttpStatus.ACCEPTED);
+        final String jobId = (String) accepted.getBody().get("id");
+        then(accepted.getHeaders().getLocation()).hasPath("/imports/" + jobId);
+        then(accepted.getBody()).extracting("items").isEqualTo(1);
+
+        Map<String, Object> job = accepted.getBody();
+        for (int i = 0; i < 100 && !"DONE".equals(job.get("status")); i++) {
+            Thread.sleep(100);
+            job = doGet(baseUrl + "/imports/" + jobId).getBody();
+        }
+        then(job).extracting("status").isEqualTo("DONE");
+        then(job).extracting("error").isNull();
+        then(restTemplate.getForEntity(baseUrl + "/nodes/" + CATEGORY_ID, Object.class)
+            .getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void givenCorrectImportData_whenPostWithoutAsync_thenResponseOk() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Map<String, Object>> responseEntity =
+            doJsonPost(baseUrl + "/imports", IMPORT);
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        then(restTemplate.getForEntity(baseUrl + "/nodes/" + CATEGORY_ID, Object.class)
+            .getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void givenIncorrectImportData_whenPostAsync_thenResponseBadRequest() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Map<String, Object>> responseEntity =
+            doJsonPost(baseUrl + "/imports?async=true", "{\"items\":[]}");
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "import_jobs")).isZero();
+    }
+
+    @Test
+    void givenNonExistedJob_whenGet_thenResponseNotFound() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Map<String, Object>> responseEntity =
+            doGet(baseUrl + "/imports/" + UUID.randomUUID());
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.NOT_FOUND);
+        then(responseEntity.getBody()).extracting("code").isEqualTo(404);
+    }
+
+    @Test
+    void givenMalformedJobId_whenGet_thenResponseBadRequest() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Map<String, Object>> responseEntity =
+            doGet(baseUrl + "/imports/not-a-uuid");
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+    }
+
+    private ResponseEntity<Map<String, Object>> doJsonPost(String url, String json) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setContentType(MediaType.APPLICATION_JSON);
+        HttpEntity<String> request = new HttpEntity<>(json, headers);
+
+        return restTemplate.exchange(url, HttpMethod.POST, request, JSON_OBJECT);
+    }
+
+    private ResponseEntity<Map<String, Object>> doGet(String url) {
+        return restTemplate.exchange(url, HttpMethod.GET, null, JSON_OBJECT);
+    }
+}
@@ -5,9 +5,14 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 
+import com.github.agluh.megamarket.dto.SalesCursor;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitType;
 import com.github.agluh.megamarket.service.ShopService;
 import java.net.URI;
+import java.time.Instant;
 import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 import java.util.stream.Stream;
 import org.junit.jupiter.api.Test;
@@ -15,6 +20,7 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.CsvFileSource;
 import org.junit.jupiter.params.provider.MethodSource;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
@@ -406,6 +412,56 @@ class ShopControllerIntegrationTest {
         then(responseEntity.getBody()).extracting("message").isEqualTo("Bad Request");
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"limit=0", "limit=10001", "limit=foo", "cursor=foo"})
+    public void givenInvalidPagingParam_whenGetSales_thenResponseBadRequest(String param) {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+
+        // When
+        ResponseEntity<Object> responseEntity = restTemplate.getForEntity(
+            baseUrl + "/sales?date=2022-05-28T21:12:01.000Z&" + param, Object.class);
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST);
+        then(responseEntity.getBody()).extracting("code").isEqualTo(400);
+    }
+
+    @Test
+    public void givenFullPage_whenGetSales_thenNextCursorShouldBeReturned() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+        final ShopUnit offer = new ShopUnit(UUID.randomUUID(), null, "Offer", 100L,
+            Instant.parse("2022-05-28T21:12:01.000Z"), ShopUnitType.OFFER);
+        given(shopService.getSales(any(), any(), eq(1))).willReturn(List.of(offer));
+
+        // When
+        ResponseEntity<Object[]> responseEntity = restTemplate.getForEntity(
+            baseUrl + "/sales?date=2022-05-28T21:12:01.000Z&limit=1", Object[].class);
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        then(responseEntity.getBody()).hasSize(1);
+        then(responseEntity.getHeaders().getFirst(ShopController.NEXT_CURSOR_HEADER))
+            .isEqualTo(SalesCursor.after(offer).encode());
+    }
+
+    @Test
+    public void givenLastPage_whenGetSales_thenNextCursorShouldNotBeReturned() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+        given(shopService.getSales(any(), any(), eq(2))).willReturn(List.of());
+
+        // When
+        ResponseEntity<Object[]> responseEntity = restTemplate.getForEntity(
+            baseUrl + "/sales?date=2022-05-28T21:12:01.000Z&limit=2", Object[].class);
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        then(responseEntity.getBody()).isEmpty();
+        then(responseEntity.getHeaders().containsKey(ShopController.NEXT_CURSOR_HEADER)).isFalse();
+    }
+
     @Test
     public void givenNotExistedEndpoint_whenGet_thenResponseNotFound() {
         // Given
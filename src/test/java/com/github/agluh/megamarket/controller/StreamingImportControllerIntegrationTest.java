@@ -0,0 +1,11 @@
+package com.github.agluh.megamarket.controller;
+
+import org.springframework.test.context.TestPropertySource;
+
+/**
+ * Runs all controller scenarios with streaming import enabled.
+ */
+@TestPropertySource(properties = "megamarket.import.streaming=true")
+class StreamingImportControllerIntegrationTest extends ShopControllerIntegrationTest {
+
+}
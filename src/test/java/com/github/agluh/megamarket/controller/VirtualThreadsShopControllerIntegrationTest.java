@@ -0,0 +1,61 @@
+package com.github.agluh.megamarket.controller;
+
+import static org.assertj.core.api.BDDAssertions.then;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.service.ShopService;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.SpringBootTest.WebEnvironment;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+
+/**
+ * Requests are handled on virtual threads here.
+ */
+@SpringBootTest(webEnvironment = WebEnvironment.RANDOM_PORT,
+    properties = "megamarket.execution.mode=virtual-threads")
+class VirtualThreadsShopControllerIntegrationTest {
+
+    @MockBean
+    private ShopService shopService;
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @LocalServerPort
+    private int randomServerPort;
+
+    @Test
+    public void givenVirtualThreadsMode_whenGetNode_thenRequestShouldBeHandledOnVirtualThread() {
+        // Given
+        final String baseUrl = "http://localhost:" + randomServerPort;
+        final UUID nodeId = UUID.randomUUID();
+        final AtomicBoolean handledOnVirtualThread = new AtomicBoolean();
+        given(shopService.getNodeTree(any())).willAnswer(invocation -> {
+            handledOnVirtualThread.set(Thread.currentThread().isVirtual());
+            return new ShopUnitTree.Builder()
+                .add(nodeId, null, "Offer", 100L,
+                    Instant.parse("2022-05-28T21:12:01.000Z").toEpochMilli(), ShopUnitType.OFFER)
+                .build();
+        });
+
+        // When
+        ResponseEntity<Object> responseEntity =
+            restTemplate.getForEntity(baseUrl + "/nodes/" + nodeId, Object.class);
+
+        // Then
+        then(responseEntity.getStatusCode()).isEqualTo(HttpStatus.OK);
+        then(handledOnVirtualThread).isTrue();
+    }
+}
@@ -0,0 +1,96 @@
+package com.github.agluh.megamarket.dto;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ShopUnitTreeTest {
+
+    private static final long DATE = 1_654_000_000_000L;
+
+    @Test
+    void givenNodesInAnyOrder_whenBuild_thenNodesShouldBeLinked() {
+        // Given
+        final UUID rootId = UUID.randomUUID();
+        final UUID childId = UUID.randomUUID();
+        final UUID offerId = UUID.randomUUID();
+        final ShopUnitTree.Builder builder = new ShopUnitTree.Builder()
+            .add(offerId, childId, "Offer", 100L, DATE, ShopUnitType.OFFER)
+            .add(childId, rootId, "Child", 100L, DATE, ShopUnitType.CATEGORY)
+            .add(rootId, null, "Root", null, DATE, ShopUnitType.CATEGORY);
+
+        // When
+        final ShopUnitTree tree = builder.build();
+
+        // Then
+        final int root = tree.root();
+        final int child = tree.firstChild(root);
+        final int offer = tree.firstChild(child);
+        then(tree.size()).isEqualTo(3);
+        then(tree.id(root)).isEqualTo(rootId);
+        then(tree.rootParentId()).isNull();
+        then(tree.hasPrice(root)).isFalse();
+        then(tree.id(child)).isEqualTo(childId);
+        then(tree.nextSibling(child)).isEqualTo(ShopUnitTree.NONE);
+        then(tree.id(offer)).isEqualTo(offerId);
+        then(tree.parent(offer)).isEqualTo(child);
+        then(tree.name(offer)).isEqualTo("Offer");
+        then(tree.price(offer)).isEqualTo(100L);
+        then(tree.dateMillis(offer)).isEqualTo(DATE);
+        then(tree.isCategory(offer)).isFalse();
+        then(tree.firstChild(offer)).isEqualTo(ShopUnitTree.NONE);
+        then(tree.depth()).isEqualTo(3);
+    }
+
+    @Test
+    void givenBranchingTree_whenDepth_thenLongestBranchShouldBeCounted() {
+        // Given
+        final UUID rootId = UUID.randomUUID();
+        final UUID shortId = UUID.randomUUID();
+        final UUID longId = UUID.randomUUID();
+        final ShopUnitTree tree = new ShopUnitTree.Builder()
+            .add(rootId, UUID.randomUUID(), "Root", null, DATE, ShopUnitType.CATEGORY)
+            .add(longId, rootId, "Long", null, DATE, ShopUnitType.CATEGORY)
+            .add(UUID.randomUUID(), longId, "Offer", 1L, DATE, ShopUnitType.OFFER)
+            .add(shortId, rootId, "Short", null, DATE, ShopUnitType.CATEGORY)
+            .add(UUID.randomUUID(), rootId, "Offer", 1L, DATE, ShopUnitType.OFFER)
+            .build();
+
+        // When
+        final int depth = tree.depth();
+
+        // Then
+        then(depth).isEqualTo(3);
+    }
+
+    @Test
+    void givenDuplicatedIdentity_whenBuild_thenWillThrowException() {
+        // Given
+        final UUID id = UUID.randomUUID();
+        final ShopUnitTree.Builder builder = new ShopUnitTree.Builder()
+            .add(id, null, "Root", null, DATE, ShopUnitType.CATEGORY)
+            .add(id, null, "Root", null, DATE, ShopUnitType.CATEGORY);
+
+        // When
+        final Throwable throwable = catchThrowable(builder::build);
+
+        // Then
+        then(throwable).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void givenSeveralRoots_whenBuild_thenWillThrowException() {
+        // Given
+        final ShopUnitTree.Builder builder = new ShopUnitTree.Builder()
+            .add(UUID.randomUUID(), null, "Root", null, DATE, ShopUnitType.CATEGORY)
+            .add(UUID.randomUUID(), null, "Other root", null, DATE, ShopUnitType.CATEGORY);
+
+        // When
+        final Throwable throwable = catchThrowable(builder::build);
+
+        // Then
+        then(throwable).isInstanceOf(IllegalStateException.class);
+    }
+}
@@ -0,0 +1,11 @@
+package com.github.agluh.megamarket.load;
+
+/**
+ * Endpoints exercised by load generator.
+ */
+enum Endpoint {
+    IMPORTS,
+    NODES,
+    SALES,
+    STATISTIC
+}
@@ -0,0 +1,240 @@
+package com.github.agluh.megamarket.load;
+
+import static com.github.agluh.megamarket.serialization.ShopUnitSerializer.ISO8601_DATE_TIME;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.github.agluh.megamarket.MegamarketApplication;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+/**
+ * Replays mixed read/write workload against the application and reports
+ * latency percentiles and throughput per endpoint.
+ *
+ * <p>At first the whole synthetic catalog is imported by batches, then clients
+ * send requests to endpoints picked randomly by weights of the mix. Every import
+ * changes prices of a share of offers one minute later than the previous one,
+ * reads target random nodes and the latest date.
+ * Without {@code --url} the application is started in-process against
+ * the database configured by {@code DB_*} environment variables.
+ *
+ * @see LoadOptions
+ */
+public class LoadGenerator {
+
+    private static final Instant START_DATE = Instant.parse("2022-06-01T00:00:00.000Z");
+    private static final long HIGHEST_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final LoadOptions options;
+    private final String url;
+    private final SyntheticCatalog catalog;
+    private final HttpClient client = HttpClient.newHttpClient();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final AtomicLong importCount = new AtomicLong();
+
+    LoadGenerator(LoadOptions options, String url) {
+        this.options = options;
+        this.url = url;
+        this.catalog = new SyntheticCatalog(options.depth(), options.fanOut(),
+            options.offersPerCategory(), options.churn(), options.seed());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadOptions options = LoadOptions.parse(args);
+
+        ConfigurableApplicationContext app = null;
+        String url = options.url();
+        if (url == null) {
+            app = SpringApplication.run(MegamarketApplication.class, "--server.port=0");
+            url = "http://localhost:" + app.getEnvironment().getProperty("local.server.port");
+        }
+
+        try {
+            new LoadGenerator(options, url).run();
+        } finally {
+            if (app != null) {
+                app.close();
+            }
+        }
+    }
+
+    void run() throws Exception {
+        System.out.printf("Catalog of %d categories and %d offers, target %s%n",
+            catalog.categoryCount(), catalog.offerCount(), url);
+
+        Map<Endpoint, Stats> seed = newStats();
+        long seedStart = System.nanoTime();
+        for (List<ShopUnitImport> batch : catalog.seedBatches(options.batchSize())) {
+            send(Endpoint.IMPORTS, importRequest(batch), seed);
+        }
+        report("Seed", seed, System.nanoTime() - seedStart);
+
+        workload(options.warmup(), newStats());
+        Map<Endpoint, Stats> measured = newStats();
+        long elapsed = workload(options.duration(), measured);
+        report("Workload of " + options.threads() + " clients", measured, elapsed);
+    }
+
+    /**
+     * Runs mixed workload for passed duration, returns elapsed nanoseconds.
+     */
+    private long workload(Duration duration, Map<Endpoint, Stats> stats)
+            throws Exception {
+        if (duration.isZero()) {
+            return 0;
+        }
+
+        List<Endpoint> weighted = new ArrayList<>();
+        options.mix().forEach((endpoint, weight) -> {
+            for (int i = 0; i < weight; i++) {
+                weighted.add(endpoint);
+            }
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(options.threads());
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+        try {
+            List<Future<?>> clients = new ArrayList<>();
+            for (int i = 0; i < options.threads(); i++) {
+                Random random = new Random(options.seed() + i + importCount.get());
+                clients.add(executor.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = weighted.get(random.nextInt(weighted.size()));
+                        send(endpoint, request(endpoint, random), stats);
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> client : clients) {
+                client.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        return System.nanoTime() - start;
+    }
+
+    private HttpRequest request(Endpoint endpoint, Random random) {
+        Instant latest = START_DATE.plus(Duration.ofMinutes(importCount.get()));
+        return switch (endpoint) {
+            case IMPORTS -> importRequest(catalog.churnBatch(random, options.batchSize()));
+            case NODES -> get("/nodes/" + catalog.randomCategory(random));
+            case SALES -> get("/sales?date=" + ISO8601_DATE_TIME.format(latest));
+            case STATISTIC -> get("/node/" + catalog.randomNode(random) + "/statistic"
+                + "?dateStart=" + ISO8601_DATE_TIME.format(START_DATE)
+                + "&dateEnd=" + ISO8601_DATE_TIME.format(latest.plusSeconds(1)));
+        };
+    }
+
+    private HttpRequest importRequest(List<ShopUnitImport> items) {
+        Instant updateDate = START_DATE.plus(Duration.ofMinutes(importCount.incrementAndGet()));
+
+        ObjectNode body = objectMapper.createObjectNode();
+        ArrayNode array = body.putArray("items");
+        for (ShopUnitImport item : items) {
+            ObjectNode node = array.addObject();
+            node.put("id", item.getId().toString());
+            node.put("name", item.getName());
+            node.put("type", item.getType().name());
+            node.put("parentId", item.getParentId() != null ? item.getParentId().toString() : null);
+            node.put("price", item.getPrice());
+        }
+        body.put("updateDate", ISO8601_DATE_TIME.format(updateDate));
+
+        try {
+            return HttpRequest.newBuilder(URI.create(url + "/imports"))
+                .header("Content-Type", "application/json")
+                .POST(BodyPublishers.ofByteArray(objectMapper.writeValueAsBytes(body)))
+                .build();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private HttpRequest get(String path) {
+        return HttpRequest.newBuilder(URI.create(url + path)).GET().build();
+    }
+
+    /**
+     * Sends request and records its latency, failed requests are counted too.
+     */
+    private void send(Endpoint endpoint, HttpRequest request,
+            Map<Endpoint, Stats> stats) throws InterruptedException {
+        long start = System.nanoTime();
+        boolean failed;
+        try {
+            failed = client.send(request, BodyHandlers.discarding()).statusCode() >= 400;
+        } catch (IOException e) {
+            failed = true;
+        }
+        long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+
+        Stats s = stats.get(endpoint);
+        s.latency().recordValue(Math.min(micros, HIGHEST_LATENCY_MICROS));
+        if (failed) {
+            s.errors().incrementAndGet();
+        }
+    }
+
+    private static Map<Endpoint, Stats> newStats() {
+        Map<Endpoint, Stats> stats = new EnumMap<>(Endpoint.class);
+        for (Endpoint endpoint : Endpoint.values()) {
+            stats.put(endpoint,
+                new Stats(new ConcurrentHistogram(HIGHEST_LATENCY_MICROS, 3), new AtomicLong()));
+        }
+
+        return stats;
+    }
+
+    private static void report(String title, Map<Endpoint, Stats> stats, long elapsedNanos) {
+        double seconds = elapsedNanos / 1e9;
+        System.out.printf("%n%s, %.1f s%n", title, seconds);
+        System.out.printf("%-10s %10s %8s %10s %10s %10s %10s %10s%n",
+            "endpoint", "requests", "errors", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+        stats.forEach((endpoint, s) -> {
+            Histogram h = s.latency();
+            if (h.getTotalCount() == 0) {
+                return;
+            }
+
+            System.out.printf("%-10s %10d %8d %10.1f %10.2f %10.2f %10.2f %10.2f%n",
+                endpoint.name().toLowerCase(), h.getTotalCount(), s.errors().get(),
+                h.getTotalCount() / seconds,
+                h.getValueAtPercentile(50) / 1e3, h.getValueAtPercentile(99) / 1e3,
+                h.getValueAtPercentile(99.9) / 1e3, h.getMaxValue() / 1e3);
+        });
+    }
+
+    /**
+     * Latencies in microseconds and number of failed requests of an endpoint.
+     */
+    private record Stats(Histogram latency, AtomicLong errors) {
+
+    }
+}
@@ -0,0 +1,77 @@
+package com.github.agluh.megamarket.load;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Options of load generator passed as {@code --name=value} arguments.
+ *
+ * @param url base URL of running application, the application is started in-process if missed
+ * @param depth depth of categories tree
+ * @param fanOut number of subcategories of every non-leaf category
+ * @param offersPerCategory number of offers in every leaf category
+ * @param churn share of offers which prices are changed by a single import
+ * @param batchSize maximal number of items in a single import
+ * @param threads number of concurrent clients
+ * @param warmup duration of workload which is not measured
+ * @param duration duration of measured workload
+ * @param mix relative weights of endpoints in workload
+ * @param seed seed of catalog and workload
+ */
+record LoadOptions(String url,
+                   int depth,
+                   int fanOut,
+                   int offersPerCategory,
+                   double churn,
+                   int batchSize,
+                   int threads,
+                   Duration warmup,
+                   Duration duration,
+                   Map<Endpoint, Integer> mix,
+                   long seed) {
+
+    private static final Set<String> NAMES = Set.of("url", "depth", "fan-out",
+        "offers-per-category", "churn", "batch-size", "threads", "warmup", "duration", "mix", "seed");
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            int eq = arg.indexOf('=');
+            String name = arg.substring(2, eq);
+            if (!NAMES.contains(name)) {
+                throw new IllegalArgumentException("Unknown option " + name);
+            }
+            values.put(name, arg.substring(eq + 1));
+        }
+
+        return new LoadOptions(
+            values.get("url"),
+            Integer.parseInt(values.getOrDefault("depth", "4")),
+            Integer.parseInt(values.getOrDefault("fan-out", "8")),
+            Integer.parseInt(values.getOrDefault("offers-per-category", "20")),
+            Double.parseDouble(values.getOrDefault("churn", "0.01")),
+            Integer.parseInt(values.getOrDefault("batch-size", "500")),
+            Integer.parseInt(values.getOrDefault("threads", "8")),
+            Duration.ofSeconds(Long.parseLong(values.getOrDefault("warmup", "10"))),
+            Duration.ofSeconds(Long.parseLong(values.getOrDefault("duration", "60"))),
+            parseMix(values.getOrDefault("mix", "imports=1,nodes=6,sales=2,statistic=1")),
+            Long.parseLong(values.getOrDefault("seed", "42")));
+    }
+
+    private static Map<Endpoint, Integer> parseMix(String value) {
+        Map<Endpoint, Integer> mix = new EnumMap<>(Endpoint.class);
+        for (String part : value.split(",")) {
+            String[] weight = part.split("=");
+            mix.put(Endpoint.valueOf(weight[0].trim().toUpperCase()),
+                Integer.parseInt(weight[1].trim()));
+        }
+
+        return mix;
+    }
+}
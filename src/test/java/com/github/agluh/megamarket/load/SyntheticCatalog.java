@@ -0,0 +1,110 @@
+package com.github.agluh.megamarket.load;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Catalog of configurable shape for load testing.
+ *
+ * <p>Categories form a tree of given depth where every category has fan-out subcategories.
+ * Every leaf category holds the same number of offers. The catalog is the same for the same seed.
+ */
+class SyntheticCatalog {
+
+    private static final int MAX_PRICE = 100_000;
+
+    private final List<ShopUnitImport> categories = new ArrayList<>();
+    private final List<ShopUnitImport> offers = new ArrayList<>();
+    private final double churn;
+
+    SyntheticCatalog(int depth, int fanOut, int offersPerCategory, double churn, long seed) {
+        this.churn = churn;
+        Random random = new Random(seed);
+
+        List<ShopUnitImport> level = List.of(category(random, null));
+        categories.addAll(level);
+        for (int d = 1; d < depth; d++) {
+            List<ShopUnitImport> next = new ArrayList<>();
+            for (ShopUnitImport parent : level) {
+                for (int i = 0; i < fanOut; i++) {
+                    next.add(category(random, parent.getId()));
+                }
+            }
+            categories.addAll(next);
+            level = next;
+        }
+
+        for (ShopUnitImport leaf : level) {
+            for (int i = 0; i < offersPerCategory; i++) {
+                offers.add(new ShopUnitImport(randomUuid(random), "Offer " + offers.size(),
+                    ShopUnitType.OFFER, leaf.getId(), (long) random.nextInt(MAX_PRICE)));
+            }
+        }
+    }
+
+    int categoryCount() {
+        return categories.size();
+    }
+
+    int offerCount() {
+        return offers.size();
+    }
+
+    /**
+     * Splits the whole catalog into import batches, parents go before their children.
+     */
+    List<List<ShopUnitImport>> seedBatches(int batchSize) {
+        List<ShopUnitImport> all = new ArrayList<>(categories);
+        all.addAll(offers);
+
+        List<List<ShopUnitImport>> batches = new ArrayList<>();
+        for (int i = 0; i < all.size(); i += batchSize) {
+            batches.add(all.subList(i, Math.min(i + batchSize, all.size())));
+        }
+
+        return batches;
+    }
+
+    /**
+     * Returns batch of offers with changed prices. Number of offers is
+     * the churn share of all offers, but not more than batch size.
+     */
+    List<ShopUnitImport> churnBatch(Random random, int batchSize) {
+        int size = (int) Math.min(batchSize, Math.max(1, Math.round(churn * offers.size())));
+        Set<ShopUnitImport> picked = new LinkedHashSet<>();
+        while (picked.size() < Math.min(size, offers.size())) {
+            picked.add(offers.get(random.nextInt(offers.size())));
+        }
+
+        return picked.stream()
+            .map(o -> new ShopUnitImport(o.getId(), o.getName(), o.getType(), o.getParentId(),
+                (long) random.nextInt(MAX_PRICE)))
+            .toList();
+    }
+
+    UUID randomCategory(Random random) {
+        return categories.get(random.nextInt(categories.size())).getId();
+    }
+
+    UUID randomNode(Random random) {
+        int i = random.nextInt(categories.size() + offers.size());
+        return i < categories.size()
+            ? categories.get(i).getId()
+            : offers.get(i - categories.size()).getId();
+    }
+
+    private ShopUnitImport category(Random random, UUID parentId) {
+        return new ShopUnitImport(randomUuid(random), "Category " + categories.size(),
+            ShopUnitType.CATEGORY, parentId, null);
+    }
+
+    private static UUID randomUuid(Random random) {
+        return new UUID(random.nextLong(), random.nextLong());
+    }
+}
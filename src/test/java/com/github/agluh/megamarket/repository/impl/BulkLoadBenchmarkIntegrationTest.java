@@ -0,0 +1,79 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import com.github.agluh.megamarket.model.Category;
+import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Compares throughput of batch upserts and bulk load of offers.
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=BulkLoadBenchmarkIntegrationTest},
+ * numbers of offers can be set with {@code -Dbenchmark.sizes=10000,100000,1000000}.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class BulkLoadBenchmarkIntegrationTest {
+
+    @Autowired
+    private NamedParameterJdbcTemplate namedJdbcTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private static final String TRUNCATE_TABLES = """
+        TRUNCATE categories, offers, category_closure, categories_statistics, offers_statistics
+        """;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute(TRUNCATE_TABLES);
+    }
+
+    @Test
+    void compareOfferSaveThroughput() {
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000")
+            .split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+        Instant date = Instant.parse("2022-06-13T10:30:00.000Z");
+        Category category = new Category(UUID.randomUUID(), null, "Category", null, date,
+            PriceAggregate.EMPTY);
+
+        for (int size : sizes) {
+            List<Offer> offers = IntStream.range(0, size)
+                .mapToObj(i -> new Offer(UUID.randomUUID(), category.getId(), "Offer " + i,
+                    i, date))
+                .toList();
+
+            for (boolean bulk : List.of(false, true)) {
+                jdbcTemplate.execute(TRUNCATE_TABLES);
+                new CategoryRepositoryImpl(namedJdbcTemplate, jdbcTemplate, Integer.MAX_VALUE)
+                    .save(List.of(category));
+                OfferRepositoryImpl repository = new OfferRepositoryImpl(namedJdbcTemplate,
+                    jdbcTemplate, bulk ? 0 : Integer.MAX_VALUE);
+
+                long start = System.nanoTime();
+                transactionTemplate.executeWithoutResult(status -> repository.save(offers));
+                long nanos = System.nanoTime() - start;
+
+                log.info("offers={} mode={} time={}ms rows/sec={}", size,
+                    bulk ? "COPY" : "BATCH", nanos / 1_000_000, size * 1_000_000_000L / nanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import com.github.agluh.megamarket.repository.HierarchyMode;
+import java.util.Arrays;
+import java.util.UUID;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Compares subtree fetch latency of hierarchy modes on generated trees.
+ * Run with {@code mvn test -Dbenchmark=true -Dtest=HierarchyModeBenchmarkIntegrationTest},
+ * trees of 10^4, 10^5 and 10^6 nodes are measured unless sizes are set
+ * with {@code -Dbenchmark.sizes=10000,100000}.
+ */
+@Slf4j
+@SpringBootTest
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class HierarchyModeBenchmarkIntegrationTest {
+
+    private static final int FAN_OUT = 10;
+    private static final int WARMUP_ITERATIONS = 5;
+    private static final int MEASURED_ITERATIONS = 20;
+
+    /* Node i is a child of node (i - 1) / FAN_OUT, node 0 is the root */
+    private static final String GENERATE_TREE = """
+        INSERT INTO categories (category_id, parent_id, category_name, last_update)
+        SELECT md5(i::text)::uuid,
+            CASE WHEN i = 0 THEN NULL ELSE md5(((i - 1) / %d)::text)::uuid END,
+            'Category ' || i, now()
+        FROM generate_series(0, ? - 1) AS i
+        ORDER BY i
+        """.formatted(FAN_OUT);
+
+    private static final String BUILD_CLOSURE = """
+        INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+        WITH RECURSIVE closure AS (
+            SELECT category_id AS ancestor_id, category_id AS descendant_id, 0 AS depth
+            FROM categories
+            UNION ALL
+                SELECT closure.ancestor_id, c.category_id, closure.depth + 1
+                FROM categories c
+                INNER JOIN closure ON closure.descendant_id = c.parent_id
+        )
+        SELECT ancestor_id, descendant_id, depth FROM closure
+        """;
+
+    private static final String BUILD_PATHS = """
+        WITH RECURSIVE paths AS (
+            SELECT category_id, '/'::bytea || uuid_send(category_id) AS path
+            FROM categories
+            WHERE parent_id IS NULL
+            UNION ALL
+                SELECT c.category_id, paths.path || '/'::bytea || uuid_send(c.category_id)
+                FROM categories c
+                INNER JOIN paths ON paths.category_id = c.parent_id
+        )
+        UPDATE categories c SET path = paths.path
+        FROM paths
+        WHERE paths.category_id = c.category_id
+        """;
+
+    /* Deleting categories one by one cascades by scans of children, too slow for large trees */
+    private static final String TRUNCATE_TABLES = """
+        TRUNCATE categories, offers, category_closure, categories_statistics, offers_statistics
+        """;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute(TRUNCATE_TABLES);
+    }
+
+    @Test
+    void compareSubtreeFetchLatency() {
+        int[] sizes = Arrays.stream(System.getProperty("benchmark.sizes", "10000,100000,1000000")
+            .split(",")).mapToInt(s -> Integer.parseInt(s.trim())).toArray();
+
+        for (int size : sizes) {
+            jdbcTemplate.execute(TRUNCATE_TABLES);
+            jdbcTemplate.update(GENERATE_TREE, size);
+            // Without statistics recursive builds join every level by nested loops
+            jdbcTemplate.execute("ANALYZE categories");
+            jdbcTemplate.update(BUILD_CLOSURE);
+            jdbcTemplate.update(BUILD_PATHS);
+            jdbcTemplate.execute("ANALYZE categories, category_closure");
+
+            // First child of the root, its subtree is the deepest one
+            UUID subtreeRoot = jdbcTemplate.queryForObject("SELECT md5('1')::uuid", UUID.class);
+
+            for (HierarchyMode mode : HierarchyMode.values()) {
+                ShopUnitReadModelImpl readModel =
+                    new ShopUnitReadModelImpl(jdbcTemplate.getDataSource(), mode);
+                for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+                    readModel.getNodeWithSubtree(subtreeRoot);
+                }
+
+                long[] nanos = new long[MEASURED_ITERATIONS];
+                int nodes = 0;
+                for (int i = 0; i < MEASURED_ITERATIONS; i++) {
+                    long start = System.nanoTime();
+                    nodes = readModel.getNodeWithSubtree(subtreeRoot).size();
+                    nanos[i] = System.nanoTime() - start;
+                }
+                Arrays.sort(nanos);
+
+                log.info("tree={} mode={} subtree={} p50={}ms p95={}ms", size, mode, nodes,
+                    nanos[MEASURED_ITERATIONS / 2] / 1_000_000.0,
+                    nanos[MEASURED_ITERATIONS * 95 / 100] / 1_000_000.0);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.ShopUnitReadModel;
+import com.github.agluh.megamarket.service.ShopService;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest(properties = "megamarket.catalog-index.enabled=true")
+class InMemoryShopUnitReadModelIntegrationTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private ShopUnitReadModel shopUnitReadModel;
+
+    @Autowired
+    private InMemoryShopUnitReadModel catalogIndex;
+
+    @Autowired
+    private ShopUnitReadModelImpl dbReadModel;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+        catalogIndex.reload();
+    }
+
+    @Test
+    void givenCatalogIndexEnabled_whenInjectReadModel_thenDatabaseModelShouldBeUsed() {
+        then(shopUnitReadModel)
+            .isSameAs(dbReadModel);
+    }
+
+    @Test
+    void givenNodeMissingInIndex_whenGetNodeStatistics_thenDatabaseShouldBeChecked() {
+        // Given
+        final UUID categoryId = UUID.randomUUID();
+        jdbcTemplate.update("""
+            INSERT INTO categories (category_id, category_name, last_update)
+            VALUES (?, 'Category', now())
+            """, categoryId);
+
+        // When
+        final var statistics = shopService.getNodeStatistics(categoryId, null, null);
+
+        // Then
+        then(statistics).isEmpty();
+        then(catalogIndex.getNode(categoryId)).isEmpty();
+    }
+
+    @Test
+    void givenImportsAndDeletes_whenGetNodeWithSubtree_thenIndexShouldMatchDatabase() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport middle = createCategory(root.getId(), "Middle");
+        final ShopUnitImport leaf = createCategory(middle.getId(), "Leaf");
+        final ShopUnitImport offer = createOffer(leaf.getId(), "Offer", 100);
+        final ShopUnitImport otherRoot = createCategory(null, "Other root");
+        final ShopUnitImport otherOffer = createOffer(otherRoot.getId(), "Other offer", 200);
+        shopService.importData(List.of(root, middle, leaf, offer, otherRoot, otherOffer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        middle.setParentId(otherRoot.getId());
+        offer.setPrice(300L);
+        shopService.importData(List.of(middle, offer),
+            Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        shopService.deleteNode(otherOffer.getId());
+
+        // When
+        for (UUID nodeId : List.of(root.getId(), otherRoot.getId(), leaf.getId(),
+                offer.getId())) {
+            // Then
+            then(catalogIndex.getNodeWithSubtree(nodeId))
+                .usingRecursiveFieldByFieldElementComparatorIgnoringFields("children")
+                .containsExactlyInAnyOrderElementsOf(dbReadModel.getNodeWithSubtree(nodeId));
+        }
+
+        then(catalogIndex.getNodeWithSubtree(otherOffer.getId()))
+            .isEmpty();
+    }
+
+    @Test
+    void givenImports_whenGetSubtree_thenIndexShouldWriteSameJsonAsDatabase() throws Exception {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport middle = createCategory(root.getId(), "Middle");
+        final ShopUnitImport offer = createOffer(middle.getId(), "Offer", 100);
+        final ShopUnitImport otherOffer = createOffer(root.getId(), "Other offer", 200);
+        shopService.importData(List.of(root, middle, offer, otherOffer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        // When
+        for (UUID nodeId : List.of(root.getId(), middle.getId(), offer.getId())) {
+            // Then
+            then(toMap(catalogIndex.getSubtree(nodeId).orElseThrow()))
+                .usingRecursiveComparison()
+                .ignoringCollectionOrder()
+                .isEqualTo(toMap(dbReadModel.getSubtree(nodeId).orElseThrow()));
+        }
+
+        then(catalogIndex.getSubtree(UUID.randomUUID()))
+            .isEmpty();
+    }
+
+    @Test
+    void givenImportedNode_whenGetNode_thenShouldBeServedWithoutDatabase() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100);
+        shopService.importData(List.of(category, offer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+
+        // When
+        final ShopUnit node = shopService.getNode(category.getId());
+
+        // Then
+        then(node.getPrice())
+            .isEqualTo(100L);
+        then(node.getChildren())
+            .extracting(ShopUnit::getId)
+            .containsExactly(offer.getId());
+    }
+
+    private Map<?, ?> toMap(Object node) throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(node), Map.class);
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
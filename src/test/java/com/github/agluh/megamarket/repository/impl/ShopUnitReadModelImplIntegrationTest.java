@@ -0,0 +1,120 @@
+package com.github.agluh.megamarket.repository.impl;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.HierarchyMode;
+import com.github.agluh.megamarket.service.ShopService;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest
+class ShopUnitReadModelImplIntegrationTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenMovedSubtree_whenGetNodeWithSubtree_thenAllHierarchyModesShouldReturnSameNodes() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport middle = createCategory(root.getId(), "Middle");
+        final ShopUnitImport leaf = createCategory(middle.getId(), "Leaf");
+        final ShopUnitImport offer = createOffer(leaf.getId(), "Offer", 100);
+        final ShopUnitImport otherRoot = createCategory(null, "Other root");
+        final ShopUnitImport otherOffer = createOffer(otherRoot.getId(), "Other offer", 200);
+        shopService.importData(List.of(root, middle, leaf, offer, otherRoot, otherOffer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        middle.setParentId(otherRoot.getId());
+        final ShopUnitImport movedOffer = createOffer(middle.getId(), "Moved offer", 300);
+        movedOffer.setId(otherOffer.getId());
+        shopService.importData(List.of(middle, movedOffer),
+            Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        for (UUID nodeId : List.of(root.getId(), otherRoot.getId(), leaf.getId(), offer.getId())) {
+            // When
+            Collection<ShopUnit> expected = readModel(HierarchyMode.ADJACENCY_LIST)
+                .getNodeWithSubtree(nodeId);
+
+            // Then
+            then(readModel(HierarchyMode.CLOSURE_TABLE).getNodeWithSubtree(nodeId))
+                .containsExactlyInAnyOrderElementsOf(expected);
+            then(readModel(HierarchyMode.MATERIALIZED_PATH).getNodeWithSubtree(nodeId))
+                .containsExactlyInAnyOrderElementsOf(expected);
+        }
+
+        then(readModel(HierarchyMode.MATERIALIZED_PATH).getNodeWithSubtree(otherRoot.getId()))
+            .hasSize(5);
+    }
+
+    @Test
+    void givenCatalog_whenGetSubtree_thenAllHierarchyModesShouldWriteSameJsonAsNode()
+            throws Exception {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport middle = createCategory(root.getId(), "Middle");
+        final ShopUnitImport emptyCategory = createCategory(middle.getId(), "Empty");
+        final ShopUnitImport leaf = createCategory(middle.getId(), "Leaf");
+        final ShopUnitImport offer = createOffer(leaf.getId(), "Offer", 100);
+        final ShopUnitImport otherOffer = createOffer(leaf.getId(), "Other offer", 201);
+        shopService.importData(List.of(root, middle, emptyCategory, leaf, offer, otherOffer),
+            Instant.parse("2022-06-13T10:30:00.123Z"));
+
+        for (UUID nodeId : List.of(root.getId(), leaf.getId(), emptyCategory.getId(),
+                offer.getId())) {
+            // When
+            final Map<?, ?> expected = toMap(shopService.getNode(nodeId));
+
+            // Then
+            for (HierarchyMode mode : HierarchyMode.values()) {
+                then(toMap(readModel(mode).getSubtree(nodeId).orElseThrow()))
+                    .usingRecursiveComparison()
+                    .ignoringCollectionOrder()
+                    .isEqualTo(expected);
+            }
+        }
+
+        then(readModel(HierarchyMode.ADJACENCY_LIST).getSubtree(UUID.randomUUID()))
+            .isEmpty();
+    }
+
+    private Map<?, ?> toMap(Object node) throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(node), Map.class);
+    }
+
+    private ShopUnitReadModelImpl readModel(HierarchyMode mode) {
+        return new ShopUnitReadModelImpl(jdbcTemplate.getDataSource(), mode);
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.agluh.megamarket.serialization;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.format.DateTimeFormatter;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvFileSource;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class Iso8601ParserTest {
+
+    /**
+     * Formatter that was used to parse dates before.
+     */
+    private static final DateTimeFormatter REFERENCE =
+        DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss[.SSS][.SS][.S][XXX][XX][X]");
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/iso8601_dates.csv")
+    void givenValidDate_whenParseInstant_thenSameInstantAsReferenceShouldBeReturned(String date) {
+        // When
+        final Instant instant = Iso8601Parser.parseInstant(date);
+
+        // Then
+        then(instant).isEqualTo(OffsetDateTime.parse(date, REFERENCE).toInstant());
+    }
+
+    @ParameterizedTest
+    @CsvFileSource(resources = "/iso8601_invalid_dates.csv")
+    void givenInvalidDate_whenParseInstant_thenNullShouldBeReturned(String date) {
+        // When
+        final Instant instant = Iso8601Parser.parseInstant(date);
+
+        // Then
+        then(instant).isNull();
+    }
+
+    @ParameterizedTest
+    @CsvSource({
+        "2022-05-28T21:12:01.1Z, 2022-05-28T21:12:01.100Z",
+        "2022-05-28T21:12:01.12Z, 2022-05-28T21:12:01.120Z",
+        "2022-05-28T21:12:01.123-0530, 2022-05-29T02:42:01.123Z",
+        "2022-05-28T21:12:01-00:30, 2022-05-28T21:42:01Z",
+        "2022-05-28T21:12:01+18:00, 2022-05-28T03:12:01Z",
+        "2024-02-29T23:59:59Z, 2024-02-29T23:59:59Z",
+        "2000-02-29T00:00:00+01, 2000-02-28T23:00:00Z",
+        "1970-01-01T00:00:00Z, 1970-01-01T00:00:00Z",
+        "0000-01-01T00:00:00Z, 0000-01-01T00:00:00Z",
+        "9999-12-31T23:59:59.999Z, 9999-12-31T23:59:59.999Z"
+    })
+    void givenEdgeDate_whenParseInstant_thenCorrectInstantShouldBeReturned(String date,
+            String expected) {
+        // When
+        final Instant instant = Iso8601Parser.parseInstant(date);
+
+        // Then
+        then(instant).isEqualTo(Instant.parse(expected));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "",
+        "2022-05-28",
+        "2022-05-28T21:12:01",
+        "2022-05-28 21:12:01Z",
+        "2022-05-28T21:12:01z",
+        "2022-05-28T21:12:01.Z",
+        "2022-05-28T21:12:01.1234Z",
+        "2022-05-28T21:12:01ZZ",
+        "2022-05-28T21:12:01+3",
+        "2022-05-28T21:12:01+03:0",
+        "2022-05-28T21:12:01+03-00",
+        "2022-05-28T21:12:01+0360",
+        "2022-05-28T21:12:01+18:01",
+        "2022-05-28T21:12:01+19",
+        "2022-13-28T21:12:01Z",
+        "2022-00-28T21:12:01Z",
+        "2022-04-31T21:12:01Z",
+        "2023-02-29T21:12:01Z",
+        "1900-02-29T21:12:01Z",
+        "2022-05-00T21:12:01Z",
+        "2022-05-28T24:00:00Z",
+        "2022-05-28T21:60:01Z",
+        "2022-05-28T21:12:60Z",
+        "-022-05-28T21:12:01Z",
+        "2022-05-28T2a:12:01Z"
+    })
+    void givenMalformedDate_whenParseInstant_thenNullShouldBeReturned(String date) {
+        // When
+        final Instant instant = Iso8601Parser.parseInstant(date);
+
+        // Then
+        then(instant).isNull();
+    }
+}
@@ -0,0 +1,121 @@
+package com.github.agluh.megamarket.serialization;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import java.time.Instant;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+class ShopUnitSerializerTest {
+
+    private static final UUID ROOT_ID = UUID.fromString("069cb8d7-bbdd-47d3-ad8f-82ef4c269df1");
+    private static final UUID OFFER_ID = UUID.fromString("d515e43f-f3f6-4471-bb77-6b455017a2d2");
+    private static final Instant DATE = Instant.parse("2022-02-03T15:00:00Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void givenCategoryWithOffer_whenSerialize_thenAllFieldsShouldBeWritten() throws Exception {
+        // Given
+        final ShopUnit root = new ShopUnit(ROOT_ID, null, "Товары", 100L, DATE,
+            ShopUnitType.CATEGORY);
+        root.addChild(new ShopUnit(OFFER_ID, ROOT_ID, "\"jPhone\"", 100L, DATE,
+            ShopUnitType.OFFER));
+
+        // When
+        final String json = objectMapper.writeValueAsString(root);
+
+        // Then
+        then(json).isEqualTo("{\"id\":\"069cb8d7-bbdd-47d3-ad8f-82ef4c269df1\","
+            + "\"name\":\"Товары\",\"type\":\"CATEGORY\",\"parentId\":null,"
+            + "\"date\":\"2022-02-03T15:00:00.000Z\",\"price\":100,\"children\":["
+            + "{\"id\":\"d515e43f-f3f6-4471-bb77-6b455017a2d2\",\"name\":\"\\\"jPhone\\\"\","
+            + "\"type\":\"OFFER\",\"parentId\":\"069cb8d7-bbdd-47d3-ad8f-82ef4c269df1\","
+            + "\"date\":\"2022-02-03T15:00:00.000Z\",\"price\":100,\"children\":null}]}");
+    }
+
+    @Test
+    void givenEmptyCategory_whenSerialize_thenEmptyChildrenAndNullPriceShouldBeWritten()
+            throws Exception {
+        // Given
+        final ShopUnit root = new ShopUnit(ROOT_ID, null, "Товары", null, DATE,
+            ShopUnitType.CATEGORY);
+
+        // When
+        final String json = objectMapper.writeValueAsString(root);
+
+        // Then
+        then(json).endsWith("\"price\":null,\"children\":[]}");
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+        "1970-01-01T00:00:00Z",
+        "1969-12-31T23:59:59.999999999Z",
+        "2000-02-29T12:34:56.789Z",
+        "2022-05-28T21:12:01.123456Z",
+        "2100-03-01T00:00:00.001Z",
+        "0000-01-01T00:00:00Z",
+        "9999-12-31T23:59:59.999Z",
+        "+10000-01-01T00:00:00Z",
+        "-0001-12-31T23:59:59Z"
+    })
+    void givenDate_whenSerialize_thenSameTextAsFormatterShouldBeWritten(String value)
+            throws Exception {
+        // Given
+        final Instant date = Instant.parse(value);
+        final ShopUnit offer = new ShopUnit(OFFER_ID, null, "jPhone", 1L, date,
+            ShopUnitType.OFFER);
+
+        // When
+        final String json = objectMapper.writeValueAsString(offer);
+
+        // Then
+        then(json).contains("\"date\":\"" + ShopUnitSerializer.ISO8601_DATE_TIME.format(date)
+            + "\"");
+    }
+
+    @Test
+    void givenRandomIds_whenSerialize_thenSameTextAsUuidShouldBeWritten() throws Exception {
+        for (int i = 0; i < 1000; i++) {
+            // Given
+            final UUID id = UUID.randomUUID();
+            final UUID parentId = new UUID(i, -i);
+            final ShopUnit offer = new ShopUnit(id, parentId, "jPhone", 1L, DATE,
+                ShopUnitType.OFFER);
+
+            // When
+            final String json = objectMapper.writeValueAsString(offer);
+
+            // Then
+            then(json).startsWith("{\"id\":\"" + id + "\"")
+                .contains("\"parentId\":\"" + parentId + "\"");
+        }
+    }
+
+    @Test
+    void givenVeryDeepTree_whenSerialize_thenNoStackOverflowShouldHappen() throws Exception {
+        // Given
+        final int depth = 100_000;
+        final ShopUnit root = new ShopUnit(UUID.randomUUID(), null, "0", null, DATE,
+            ShopUnitType.CATEGORY);
+        ShopUnit parent = root;
+        for (int i = 1; i < depth; i++) {
+            final ShopUnit child = new ShopUnit(UUID.randomUUID(), parent.getId(),
+                String.valueOf(i), null, DATE, ShopUnitType.CATEGORY);
+            parent.addChild(child);
+            parent = child;
+        }
+
+        // When
+        final String json = objectMapper.writeValueAsString(root);
+
+        // Then
+        then(json).endsWith("\"children\":[]" + "}]".repeat(depth - 1) + "}");
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.agluh.megamarket.serialization;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitTree;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+
+class ShopUnitTreeSerializerTest {
+
+    private static final UUID ROOT_ID = UUID.fromString("069cb8d7-bbdd-47d3-ad8f-82ef4c269df1");
+    private static final UUID OFFER_ID = UUID.fromString("d515e43f-f3f6-4471-bb77-6b455017a2d2");
+    private static final Instant DATE = Instant.parse("2022-02-03T15:00:00.042Z");
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void givenCategoryWithOffer_whenSerialize_thenSameJsonAsShopUnitShouldBeWritten()
+            throws Exception {
+        // Given
+        final ShopUnitTree tree = new ShopUnitTree.Builder()
+            .add(OFFER_ID, ROOT_ID, "\"jPhone\"", 100L, DATE.toEpochMilli(), ShopUnitType.OFFER)
+            .add(ROOT_ID, null, "Товары", 100L, DATE.toEpochMilli(), ShopUnitType.CATEGORY)
+            .build();
+        final ShopUnit root = new ShopUnit(ROOT_ID, null, "Товары", 100L, DATE,
+            ShopUnitType.CATEGORY);
+        root.addChild(new ShopUnit(OFFER_ID, ROOT_ID, "\"jPhone\"", 100L, DATE,
+            ShopUnitType.OFFER));
+
+        // When
+        final String json = objectMapper.writeValueAsString(tree);
+
+        // Then
+        then(json).isEqualTo(objectMapper.writeValueAsString(root));
+    }
+
+    @Test
+    void givenSubtreeOfCategory_whenSerialize_thenParentOfRootShouldBeWritten() throws Exception {
+        // Given
+        final ShopUnitTree tree = new ShopUnitTree.Builder()
+            .add(ROOT_ID, OFFER_ID, "Empty", null, DATE.toEpochMilli(), ShopUnitType.CATEGORY)
+            .build();
+
+        // When
+        final String json = objectMapper.writeValueAsString(tree);
+
+        // Then
+        then(json).isEqualTo(objectMapper.writeValueAsString(
+            new ShopUnit(ROOT_ID, OFFER_ID, "Empty", null, DATE, ShopUnitType.CATEGORY)));
+    }
+
+    @Test
+    void givenShuffledRandomTree_whenSerialize_thenSameJsonAsShopUnitShouldBeWritten()
+            throws Exception {
+        // Given
+        final Random random = new Random(42);
+        final List<ShopUnit> units = new ArrayList<>();
+        final Map<UUID, ShopUnit> categories = new HashMap<>();
+        final ShopUnit root = new ShopUnit(UUID.randomUUID(), UUID.randomUUID(), "Root", 1L,
+            DATE, ShopUnitType.CATEGORY);
+        units.add(root);
+        categories.put(root.getId(), root);
+        for (int i = 0; i < 500; i++) {
+            final List<ShopUnit> parents = new ArrayList<>(categories.values());
+            final ShopUnit parent = parents.get(random.nextInt(parents.size()));
+            final ShopUnitType type = random.nextInt(4) == 0
+                ? ShopUnitType.CATEGORY : ShopUnitType.OFFER;
+            final ShopUnit unit = new ShopUnit(UUID.randomUUID(), parent.getId(), "Unit " + i,
+                type == ShopUnitType.OFFER || random.nextBoolean() ? (long) random.nextInt() : null,
+                DATE.plusMillis(random.nextInt()), type);
+            parent.addChild(unit);
+            units.add(unit);
+            if (unit.isCategory()) {
+                categories.put(unit.getId(), unit);
+            }
+        }
+        Collections.shuffle(units, random);
+        final ShopUnitTree.Builder builder = new ShopUnitTree.Builder();
+        units.forEach(u -> builder.add(u.getId(), u.getParentId(), u.getName(), u.getPrice(),
+            u.getDate().toEpochMilli(), u.getType()));
+
+        // When
+        final Map<?, ?> json = toMap(builder.build());
+
+        // Then
+        then(json)
+            .usingRecursiveComparison()
+            .ignoringCollectionOrder()
+            .isEqualTo(toMap(root));
+    }
+
+    @Test
+    void givenVeryDeepTree_whenSerialize_thenNoStackOverflowShouldHappen() throws Exception {
+        // Given
+        final int depth = 100_000;
+        final ShopUnitTree.Builder builder = new ShopUnitTree.Builder();
+        UUID parentId = null;
+        for (int i = 0; i < depth; i++) {
+            final UUID id = UUID.randomUUID();
+            builder.add(id, parentId, String.valueOf(i), null, DATE.toEpochMilli(),
+                ShopUnitType.CATEGORY);
+            parentId = id;
+        }
+
+        // When
+        final String json = objectMapper.writeValueAsString(builder.build());
+
+        // Then
+        then(json).endsWith("\"children\":[]" + "}]".repeat(depth - 1) + "}");
+    }
+
+    private Map<?, ?> toMap(Object node) throws Exception {
+        return objectMapper.readValue(objectMapper.writeValueAsBytes(node), Map.class);
+    }
+}
@@ -0,0 +1,97 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * Repositories save everything by bulk load here.
+ */
+@SpringBootTest(properties = "megamarket.bulk-load.threshold=1")
+class BulkLoadShopServiceIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenTreeWithOffers_whenImport_thenItShouldBeSaved() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport child = createCategory(root.getId(), "Child");
+        final ShopUnitImport first = createOffer(child.getId(), "First", 100L);
+        final ShopUnitImport second = createOffer(root.getId(), "Second", 300L);
+
+        // When
+        shopService.importData(List.of(root, child, first, second), DATE);
+
+        // Then
+        then(shopService.getNode(root.getId()))
+            .extracting("price", "date")
+            .containsExactly(200L, DATE);
+        then(shopService.getNode(child.getId())).extracting("price").isEqualTo(100L);
+    }
+
+    @Test
+    void givenStoredTree_whenImportChangedItems_thenTheyShouldBeUpdated() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport offer = createOffer(root.getId(), "Offer", 100L);
+        shopService.importData(List.of(root, offer), DATE);
+        final ShopUnitImport renamed = new ShopUnitImport(root.getId(), "Renamed",
+            ShopUnitType.CATEGORY, null, null);
+        final ShopUnitImport repriced = new ShopUnitImport(offer.getId(), "Offer",
+            ShopUnitType.OFFER, root.getId(), 300L);
+
+        // When
+        shopService.importData(List.of(renamed, repriced), DATE.plusSeconds(60));
+
+        // Then
+        then(shopService.getNode(root.getId()))
+            .extracting("name", "price", "date")
+            .containsExactly("Renamed", 300L, DATE.plusSeconds(60));
+    }
+
+    @Test
+    void givenOfferOfMissingCategory_whenImport_thenWillThrowException() {
+        // Given
+        final ShopUnitImport offer = createOffer(UUID.randomUUID(), "Offer", 100L);
+
+        // When
+        final Throwable throwable = catchThrowable(() ->
+            shopService.importData(List.of(offer), DATE));
+
+        // Then
+        then(throwable).isInstanceOf(InvalidIdentityException.class);
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "offers")).isZero();
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DeadlockLoserDataAccessException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyRetryTest {
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void givenDeadlockedAttempt_whenRun_thenActionShouldBeRetried() {
+        // Given
+        final ConcurrencyRetry retry = createRetry(3);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        retry.run("import", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw new DeadlockLoserDataAccessException("Deadlock", null);
+            }
+        });
+
+        // Then
+        then(attempts).hasValue(2);
+        then(meterRegistry.counter("megamarket.transaction.retries", "operation", "import")
+            .count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenDeadlockedAttempts_whenRun_thenLastFailureShouldBeThrown() {
+        // Given
+        final ConcurrencyRetry retry = createRetry(3);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        final Throwable throwable = catchThrowable(() -> retry.run("import", () -> {
+            attempts.incrementAndGet();
+            throw new DeadlockLoserDataAccessException("Deadlock", null);
+        }));
+
+        // Then
+        then(throwable).isInstanceOf(DeadlockLoserDataAccessException.class);
+        then(attempts).hasValue(3);
+    }
+
+    @Test
+    void givenOtherFailure_whenRun_thenActionShouldNotBeRetried() {
+        // Given
+        final ConcurrencyRetry retry = createRetry(3);
+        final AtomicInteger attempts = new AtomicInteger();
+
+        // When
+        final Throwable throwable = catchThrowable(() -> retry.run("delete", () -> {
+            attempts.incrementAndGet();
+            throw new ShopUnitNotFoundException();
+        }));
+
+        // Then
+        then(throwable).isInstanceOf(ShopUnitNotFoundException.class);
+        then(attempts).hasValue(1);
+    }
+
+    private ConcurrencyRetry createRetry(int maxAttempts) {
+        return new ConcurrencyRetry(transactionManager, meterRegistry, maxAttempts,
+            Duration.ofMillis(1));
+    }
+}
@@ -0,0 +1,144 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.BiConsumer;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * Fires parallel imports and deletes over overlapping trees, moving subcategories
+ * between trees, none of them should fail.
+ */
+@SpringBootTest
+class ConcurrentImportIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-14T10:30:00.000Z");
+    private static final int THREADS = 4;
+    private static final int OPERATIONS = 25;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenOverlappingTrees_whenImportAndDeleteConcurrently_thenAllShouldSucceed() {
+        runConcurrently(shopService::importData);
+    }
+
+    /**
+     * Imports are coalesced into windows, which take locks of several trees at once.
+     */
+    @Nested
+    @TestPropertySource(properties = {
+        "megamarket.import.coalescing.enabled=true",
+        "megamarket.import.coalescing.window=20ms",
+        "megamarket.import.coalescing.max-imports=" + THREADS
+    })
+    class Coalesced {
+
+        @Autowired
+        private ImportCoalescer importCoalescer;
+
+        @Test
+        void givenOverlappingTrees_whenImportAndDeleteConcurrently_thenAllShouldSucceed() {
+            runConcurrently(importCoalescer::importData);
+        }
+    }
+
+    private void runConcurrently(BiConsumer<List<ShopUnitImport>, Instant> importer) {
+        // Given
+        final List<UUID> roots = List.of(UUID.randomUUID(), UUID.randomUUID());
+        final List<ShopUnitImport> categories = new ArrayList<>();
+        roots.forEach(id -> categories.add(createCategory(id, null)));
+        for (int i = 0; i < 6; i++) {
+            categories.add(createCategory(UUID.randomUUID(), roots.get(i % roots.size())));
+        }
+        shopService.importData(categories, DATE);
+        final List<ShopUnitImport> children = categories.subList(roots.size(), categories.size());
+
+        // When
+        CompletableFuture.allOf(IntStream.range(0, THREADS)
+            .mapToObj(thread -> CompletableFuture.runAsync(
+                () -> runOperations(importer, new Random(thread), roots, children), executor))
+            .toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        then(categoryRepository.findAggregateDrift()).isEmpty();
+    }
+
+    /**
+     * Every thread imports and deletes its own offers under shared categories
+     * and moves shared categories between trees.
+     */
+    private void runOperations(BiConsumer<List<ShopUnitImport>, Instant> importer, Random random,
+                               List<UUID> roots, List<ShopUnitImport> children) {
+        final List<UUID> offers = IntStream.range(0, 5).mapToObj(i -> UUID.randomUUID()).toList();
+        final Set<UUID> stored = new HashSet<>();
+
+        for (int i = 1; i <= OPERATIONS; i++) {
+            final Instant date = DATE.plusSeconds(i);
+            final UUID offerId = offers.get(random.nextInt(offers.size()));
+            switch (random.nextInt(3)) {
+                case 0 -> {
+                    final List<ShopUnitImport> items = new ArrayList<>();
+                    for (UUID id : offers) {
+                        final ShopUnitImport parent = children.get(random.nextInt(children.size()));
+                        items.add(new ShopUnitImport(id, "Offer", ShopUnitType.OFFER,
+                            parent.getId(), (long) random.nextInt(1000)));
+                    }
+                    importer.accept(items, date);
+                    stored.addAll(offers);
+                }
+                case 1 -> {
+                    final ShopUnitImport moved = children.get(random.nextInt(children.size()));
+                    importer.accept(List.of(new ShopUnitImport(moved.getId(), "Moved",
+                        ShopUnitType.CATEGORY, roots.get(random.nextInt(roots.size())), null)),
+                        date);
+                }
+                default -> {
+                    if (stored.remove(offerId)) {
+                        shopService.deleteNode(offerId);
+                    }
+                }
+            }
+        }
+    }
+
+    private ShopUnitImport createCategory(UUID id, UUID parentId) {
+        return new ShopUnitImport(id, "Category", ShopUnitType.CATEGORY, parentId, null);
+    }
+}
@@ -0,0 +1,214 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitStatistic;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import com.github.agluh.megamarket.model.CatalogChangedEvent;
+import java.time.Instant;
+import java.util.List;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * The window is long enough for concurrent imports of a test to get into a single one.
+ */
+@SpringBootTest(properties = {
+    "megamarket.import.coalescing.enabled=true",
+    "megamarket.import.coalescing.window=2s",
+    "megamarket.import.coalescing.max-imports=3"
+})
+class ImportCoalescerIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-14T10:30:00.000Z");
+
+    @Autowired
+    private ImportCoalescer importCoalescer;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private Queue<CatalogChangedEvent> committedEvents;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+        committedEvents.clear();
+    }
+
+    @Test
+    void givenConcurrentImports_whenImportData_thenTheyShouldBeCommittedTogether() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        shopService.importData(List.of(category), DATE);
+        final List<ShopUnitImport> offers = List.of(
+            createOffer(category.getId(), "First", 100L),
+            createOffer(category.getId(), "Second", 200L),
+            createOffer(category.getId(), "Third", 300L));
+        final long batches = batchCount();
+
+        // When
+        CompletableFuture.allOf(offers.stream()
+            .map(offer -> runAsync(offer, DATE.plusSeconds(1)))
+            .toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        then(batchCount()).isEqualTo(batches + 1);
+        then(shopService.getNode(category.getId()))
+            .extracting("price", "date")
+            .containsExactly(200L, DATE.plusSeconds(1));
+    }
+
+    @Test
+    void givenFailingImport_whenImportedTogether_thenOnlyItShouldBeRolledBack() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100L);
+        final ShopUnitImport orphan = createOffer(UUID.randomUUID(), "Orphan", 200L);
+        final ShopUnitImport other = createCategory(null, "Other");
+
+        // When
+        final CompletableFuture<Void> first = runAsync(List.of(category, offer), DATE);
+        final CompletableFuture<Void> failing = runAsync(List.of(orphan), DATE);
+        final CompletableFuture<Void> last = runAsync(List.of(other), DATE);
+        final Throwable throwable = catchThrowable(failing::join);
+        CompletableFuture.allOf(first, last).join();
+
+        // Then
+        then(throwable).isInstanceOf(CompletionException.class)
+            .hasCauseInstanceOf(InvalidIdentityException.class);
+        then(shopService.getNode(category.getId())).extracting("price").isEqualTo(100L);
+        then(shopService.getNode(other.getId())).isNotNull();
+        then(catchThrowable(() -> shopService.getNode(orphan.getId())))
+            .isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
+    @Test
+    void givenFailingImport_whenImportedTogether_thenOnlySurvivingImportsShouldBePublished() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        shopService.importData(List.of(category), DATE);
+        committedEvents.clear();
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100L);
+        final ShopUnitImport orphan = createOffer(UUID.randomUUID(), "Orphan", 200L);
+
+        // When
+        final CompletableFuture<Void> surviving = runAsync(offer, DATE);
+        final CompletableFuture<Void> failing = runAsync(orphan, DATE);
+        catchThrowable(failing::join);
+        surviving.join();
+
+        // Then
+        then(committedEvents).flatExtracting(CatalogChangedEvent::nodeIds)
+            .contains(offer.getId())
+            .doesNotContain(orphan.getId());
+    }
+
+    @Test
+    void givenImportsOfDifferentDates_whenImportedTogether_thenEachDateShouldBeKept() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        shopService.importData(List.of(category), DATE);
+        final ShopUnitImport first = createOffer(category.getId(), "First", 100L);
+        final ShopUnitImport second = createOffer(category.getId(), "Second", 300L);
+        final long batches = batchCount();
+
+        // When
+        final CompletableFuture<Void> firstImport = runAsync(first, DATE.plusSeconds(1));
+        final CompletableFuture<Void> secondImport = runAsync(second, DATE.plusSeconds(2));
+        CompletableFuture.allOf(firstImport, secondImport).join();
+
+        // Then
+        then(batchCount()).isLessThanOrEqualTo(batches + 2);
+        then(shopService.getNode(first.getId())).extracting("date")
+            .isEqualTo(DATE.plusSeconds(1));
+        then(shopService.getNode(second.getId())).extracting("date")
+            .isEqualTo(DATE.plusSeconds(2));
+        then(shopService.getNodeStatistics(category.getId(), null, null))
+            .extracting(ShopUnitStatistic::getPrice)
+            .contains(null, 200L);
+    }
+
+    @Test
+    void givenSingleImport_whenImportData_thenItShouldBeCommittedOnceWindowElapsed() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+
+        // When
+        importCoalescer.importData(List.of(category), DATE);
+
+        // Then
+        then(shopService.getNode(category.getId())).extracting("date").isEqualTo(DATE);
+    }
+
+    private long batchCount() {
+        return meterRegistry.summary("megamarket.import.coalesced.batch").count();
+    }
+
+    private CompletableFuture<Void> runAsync(ShopUnitImport item, Instant date) {
+        return runAsync(List.of(item), date);
+    }
+
+    private CompletableFuture<Void> runAsync(List<ShopUnitImport> items, Instant date) {
+        return CompletableFuture.runAsync(() -> importCoalescer.importData(items, date), executor);
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    @TestConfiguration
+    static class CommittedEventsConfiguration {
+
+        @Bean
+        Queue<CatalogChangedEvent> committedEvents() {
+            return new ConcurrentLinkedQueue<>();
+        }
+
+        @Bean
+        CommittedEventsListener committedEventsListener(Queue<CatalogChangedEvent> events) {
+            return new CommittedEventsListener(events);
+        }
+    }
+
+    record CommittedEventsListener(Queue<CatalogChangedEvent> events) {
+
+        @TransactionalEventListener(fallbackExecution = true)
+        public void onCatalogChanged(CatalogChangedEvent event) {
+            events.add(event);
+        }
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
@@ -0,0 +1,269 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ImportJob;
+import com.github.agluh.megamarket.dto.ImportJobStatus;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitImportRequest;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.ImportJobRepository;
+import com.github.agluh.megamarket.service.exceptions.ImportJobNotFoundException;
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Jobs are processed by the test itself, since there are no workers.
+ */
+@SpringBootTest(properties = {
+    "megamarket.import-jobs.enabled=true",
+    "megamarket.import-jobs.workers=0",
+    "megamarket.import-jobs.max-attempts=2"
+})
+class ImportJobServiceIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-14T10:30:00.000Z");
+
+    @Autowired
+    private ImportJobService importJobService;
+
+    @Autowired
+    private ImportJobRepository importJobRepository;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP TRIGGER IF EXISTS conflicting_offer ON offers");
+        jdbcTemplate.execute("DROP FUNCTION IF EXISTS fail_conflicting_offer");
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers", "import_jobs");
+    }
+
+    @Test
+    void givenImport_whenSubmit_thenJobShouldBeQueued() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+
+        // When
+        final ImportJob job = importJobService.submit(createRequest(DATE, category));
+
+        // Then
+        then(job.getStatus()).isEqualTo(ImportJobStatus.QUEUED);
+        then(job.getItems()).isEqualTo(1);
+        then(job.getUpdateDate()).isEqualTo(DATE);
+        then(job.getStartedAt()).isNull();
+        then(job.getError()).isNull();
+        then(catchThrowable(() -> shopService.getNode(category.getId())))
+            .isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
+    @Test
+    void givenImport_whenSubmit_thenOnlyItemFieldsShouldBeQueued() {
+        // Given
+        final ShopUnitImport offer = createOffer(null, "Offer", 100L);
+
+        // When
+        final ImportJob job = importJobService.submit(createRequest(DATE, offer));
+
+        // Then
+        final String payload = new String(jdbcTemplate.queryForObject(
+            "SELECT payload FROM import_jobs WHERE job_id = ?", byte[].class, job.getId()),
+            StandardCharsets.UTF_8);
+        then(payload).contains("\"parentId\"", "\"price\"")
+            .doesNotContain("\"offer\"", "\"category\"");
+    }
+
+    @Test
+    void givenQueuedJob_whenProcessNext_thenItemsShouldBeImported() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100L);
+        final ImportJob job = importJobService.submit(createRequest(DATE, category, offer));
+        final long processed = meterRegistry.timer("megamarket.import.job.duration",
+            "status", "done").count();
+
+        // When
+        final boolean done = importJobService.processNext();
+
+        // Then
+        then(done).isTrue();
+        final ImportJob finished = importJobService.getJob(job.getId());
+        then(finished.getStatus()).isEqualTo(ImportJobStatus.DONE);
+        then(finished.getStartedAt()).isNotNull();
+        then(finished.getFinishedAt()).isAfterOrEqualTo(finished.getStartedAt());
+        then(shopService.getNode(category.getId())).extracting("price").isEqualTo(100L);
+        then(meterRegistry.timer("megamarket.import.job.duration", "status", "done").count())
+            .isEqualTo(processed + 1);
+        then(importJobService.processNext()).isFalse();
+    }
+
+    @Test
+    void givenJobWithMissingParent_whenProcessNext_thenJobShouldFailAsBadRequest() {
+        // Given
+        final ShopUnitImport offer = createOffer(UUID.randomUUID(), "Offer", 100L);
+        final ImportJob job = importJobService.submit(createRequest(DATE, offer));
+
+        // When
+        importJobService.processNext();
+
+        // Then
+        final ImportJob failed = importJobService.getJob(job.getId());
+        then(failed.getStatus()).isEqualTo(ImportJobStatus.FAILED);
+        then(failed.getError()).isEqualTo(new ImportJob.Error(400, "Bad Request"));
+        then(catchThrowable(() -> shopService.getNode(offer.getId())))
+            .isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
+    @Test
+    void givenJobFailingBySerialization_whenProcessNext_thenItShouldFailOnceAttemptsExhausted() {
+        // Given
+        jdbcTemplate.execute("""
+            CREATE FUNCTION fail_conflicting_offer() RETURNS TRIGGER AS $$
+            BEGIN
+                RAISE EXCEPTION 'Conflicting offer' USING ERRCODE = 'serialization_failure';
+            END
+            $$ LANGUAGE plpgsql
+            """);
+        jdbcTemplate.execute("""
+            CREATE TRIGGER conflicting_offer BEFORE INSERT ON offers
+            FOR EACH ROW WHEN (NEW.offer_name = 'Conflicting')
+            EXECUTE FUNCTION fail_conflicting_offer()
+            """);
+        final ShopUnitImport offer = createOffer(null, "Conflicting", 100L);
+        final ImportJob job = importJobService.submit(createRequest(DATE, offer));
+        final double retries = meterRegistry.counter("megamarket.import.job.retries").count();
+
+        // When
+        importJobService.processNext();
+        final ImportJobStatus afterFirstAttempt = importJobService.getJob(job.getId()).getStatus();
+        importJobService.processNext();
+
+        // Then
+        then(afterFirstAttempt).isEqualTo(ImportJobStatus.QUEUED);
+        final ImportJob failed = importJobService.getJob(job.getId());
+        then(failed.getStatus()).isEqualTo(ImportJobStatus.FAILED);
+        then(failed.getError()).isEqualTo(new ImportJob.Error(500, "Internal Server Error"));
+        then(meterRegistry.counter("megamarket.import.job.retries").count())
+            .isEqualTo(retries + 1);
+        then(importJobService.processNext()).isFalse();
+    }
+
+    @Test
+    void givenJobsOfSameTree_whenProcessNext_thenOnlyEarliestShouldBeTaken() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        shopService.importData(List.of(category), DATE);
+        final ShopUnitImport first = createOffer(category.getId(), "First", 100L);
+        final ShopUnitImport second = createOffer(category.getId(), "Second", 200L);
+        final ShopUnitImport other = createCategory(null, "Other tree");
+        final ImportJob firstJob = importJobService.submit(createRequest(DATE, first));
+        final ImportJob secondJob = importJobService.submit(createRequest(DATE, second));
+        final ImportJob otherJob = importJobService.submit(createRequest(DATE, other));
+
+        // When
+        final List<ImportJobStatus> seenByOtherConnection = transactionTemplate.execute(status -> {
+            final UUID locked = importJobRepository.lockNext().orElseThrow().id();
+            final UUID next = CompletableFuture.supplyAsync(() -> transactionTemplate.execute(
+                s -> importJobRepository.lockNext().orElseThrow().id())).join();
+            then(locked).isEqualTo(firstJob.getId());
+            then(next).isEqualTo(otherJob.getId());
+            return CompletableFuture.supplyAsync(() -> List.of(
+                importJobService.getJob(firstJob.getId()).getStatus(),
+                importJobService.getJob(secondJob.getId()).getStatus())).join();
+        });
+
+        // Then
+        then(seenByOtherConnection)
+            .containsExactly(ImportJobStatus.RUNNING, ImportJobStatus.QUEUED);
+    }
+
+    @Test
+    void givenJobsOfSameTree_whenProcessAll_thenTheyShouldBeAppliedInOrder() {
+        // Given
+        final ShopUnitImport offer = createOffer(null, "Offer", 100L);
+        final List<UUID> jobIds = List.of(
+            importJobService.submit(createRequest(DATE, offer)).getId(),
+            importJobService.submit(createRequest(DATE.plusSeconds(1),
+                new ShopUnitImport(offer.getId(), "Renamed", ShopUnitType.OFFER, null, 200L)))
+                .getId());
+
+        // When
+        while (importJobService.processNext()) {
+            // Until all are processed
+        }
+
+        // Then
+        then(jobIds).extracting(id -> importJobService.getJob(id).getStatus())
+            .containsOnly(ImportJobStatus.DONE);
+        then(shopService.getNode(offer.getId()))
+            .extracting("name", "price")
+            .containsExactly("Renamed", 200L);
+    }
+
+    @Test
+    void givenCategoryMovedToAnotherTree_whenGetTreeIds_thenBothTreesShouldBeReturned() {
+        // Given
+        final ShopUnitImport firstRoot = createCategory(null, "First");
+        final ShopUnitImport secondRoot = createCategory(null, "Second");
+        final ShopUnitImport moved = createCategory(firstRoot.getId(), "Moved");
+        final ShopUnitImport offer = createOffer(moved.getId(), "Offer", 100L);
+        shopService.importData(List.of(firstRoot, secondRoot, moved, offer), DATE);
+        moved.setParentId(secondRoot.getId());
+        final ShopUnitImport newRoot = createCategory(null, "New");
+
+        // When
+        final var treeIds = shopService.getTreeIds(List.of(moved, newRoot));
+
+        // Then
+        then(treeIds).containsExactlyInAnyOrder(firstRoot.getId(), secondRoot.getId(),
+            newRoot.getId());
+    }
+
+    @Test
+    void givenNonExistedJob_whenGetJob_thenWillThrowException() {
+        // When
+        final Throwable throwable =
+            catchThrowable(() -> importJobService.getJob(UUID.randomUUID()));
+
+        // Then
+        then(throwable).isInstanceOf(ImportJobNotFoundException.class);
+    }
+
+    private ShopUnitImportRequest createRequest(Instant date, ShopUnitImport... items) {
+        final ShopUnitImportRequest request = new ShopUnitImportRequest();
+        request.setItems(List.of(items));
+        request.setUpdateDate(date);
+        return request;
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
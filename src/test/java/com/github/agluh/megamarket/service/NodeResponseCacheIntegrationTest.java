@@ -0,0 +1,132 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest(properties = "megamarket.node-cache.enabled=true")
+class NodeResponseCacheIntegrationTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private NodeResponseCache nodeResponseCache;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenCachedNodes_whenOfferUpdated_thenOnlyUpstreamCategoriesShouldBeReloaded() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport first = createCategory(root.getId(), "First");
+        final ShopUnitImport second = createCategory(root.getId(), "Second");
+        final ShopUnitImport firstOffer = createOffer(first.getId(), "First offer", 100);
+        final ShopUnitImport secondOffer = createOffer(second.getId(), "Second offer", 200);
+        shopService.importData(List.of(root, first, second, firstOffer, secondOffer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        final List<UUID> nodeIds = List.of(root.getId(), first.getId(), second.getId());
+        nodeIds.forEach(id -> nodeResponseCache.get(id, () -> shopService.getNode(id)));
+
+        // When
+        firstOffer.setPrice(300L);
+        shopService.importData(List.of(firstOffer), Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        // Then
+        final Set<UUID> reloaded = new HashSet<>();
+        nodeIds.forEach(id -> nodeResponseCache.get(id, () -> {
+            reloaded.add(id);
+            return shopService.getNode(id);
+        }));
+        then(reloaded)
+            .containsExactlyInAnyOrder(root.getId(), first.getId());
+        then(new String(nodeResponseCache.get(root.getId(), () -> null)))
+            .contains("\"price\":250");
+    }
+
+    @Test
+    void givenCachedNode_whenMovedToAnotherParent_thenBothParentsShouldBeReloaded() {
+        // Given
+        final ShopUnitImport first = createCategory(null, "First");
+        final ShopUnitImport second = createCategory(null, "Second");
+        final ShopUnitImport offer = createOffer(first.getId(), "Offer", 100);
+        shopService.importData(List.of(first, second, offer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        final List<UUID> nodeIds = List.of(first.getId(), second.getId());
+        nodeIds.forEach(id -> nodeResponseCache.get(id, () -> shopService.getNode(id)));
+
+        // When
+        offer.setParentId(second.getId());
+        shopService.importData(List.of(offer), Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        // Then
+        final Set<UUID> reloaded = new HashSet<>();
+        nodeIds.forEach(id -> nodeResponseCache.get(id, () -> {
+            reloaded.add(id);
+            return shopService.getNode(id);
+        }));
+        then(reloaded)
+            .containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    void givenCachedDescendants_whenCategoryDeleted_thenTheyShouldNotBeFound() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport child = createCategory(root.getId(), "Child");
+        final ShopUnitImport offer = createOffer(child.getId(), "Offer", 100);
+        shopService.importData(List.of(root, child, offer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        final List<UUID> descendantIds = List.of(child.getId(), offer.getId());
+        descendantIds.forEach(id -> nodeResponseCache.get(id, () -> shopService.getNode(id)));
+
+        // When
+        shopService.deleteNode(root.getId());
+
+        // Then
+        for (UUID id : descendantIds) {
+            then(catchThrowable(() -> nodeResponseCache.get(id, () -> shopService.getNode(id))))
+                .isInstanceOf(ShopUnitNotFoundException.class);
+        }
+    }
+
+    @Test
+    void givenCache_whenGetNode_thenMetricsShouldBeExposed() {
+        then(meterRegistry.find("cache.gets").tag("cache", "nodes").meters())
+            .isNotEmpty();
+        then(meterRegistry.find("cache.evictions").tag("cache", "nodes").meters())
+            .isNotEmpty();
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
@@ -0,0 +1,60 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * Runs all service scenarios with imports staged in parallel chunks.
+ */
+@TestPropertySource(properties = {
+    "megamarket.import.parallelism=4",
+    "megamarket.import.chunk-size=2",
+    "megamarket.bulk-load.threshold=1"
+})
+class PipelinedShopServiceIntegrationTest extends ShopServiceIntegrationTest {
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void givenOfferOfMissingCategory_whenImport_thenNothingShouldBeSavedOrLeftStaged() {
+        // Given
+        final ShopUnitImport root = new ShopUnitImport(UUID.randomUUID(), "Root",
+            ShopUnitType.CATEGORY, null, null);
+        final ShopUnitImport child = new ShopUnitImport(UUID.randomUUID(), "Child",
+            ShopUnitType.CATEGORY, root.getId(), null);
+        final ShopUnitImport offer = new ShopUnitImport(UUID.randomUUID(), "Offer",
+            ShopUnitType.OFFER, UUID.randomUUID(), 100L);
+
+        // When
+        final Throwable throwable = catchThrowable(() -> shopService.importData(
+            List.of(root, child, offer), Instant.parse("2022-06-14T10:30:00.000Z")));
+
+        // Then
+        then(throwable).isInstanceOf(InvalidIdentityException.class);
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "categories")).isZero();
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "categories_staging")).isZero();
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "offers_staging")).isZero();
+    }
+
+    @Override
+    protected void thenCategoryWritesShouldBeTimed() {
+        then(repositoryTimerCount("stage")).isPositive();
+        then(repositoryTimerCount("mergeStaged")).isPositive();
+    }
+}
@@ -0,0 +1,114 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * Reads go through a replica, which is the same database here.
+ * It isn't a standby, so it's always in sync with the last change.
+ */
+@SpringBootTest(properties = {
+    "megamarket.read-replica.datasource.url=${spring.datasource.url}",
+    "megamarket.read-replica.read-your-writes=lsn"
+})
+class ReadReplicaShopServiceIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenReplica_whenGetNodeStatistics_thenReplicaShouldBeRead() {
+        // Given
+        final ShopUnitImport offer = createOffer(null, "Offer", 100L);
+        shopService.importData(List.of(offer), DATE);
+        final double replicaReads = readConnections("replica");
+        final double primaryReads = readConnections("primary");
+
+        // When
+        shopService.getNodeStatistics(offer.getId(), null, null);
+
+        // Then
+        then(readConnections("replica")).isGreaterThan(replicaReads);
+        then(readConnections("primary")).isEqualTo(primaryReads);
+    }
+
+    @Test
+    void givenReplica_whenStreamSales_thenReplicaShouldBeRead() {
+        // Given
+        final ShopUnitImport offer = createOffer(null, "Offer", 100L);
+        shopService.importData(List.of(offer), DATE);
+        final double replicaReads = readConnections("replica");
+        final double primaryReads = readConnections("primary");
+
+        // When
+        final List<ShopUnit> streamed = new ArrayList<>();
+        shopService.streamSales(DATE, streamed::add);
+
+        // Then
+        then(streamed).extracting(ShopUnit::getId).containsExactly(offer.getId());
+        then(readConnections("replica")).isGreaterThan(replicaReads);
+        then(readConnections("primary")).isEqualTo(primaryReads);
+    }
+
+    @Test
+    void givenReplayedChange_whenGetNode_thenChangeShouldBeSeen() {
+        // Given
+        final ShopUnitImport category = createCategory("Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100L);
+        shopService.importData(List.of(category, offer), DATE);
+
+        // When
+        shopService.importData(List.of(createOffer(offer.getId(), category.getId(), 300L)),
+            DATE.plusSeconds(60));
+
+        // Then
+        then(shopService.getNode(category.getId()))
+            .extracting("price", "date")
+            .containsExactly(300L, DATE.plusSeconds(60));
+        then(shopService.getNodeStatistics(category.getId(), null, null)).hasSize(2);
+    }
+
+    private double readConnections(String target) {
+        return meterRegistry.get("megamarket.read.connections").tag("target", target)
+            .functionCounter().count();
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createOffer(UUID id, UUID parentId, long price) {
+        return new ShopUnitImport(id, "Offer", ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, null, null);
+    }
+}
@@ -3,14 +3,21 @@ package com.github.agluh.megamarket.service;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.BDDAssertions.then;
 
+import com.github.agluh.megamarket.dto.SalesCursor;
 import com.github.agluh.megamarket.dto.ShopUnit;
 import com.github.agluh.megamarket.dto.ShopUnitImport;
 import com.github.agluh.megamarket.dto.ShopUnitStatistic;
 import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.model.AggregateDrift;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import com.github.agluh.megamarket.repository.CategoryRepository;
 import com.github.agluh.megamarket.repository.exception.InvalidIdentityException;
+import com.github.agluh.megamarket.repository.impl.CategoryRepositoryImpl;
 import com.github.agluh.megamarket.service.exceptions.IdentityIsNotUniqueException;
 import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.MeterRegistry;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
@@ -32,9 +39,18 @@ class ShopServiceIntegrationTest {
     @Autowired
     private ShopService shopService;
 
+    @Autowired
+    private PriceAggregatesConsistencyCheck consistencyCheck;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
     @Autowired
     private JdbcTemplate jdbcTemplate;
 
+    @Autowired
+    private MeterRegistry meterRegistry;
+
     @AfterEach
     void tearDown() {
         JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
@@ -448,6 +464,109 @@ class ShopServiceIntegrationTest {
         );
     }
 
+    @Test
+    void givenOffersUpdatedAtDifferentDates_whenGetSalesByPages_thenAllOffersShouldBeFetchedInOrder() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        final Instant first = Instant.parse("2022-06-13T10:30:00.000Z");
+        final Instant second = first.plusSeconds(60);
+        shopService.importData(List.of(category, createOffer(category.getId(), "A", 1),
+            createOffer(category.getId(), "B", 2), createOffer(category.getId(), "C", 3)), first);
+        shopService.importData(List.of(createOffer(category.getId(), "D", 4),
+            createOffer(category.getId(), "E", 5)), second);
+
+        // When
+        List<ShopUnit> fetched = new ArrayList<>();
+        SalesCursor cursor = null;
+        List<ShopUnit> page;
+        do {
+            page = shopService.getSales(second, cursor, 2);
+            fetched.addAll(page);
+            cursor = page.isEmpty() ? null : SalesCursor.after(page.get(page.size() - 1));
+        } while (page.size() == 2);
+
+        // Then
+        then(fetched).extracting(ShopUnit::getName).containsExactlyInAnyOrder("A", "B", "C", "D", "E");
+        then(fetched).extracting(ShopUnit::getId).doesNotHaveDuplicates();
+        then(fetched).extracting(ShopUnit::getDate).isSorted();
+    }
+
+    @Test
+    void givenOffers_whenStreamSales_thenSameOffersAsGetSalesShouldBeFetched() {
+        // Given
+        final ShopUnitImport category = createCategory(null, "Category");
+        final Instant date = Instant.parse("2022-06-13T10:30:00.000Z");
+        shopService.importData(List.of(category, createOffer(category.getId(), "A", 1),
+            createOffer(category.getId(), "B", 2)), date);
+
+        // When
+        List<ShopUnit> streamed = new ArrayList<>();
+        shopService.streamSales(date, streamed::add);
+
+        // Then
+        then(streamed).usingRecursiveFieldByFieldElementComparator()
+            .containsExactlyInAnyOrderElementsOf(shopService.getSales(date));
+    }
+
+    @Test
+    void givenImportedTree_whenGetNode_thenImportPhasesAndTreeShapeShouldBeMeasured() {
+        // Given
+        final ShopUnitImport rootCategory = createCategory(null, "Root");
+        final ShopUnitImport subCategory = createCategory(rootCategory.getId(), "Sub category");
+        final ShopUnitImport offer = createOffer(subCategory.getId(), "Offer", 100);
+        final Instant date = Instant.parse("2022-06-13T10:30:00.000Z");
+        final long diffCount = phaseCount("diff");
+        final double upsertedOffers = meterRegistry.counter(
+            "megamarket.import.rows.upserted", "type", "offer").count();
+        final double totalDepth = meterRegistry.summary("megamarket.node.tree.depth").totalAmount();
+        shopService.importData(List.of(rootCategory, subCategory, offer), date);
+
+        // When
+        shopService.getNode(rootCategory.getId());
+
+        // Then
+        then(phaseCount("diff")).isEqualTo(diffCount + 1);
+        then(meterRegistry.counter("megamarket.import.rows.upserted", "type", "offer").count())
+            .isEqualTo(upsertedOffers + 1);
+        then(meterRegistry.summary("megamarket.node.tree.depth").totalAmount())
+            .isEqualTo(totalDepth + 3);
+        thenCategoryWritesShouldBeTimed();
+    }
+
+    /**
+     * Checks repository timers of the way categories are written by imports.
+     */
+    protected void thenCategoryWritesShouldBeTimed() {
+        then(repositoryTimerCount("save")).isPositive();
+    }
+
+    protected long repositoryTimerCount(String method) {
+        return meterRegistry.get("megamarket.repository")
+            .tag("class", CategoryRepositoryImpl.class.getName()).tag("method", method).timer()
+            .count();
+    }
+
+    private long phaseCount(String phase) {
+        return meterRegistry.timer("megamarket.import.phase", "phase", phase).count();
+    }
+
+    @Test
+    void givenFailingImport_whenImport_thenItsMetricsShouldNotBeRecorded() {
+        // Given
+        final ShopUnitImport orphan = createOffer(UUID.randomUUID(), "Orphan", 100);
+        final long diffCount = phaseCount("diff");
+        final long importCount = meterRegistry.summary("megamarket.import.items").count();
+
+        // When
+        final Throwable throwable = catchThrowable(() -> shopService.importData(List.of(orphan),
+            Instant.parse("2022-06-13T10:30:00.000Z")));
+
+        // Then
+        then(throwable).isInstanceOf(InvalidIdentityException.class);
+        then(phaseCount("diff")).isEqualTo(diffCount);
+        then(meterRegistry.summary("megamarket.import.items").count()).isEqualTo(importCount);
+    }
+
     @Test
     void givenTreeOfSubcategories_whenImport_thenCategoriesShouldBePlacedToStatisticsOnce() {
         // Given
@@ -464,6 +583,53 @@ class ShopServiceIntegrationTest {
         then(stat).hasSize(1);
     }
 
+    @Test
+    void givenOfferMovedToAnotherCategory_whenImport_thenBothCategoriesShouldBeRecorded() {
+        // Given
+        final ShopUnitImport first = createCategory(null, "First");
+        final ShopUnitImport second = createCategory(null, "Second");
+        final ShopUnitImport offer = createOffer(first.getId(), "Offer", 100);
+        shopService.importData(List.of(first, second, offer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        // When
+        offer.setParentId(second.getId());
+        shopService.importData(List.of(offer), Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        // Then
+        then(shopService.getNodeStatistics(first.getId(), null, null))
+            .extracting(ShopUnitStatistic::getPrice)
+            .containsExactlyInAnyOrder(100L, null);
+        then(shopService.getNodeStatistics(second.getId(), null, null))
+            .extracting(ShopUnitStatistic::getPrice)
+            .containsExactlyInAnyOrder(null, 100L);
+        then(shopService.getNodeStatistics(offer.getId(), null, null))
+            .extracting(ShopUnitStatistic::getParentId)
+            .containsExactlyInAnyOrder(first.getId(), second.getId());
+    }
+
+    @Test
+    void givenCategoryWithOffers_whenDeleteOffer_thenLastHistoryEntryShouldBeUpdated() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport category = createCategory(root.getId(), "Category");
+        final ShopUnitImport cheap = createOffer(category.getId(), "Cheap", 100);
+        final ShopUnitImport expensive = createOffer(category.getId(), "Expensive", 300);
+        shopService.importData(List.of(root, category, cheap, expensive),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        // When
+        shopService.deleteNode(expensive.getId());
+
+        // Then
+        then(shopService.getNodeStatistics(root.getId(), null, null))
+            .extracting(ShopUnitStatistic::getPrice)
+            .containsExactly(100L);
+        then(shopService.getNodeStatistics(category.getId(), null, null))
+            .extracting(ShopUnitStatistic::getPrice)
+            .containsExactly(100L);
+    }
+
     @Test
     void givenElementsWithDuplicatedIds_whenImport_thenExceptionShouldBeThrown() {
         // Given
@@ -482,6 +648,147 @@ class ShopServiceIntegrationTest {
         then(throwable).isInstanceOf(IdentityIsNotUniqueException.class);
     }
 
+    @Test
+    void givenDeepTreeWithOffers_whenRepriceAndMoveOffers_thenAllUpstreamPricesShouldBeConsistent() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport left = createCategory(root.getId(), "Left");
+        final ShopUnitImport leftLeaf = createCategory(left.getId(), "Left leaf");
+        final ShopUnitImport right = createCategory(root.getId(), "Right");
+        final ShopUnitImport first = createOffer(leftLeaf.getId(), "First", 100);
+        final ShopUnitImport second = createOffer(leftLeaf.getId(), "Second", 200);
+        final ShopUnitImport third = createOffer(right.getId(), "Third", 301);
+        shopService.importData(List.of(root, left, leftLeaf, right, first, second, third),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        final Instant date = Instant.parse("2022-06-14T10:30:00.000Z");
+
+        // When
+        second.setPrice(400L);
+        first.setParentId(right.getId());
+        shopService.importData(List.of(first, second), date);
+
+        // Then
+        then(shopService.getNode(root.getId())).extracting("price").isEqualTo(267L);
+        then(shopService.getNode(left.getId())).extracting("price").isEqualTo(400L);
+        then(shopService.getNode(leftLeaf.getId())).extracting("price").isEqualTo(400L);
+        then(shopService.getNode(right.getId())).extracting("price").isEqualTo(200L);
+        then(shopService.getNode(right.getId())).extracting("date").isEqualTo(date);
+        then(consistencyCheck.check()).isEmpty();
+    }
+
+    @Test
+    void givenSubtreeWithOffers_whenMoveSubtreeAndDeleteIt_thenUpstreamPricesShouldBeConsistent() {
+        // Given
+        final ShopUnitImport firstRoot = createCategory(null, "First root");
+        final ShopUnitImport secondRoot = createCategory(null, "Second root");
+        final ShopUnitImport subtree = createCategory(firstRoot.getId(), "Subtree");
+        final ShopUnitImport offer = createOffer(subtree.getId(), "Offer", 100);
+        final ShopUnitImport otherOffer = createOffer(secondRoot.getId(), "Other offer", 51);
+        shopService.importData(List.of(firstRoot, secondRoot, subtree, offer, otherOffer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        // When
+        subtree.setParentId(secondRoot.getId());
+        shopService.importData(List.of(subtree), Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        // Then
+        then(shopService.getNode(firstRoot.getId())).extracting("price").isNull();
+        then(shopService.getNode(secondRoot.getId())).extracting("price").isEqualTo(75L);
+        then(consistencyCheck.check()).isEmpty();
+
+        // When
+        shopService.deleteNode(subtree.getId());
+
+        // Then
+        then(shopService.getNode(secondRoot.getId())).extracting("price").isEqualTo(51L);
+        then(consistencyCheck.check()).isEmpty();
+    }
+
+    @Test
+    @Sql({"/import_category_with_single_offer.sql"})
+    void givenCategoryWithCorruptedAggregate_whenCheckConsistency_thenDriftShouldBeReported() {
+        // Given
+        final UUID categoryId = UUID.fromString("915daef4-e71f-11ec-8fea-0242ac120002");
+        jdbcTemplate.update("UPDATE categories SET offer_sum = 10 WHERE category_id = ?", categoryId);
+
+        // When
+        Collection<AggregateDrift> drift = consistencyCheck.check();
+
+        // Then
+        then(drift).singleElement().extracting("categoryId").isEqualTo(categoryId);
+        then(drift).singleElement().extracting("actual").isEqualTo(new PriceAggregate(20, 1));
+    }
+
+    @Test
+    @Sql({"/import_two_subtree_of_categories_and_offer.sql"})
+    void givenCategoriesWithCorruptedAggregates_whenRecomputePrices_thenUpstreamPricesShouldBeRestored() {
+        // Given
+        final UUID rootId = UUID.fromString("915daef4-e71f-11ec-8fea-0242ac120002");
+        final UUID categoryId = UUID.fromString("915db3ea-e71f-11ec-8fea-0242ac120002");
+        jdbcTemplate.update("UPDATE categories SET offer_sum = 0, offer_count = 0, price = null");
+
+        // When
+        categoryRepository.recomputePrices(List.of(categoryId), null);
+
+        // Then
+        then(shopService.getNode(rootId)).extracting("price").isEqualTo(100L);
+        then(shopService.getNode(rootId)).extracting("date")
+            .isEqualTo(Instant.parse("2022-05-28T21:12:01.000Z"));
+        then(consistencyCheck.check()).isEmpty();
+    }
+
+    @Test
+    void givenChainOfCategories_whenMoveMiddleCategoryUnderNewRoot_thenWholeSubtreeShouldBeMoved() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport middle = createCategory(root.getId(), "Middle");
+        final ShopUnitImport leaf = createCategory(middle.getId(), "Leaf");
+        final ShopUnitImport offer = createOffer(leaf.getId(), "Offer", 100);
+        shopService.importData(List.of(root, middle, leaf, offer),
+            Instant.parse("2022-06-13T10:30:00.000Z"));
+        final ShopUnitImport newRoot = createCategory(null, "New root");
+        final ShopUnitImport newLeaf = createCategory(leaf.getId(), "New leaf");
+
+        // When
+        middle.setParentId(newRoot.getId());
+        shopService.importData(List.of(newLeaf, middle, newRoot),
+            Instant.parse("2022-06-14T10:30:00.000Z"));
+
+        // Then
+        then(shopService.getNode(root.getId()).getChildren()).isEmpty();
+        then(shopService.getNode(root.getId())).extracting("price").isNull();
+
+        ShopUnit movedTree = shopService.getNode(newRoot.getId());
+        then(movedTree).extracting("price").isEqualTo(100L);
+        then(movedTree.getChildren()).singleElement().extracting("id").isEqualTo(middle.getId());
+        then(shopService.getNode(leaf.getId()).getChildren()).hasSize(2);
+        then(shopService.getNode(newLeaf.getId())).extracting("parentId").isEqualTo(leaf.getId());
+
+        // When
+        shopService.deleteNode(newRoot.getId());
+
+        // Then
+        final Throwable throwable = catchThrowable(() -> shopService.getNode(newLeaf.getId()));
+        then(throwable).isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
+    @Test
+    void givenChainOfCategories_whenMoveCategoryUnderItsDescendant_thenExceptionShouldBeThrown() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport leaf = createCategory(root.getId(), "Leaf");
+        shopService.importData(List.of(root, leaf), Instant.parse("2022-06-13T10:30:00.000Z"));
+
+        // When
+        root.setParentId(leaf.getId());
+        final Throwable throwable = catchThrowable(() ->
+            shopService.importData(List.of(root), Instant.parse("2022-06-14T10:30:00.000Z")));
+
+        // Then
+        then(throwable).isInstanceOf(InvalidIdentityException.class);
+        then(shopService.getNode(root.getId())).extracting("parentId").isNull();
+    }
+
     private ShopUnitImport createOffer(UUID parentId, String name, long price) {
         return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
     }
@@ -3,25 +3,61 @@ package com.github.agluh.megamarket.service;
 import static org.assertj.core.api.Assertions.catchThrowable;
 import static org.assertj.core.api.BDDAssertions.then;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
 
+import com.github.agluh.megamarket.model.Offer;
+import com.github.agluh.megamarket.model.PriceAggregate;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.repository.OfferRepository;
 import com.github.agluh.megamarket.repository.ShopUnitReadModel;
+import com.github.agluh.megamarket.repository.StatisticsRepository;
 import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
+import org.mockito.BDDMockito;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.transaction.PlatformTransactionManager;
 
 @ExtendWith(MockitoExtension.class)
 class ShopServiceTest {
 
+    @Mock
+    private OfferRepository offerRepository;
+
+    @Mock
+    private CategoryRepository categoryRepository;
+
     @Mock
     private ShopUnitReadModel shopUnitReadModel;
 
-    @InjectMocks
+    @Mock
+    private StatisticsRepository statisticsRepository;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     private ShopService shopService;
 
+    @BeforeEach
+    void setUp() {
+        final ConcurrencyRetry concurrencyRetry = new ConcurrencyRetry(
+            mock(PlatformTransactionManager.class), new SimpleMeterRegistry(), 1, Duration.ZERO);
+        shopService = new ShopService(offerRepository, categoryRepository,
+            shopUnitReadModel, Optional.empty(), null, statisticsRepository, eventPublisher,
+            new SimpleMeterRegistry(), null, concurrencyRetry, false);
+    }
+
     @Test
     void givenNonExistedNode_whenGetNode_thenWillThrowException() {
         // Given
@@ -38,12 +74,24 @@ class ShopServiceTest {
             .isInstanceOf(ShopUnitNotFoundException.class);
     }
 
+    @Test
+    void givenNonExistedNode_whenGetNodeTree_thenWillThrowException() {
+        // Given
+        final UUID nonExistedNodeId = UUID.randomUUID();
+
+        // When
+        final Throwable throwable = catchThrowable(() ->
+            shopService.getNodeTree(nonExistedNodeId));
+
+        // Then
+        then(throwable)
+            .isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
     @Test
     void givenNonExistedNode_whenDeleteNode_thenWillThrowException() {
         // Given
         final UUID nonExistedNodeId = UUID.randomUUID();
-        given(shopUnitReadModel.getNode(nonExistedNodeId))
-            .willThrow(ShopUnitNotFoundException.class);
 
         // When
         final Throwable throwable = catchThrowable(() ->
@@ -53,4 +101,22 @@ class ShopServiceTest {
         then(throwable)
             .isInstanceOf(ShopUnitNotFoundException.class);
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenStoredOffer_whenDeleteNode_thenStoredPriceShouldBeSubtracted() {
+        // Given
+        final UUID parentId = UUID.randomUUID();
+        final Offer offer = new Offer(UUID.randomUUID(), parentId, "Offer", 100L, Instant.now());
+        given(offerRepository.findByIds(List.of(offer.getId()))).willReturn(List.of(offer));
+
+        // When
+        shopService.deleteNode(offer.getId());
+
+        // Then
+        BDDMockito.then(categoryRepository).should().lockTrees(Set.of(parentId));
+        BDDMockito.then(offerRepository).should().delete(offer.getId());
+        BDDMockito.then(categoryRepository).should()
+            .applyAggregateDeltas(Map.of(parentId, PriceAggregate.of(100L).negate()), null);
+        BDDMockito.then(shopUnitReadModel).shouldHaveNoInteractions();
+    }
+}
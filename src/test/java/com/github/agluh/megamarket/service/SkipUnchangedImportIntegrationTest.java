@@ -0,0 +1,112 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest(properties = "megamarket.import.skip-unchanged=true")
+class SkipUnchangedImportIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-14T10:30:00.000Z");
+    private static final Instant NEXT_DATE = DATE.plusSeconds(60);
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenStoredItems_whenImportSameItems_thenTheyShouldBeSkipped() {
+        // Given
+        final ShopUnitImport category = createCategory("Category");
+        final ShopUnitImport offer = createOffer(category.getId(), "Offer", 100L);
+        shopService.importData(List.of(category, offer), DATE);
+        final double skipped = skippedCount("offer") + skippedCount("category");
+
+        // When
+        shopService.importData(List.of(category, offer), NEXT_DATE);
+
+        // Then
+        then(shopService.getNode(category.getId()))
+            .extracting("date", "price")
+            .containsExactly(DATE, 100L);
+        then(shopService.getNode(offer.getId())).extracting("date").isEqualTo(DATE);
+        then(shopService.getNodeStatistics(offer.getId(), null, null)).hasSize(1);
+        then(skippedCount("offer") + skippedCount("category")).isEqualTo(skipped + 2);
+    }
+
+    @Test
+    void givenStoredItems_whenImportWithChangedPrice_thenOnlyChangedOfferShouldBeUpdated() {
+        // Given
+        final ShopUnitImport category = createCategory("Category");
+        final ShopUnitImport first = createOffer(category.getId(), "First", 100L);
+        final ShopUnitImport second = createOffer(category.getId(), "Second", 200L);
+        shopService.importData(List.of(category, first, second), DATE);
+        final ShopUnitImport repriced = createOffer(first.getId(), category.getId(), "First", 300L);
+
+        // When
+        shopService.importData(List.of(category, repriced, second), NEXT_DATE);
+
+        // Then
+        then(shopService.getNode(first.getId()))
+            .extracting("date", "price")
+            .containsExactly(NEXT_DATE, 300L);
+        then(shopService.getNode(second.getId())).extracting("date").isEqualTo(DATE);
+        then(shopService.getNode(category.getId()))
+            .extracting("date", "price")
+            .containsExactly(NEXT_DATE, 250L);
+    }
+
+    @Test
+    void givenStoredCategory_whenImportRenamedCategory_thenItShouldBeUpdated() {
+        // Given
+        final ShopUnitImport category = createCategory("Category");
+        shopService.importData(List.of(category), DATE);
+        final ShopUnitImport renamed = new ShopUnitImport(category.getId(), "Renamed",
+            ShopUnitType.CATEGORY, null, null);
+
+        // When
+        shopService.importData(List.of(renamed), NEXT_DATE);
+
+        // Then
+        then(shopService.getNode(category.getId()))
+            .extracting("name", "date")
+            .containsExactly("Renamed", NEXT_DATE);
+    }
+
+    private double skippedCount(String type) {
+        return meterRegistry.counter("megamarket.import.rows.skipped", "type", type).count();
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return createOffer(UUID.randomUUID(), parentId, name, price);
+    }
+
+    private ShopUnitImport createOffer(UUID id, UUID parentId, String name, long price) {
+        return new ShopUnitImport(id, name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, null, null);
+    }
+}
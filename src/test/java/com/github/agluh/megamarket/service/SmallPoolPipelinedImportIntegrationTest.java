@@ -0,0 +1,87 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * More imports run at once than the pool has connections for their staging,
+ * none of them should wait for a connection till the pool times out.
+ */
+@SpringBootTest(properties = {
+    "spring.datasource.hikari.maximum-pool-size=3",
+    "spring.datasource.hikari.connection-timeout=1000",
+    "megamarket.import.parallelism=2",
+    "megamarket.import.chunk-size=2",
+    "megamarket.bulk-load.threshold=1"
+})
+class SmallPoolPipelinedImportIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-14T10:30:00.000Z");
+    private static final int THREADS = 4;
+    private static final int IMPORTS = 5;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenSmallPool_whenImportConcurrently_thenAllShouldSucceed() {
+        // When
+        CompletableFuture.allOf(IntStream.range(0, THREADS)
+            .mapToObj(thread -> CompletableFuture.runAsync(this::importTrees, executor))
+            .toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "categories"))
+            .isEqualTo(THREADS * IMPORTS);
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "offers"))
+            .isEqualTo(THREADS * IMPORTS * 20);
+        then(categoryRepository.findAggregateDrift()).isEmpty();
+    }
+
+    /**
+     * Every import is a tree of its own, so imports don't wait for locks of each other.
+     */
+    private void importTrees() {
+        for (int i = 0; i < IMPORTS; i++) {
+            final UUID rootId = UUID.randomUUID();
+            final List<ShopUnitImport> items = new ArrayList<>();
+            items.add(new ShopUnitImport(rootId, "Root", ShopUnitType.CATEGORY, null, null));
+            for (int j = 0; j < 20; j++) {
+                items.add(new ShopUnitImport(UUID.randomUUID(), "Offer", ShopUnitType.OFFER,
+                    rootId, 100L));
+            }
+            shopService.importData(items, DATE);
+        }
+    }
+}
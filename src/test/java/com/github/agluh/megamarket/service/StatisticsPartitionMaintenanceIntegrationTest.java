@@ -0,0 +1,119 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.StatisticsRepository;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@SpringBootTest(properties = {
+    "megamarket.statistics.partitions.months-ahead=1",
+    "megamarket.statistics.partitions.retention-months=2"
+})
+class StatisticsPartitionMaintenanceIntegrationTest {
+
+    @Autowired
+    private StatisticsPartitionMaintenance maintenance;
+
+    @Autowired
+    private StatisticsRepository statisticsRepository;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenStatisticsOfPastMonth_whenMaintain_thenRowsShouldBeMovedToMonthlyPartition() {
+        // Given
+        statisticsRepository.removePartitions(YearMonth.of(2021, 3), false);
+        final ShopUnitImport offer = createOffer("Offer", 100);
+        shopService.importData(List.of(offer), Instant.parse("2021-03-13T10:30:00.000Z"));
+
+        // When
+        maintenance.maintain(YearMonth.of(2021, 4));
+
+        // Then
+        then(statisticsRepository.findPartitions())
+            .contains(YearMonth.of(2021, 3), YearMonth.of(2021, 4), YearMonth.of(2021, 5));
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "offers_statistics_p2021_03"))
+            .isEqualTo(1);
+        then(shopService.getNodeStatistics(offer.getId(), null, null))
+            .hasSize(1);
+    }
+
+    @Test
+    void givenPartitionsOutOfRetention_whenMaintain_thenOldPartitionsShouldBeDropped() {
+        // Given
+        final ShopUnitImport oldOffer = createOffer("Old offer", 100);
+        shopService.importData(List.of(oldOffer), Instant.parse("2021-01-13T10:30:00.000Z"));
+        final ShopUnitImport newOffer = createOffer("New offer", 200);
+        shopService.importData(List.of(newOffer), Instant.parse("2021-02-13T10:30:00.000Z"));
+        maintenance.maintain(YearMonth.of(2021, 2));
+
+        // When
+        maintenance.maintain(YearMonth.of(2021, 3));
+
+        // Then
+        then(statisticsRepository.findPartitions())
+            .doesNotContain(YearMonth.of(2021, 1))
+            .contains(YearMonth.of(2021, 2));
+        then(shopService.getNodeStatistics(oldOffer.getId(), null, null))
+            .isEmpty();
+        then(shopService.getNodeStatistics(newOffer.getId(), null, null))
+            .hasSize(1);
+    }
+
+    @Test
+    void givenUncommittedStatisticsOfMonth_whenMaintain_thenRowsShouldBeMovedOnceCommitted() {
+        // Given
+        statisticsRepository.removePartitions(YearMonth.of(2021, 6), false);
+        final ShopUnitImport offer = createOffer("Offer", 100);
+        final CompletableFuture<Void> maintained = new CompletableFuture<>();
+
+        // When
+        transactionTemplate.executeWithoutResult(status -> {
+            shopService.importData(List.of(offer), Instant.parse("2021-06-13T10:30:00.000Z"));
+            maintained.completeAsync(() -> {
+                maintenance.maintain(YearMonth.of(2021, 6));
+                return null;
+            });
+            // Maintenance waits for the import to commit
+            then(catchThrowable(() -> maintained.get(500, TimeUnit.MILLISECONDS)))
+                .isInstanceOf(TimeoutException.class);
+        });
+        maintained.join();
+
+        // Then
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "offers_statistics_p2021_06"))
+            .isEqualTo(1);
+    }
+
+    private ShopUnitImport createOffer(String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, null, price);
+    }
+}
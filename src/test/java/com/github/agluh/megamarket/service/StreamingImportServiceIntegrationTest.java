@@ -0,0 +1,209 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.repository.CategoryRepository;
+import com.github.agluh.megamarket.service.exceptions.IdentityIsNotUniqueException;
+import com.github.agluh.megamarket.service.exceptions.InvalidImportException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+@SpringBootTest(properties = "megamarket.import.chunk-size=2")
+class StreamingImportServiceIntegrationTest {
+
+    private static final String ROOT_ID = "069cb8d7-bbdd-47d3-ad8f-82ef4c269df1";
+    private static final String CHILD_ID = "d515e43f-f3f6-4471-bb77-6b455017a2d2";
+    private static final String FIRST_OFFER_ID = "863e1a7a-1304-42ae-943b-179184c077e3";
+    private static final String SECOND_OFFER_ID = "b1d8fd7d-2ae3-47d5-b2f9-0f094af800d4";
+    private static final String THIRD_OFFER_ID = "98883e8f-0507-482f-bce2-2fb306cf6483";
+    private static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+    private static final int THREADS = 4;
+    private static final int IMPORTS = 10;
+
+    @Autowired
+    private StreamingImportService streamingImportService;
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private CategoryRepository categoryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenChildrenBeforeParentsInSeveralChunks_whenImport_thenTreeShouldBeImported() {
+        // Given
+        final String json = """
+            {
+              "updateDate": "2022-06-13T10:30:00.000Z",
+              "items": [
+                {"id": "%s", "name": "First", "type": "OFFER", "parentId": "%s", "price": 100},
+                {"id": "%s", "name": "Second", "type": "OFFER", "parentId": "%s", "price": 200},
+                {"id": "%s", "name": "Child", "type": "CATEGORY", "parentId": "%s"},
+                {"id": "%s", "name": "Third", "type": "OFFER", "parentId": "%s", "price": 600},
+                {"id": "%s", "name": "Root", "type": "CATEGORY", "parentId": null}
+              ]
+            }
+            """.formatted(FIRST_OFFER_ID, CHILD_ID, SECOND_OFFER_ID, CHILD_ID, CHILD_ID, ROOT_ID,
+            THIRD_OFFER_ID, ROOT_ID, ROOT_ID);
+
+        // When
+        streamingImportService.importData(toStream(json));
+
+        // Then
+        final ShopUnit root = shopService.getNode(UUID.fromString(ROOT_ID));
+        then(root.getPrice())
+            .isEqualTo(300L);
+        then(root.getDate())
+            .isEqualTo(Instant.parse("2022-06-13T10:30:00.000Z"));
+        then(root.getChildren())
+            .hasSize(2);
+        then(shopService.getNode(UUID.fromString(CHILD_ID)).getPrice())
+            .isEqualTo(150L);
+    }
+
+    @Test
+    void givenUpdateDateAfterItems_whenImport_thenItemsShouldBeImported() {
+        // Given
+        final String json = """
+            {
+              "items": [
+                {"id": "%s", "name": "Root", "type": "CATEGORY", "parentId": null},
+                {"id": "%s", "name": "First", "type": "OFFER", "parentId": "%s", "price": 100}
+              ],
+              "updateDate": "2022-06-13T10:30:00.000Z"
+            }
+            """.formatted(ROOT_ID, FIRST_OFFER_ID, ROOT_ID);
+
+        // When
+        streamingImportService.importData(toStream(json));
+
+        // Then
+        then(shopService.getNode(UUID.fromString(ROOT_ID)).getPrice())
+            .isEqualTo(100L);
+    }
+
+    @Test
+    void givenInvalidItemAfterImportedChunk_whenImport_thenNothingShouldBeImported() {
+        // Given
+        final String json = """
+            {
+              "updateDate": "2022-06-13T10:30:00.000Z",
+              "items": [
+                {"id": "%s", "name": "Root", "type": "CATEGORY", "parentId": null},
+                {"id": "%s", "name": "First", "type": "OFFER", "parentId": "%s", "price": 100},
+                {"id": "%s", "name": "Second", "type": "OFFER", "parentId": "%s", "price": -1}
+              ]
+            }
+            """.formatted(ROOT_ID, FIRST_OFFER_ID, ROOT_ID, SECOND_OFFER_ID, ROOT_ID);
+
+        // When
+        final Throwable throwable = catchThrowable(() ->
+            streamingImportService.importData(toStream(json)));
+
+        // Then
+        then(throwable)
+            .isInstanceOf(InvalidImportException.class);
+        then(JdbcTestUtils.countRowsInTable(jdbcTemplate, "categories"))
+            .isZero();
+    }
+
+    @Test
+    void givenDuplicatedIdsInDifferentChunks_whenImport_thenWillThrowException() {
+        // Given
+        final String json = """
+            {
+              "updateDate": "2022-06-13T10:30:00.000Z",
+              "items": [
+                {"id": "%s", "name": "Root", "type": "CATEGORY", "parentId": null},
+                {"id": "%s", "name": "First", "type": "OFFER", "parentId": "%s", "price": 100},
+                {"id": "%s", "name": "Root", "type": "CATEGORY", "parentId": null}
+              ]
+            }
+            """.formatted(ROOT_ID, FIRST_OFFER_ID, ROOT_ID, ROOT_ID);
+
+        // When
+        final Throwable throwable = catchThrowable(() ->
+            streamingImportService.importData(toStream(json)));
+
+        // Then
+        then(throwable)
+            .isInstanceOf(IdentityIsNotUniqueException.class);
+    }
+
+    @Test
+    void givenImportsLockingTreesInOppositeOrder_whenImportConcurrently_thenAllShouldSucceed() {
+        // Given
+        final List<UUID> roots = List.of(UUID.randomUUID(), UUID.randomUUID());
+        shopService.importData(roots.stream()
+            .map(id -> new ShopUnitImport(id, "Root", ShopUnitType.CATEGORY, null, null))
+            .toList(), DATE);
+
+        // When
+        CompletableFuture.allOf(IntStream.range(0, THREADS)
+            .mapToObj(thread -> CompletableFuture.runAsync(() -> {
+                final List<UUID> order = thread % 2 == 0 ? roots : roots.reversed();
+                final List<UUID> offers = IntStream.range(0, 4)
+                    .mapToObj(i -> UUID.randomUUID())
+                    .toList();
+                for (int i = 1; i <= IMPORTS; i++) {
+                    streamingImportService.importData(toStream(offersOf(order, offers, i)));
+                }
+            }, executor))
+            .toArray(CompletableFuture[]::new)).join();
+
+        // Then
+        then(categoryRepository.findAggregateDrift()).isEmpty();
+    }
+
+    /**
+     * Every chunk of two offers goes to its own tree, so trees are locked one by one.
+     */
+    private static String offersOf(List<UUID> roots, List<UUID> offers, int price) {
+        final StringBuilder items = new StringBuilder();
+        for (int i = 0; i < offers.size(); i++) {
+            if (i > 0) {
+                items.append(',');
+            }
+            items.append("""
+                {"id": "%s", "name": "Offer", "type": "OFFER", "parentId": "%s", "price": %d}
+                """.formatted(offers.get(i), roots.get(i / 2 % roots.size()), price));
+        }
+
+        return """
+            {"updateDate": "%s", "items": [%s]}
+            """.formatted(DATE.plusSeconds(price), items);
+    }
+
+    private static InputStream toStream(String json) {
+        return new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
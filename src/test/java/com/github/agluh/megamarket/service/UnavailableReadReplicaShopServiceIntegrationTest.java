@@ -0,0 +1,69 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * A replica can't be connected to here, so reads fall back to the primary.
+ */
+@SpringBootTest(properties = {
+    "megamarket.read-replica.datasource.url=jdbc:postgresql://localhost:1/megamarket",
+    "megamarket.read-replica.datasource.hikari.connection-timeout=250",
+    "megamarket.read-replica.retry-after=1s"
+})
+class UnavailableReadReplicaShopServiceIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenUnavailableReplica_whenGetNodeStatistics_thenPrimaryShouldBeRead() {
+        // Given
+        final ShopUnitImport category = new ShopUnitImport(UUID.randomUUID(), "Category",
+            ShopUnitType.CATEGORY, null, null);
+        final ShopUnitImport offer = new ShopUnitImport(UUID.randomUUID(), "Offer",
+            ShopUnitType.OFFER, category.getId(), 100L);
+        shopService.importData(List.of(category, offer), DATE);
+        final double replicaReads = readConnections("replica");
+        final double primaryReads = readConnections("primary");
+
+        // When
+        final var statistics = shopService.getNodeStatistics(category.getId(), null, null);
+
+        // Then
+        then(statistics).hasSize(1);
+        then(shopService.getNode(category.getId())).extracting("price").isEqualTo(100L);
+        then(readConnections("primary")).isGreaterThan(primaryReads);
+        then(readConnections("replica")).isEqualTo(replicaReads);
+    }
+
+    private double readConnections(String target) {
+        return meterRegistry.get("megamarket.read.connections").tag("target", target)
+            .functionCounter().count();
+    }
+}
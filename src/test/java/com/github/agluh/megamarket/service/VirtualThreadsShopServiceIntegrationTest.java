@@ -0,0 +1,88 @@
+package com.github.agluh.megamarket.service;
+
+import static org.assertj.core.api.Assertions.catchThrowable;
+import static org.assertj.core.api.BDDAssertions.then;
+
+import com.github.agluh.megamarket.dto.ShopUnit;
+import com.github.agluh.megamarket.dto.ShopUnitImport;
+import com.github.agluh.megamarket.dto.ShopUnitType;
+import com.github.agluh.megamarket.service.exceptions.ShopUnitNotFoundException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.jdbc.JdbcTestUtils;
+
+/**
+ * There is a single database permit, so any attempt to take a second connection
+ * while holding one fails by timeout.
+ */
+@SpringBootTest(properties = {
+    "megamarket.execution.mode=virtual-threads",
+    "megamarket.execution.db-permits=1",
+    "megamarket.execution.db-permit-timeout=5s"
+})
+class VirtualThreadsShopServiceIntegrationTest {
+
+    private static final Instant DATE = Instant.parse("2022-06-13T10:30:00.000Z");
+
+    @Autowired
+    private ShopService shopService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void tearDown() {
+        JdbcTestUtils.deleteFromTables(jdbcTemplate, "categories", "offers");
+    }
+
+    @Test
+    void givenSinglePermit_whenImportAndReadCatalog_thenEachShouldTakeOneConnection() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport child = createCategory(root.getId(), "Child");
+        final ShopUnitImport offer = createOffer(child.getId(), "Offer", 100L);
+
+        // When
+        shopService.importData(List.of(root, child, offer), DATE);
+
+        // Then
+        then(shopService.getNode(root.getId())).extracting("price").isEqualTo(100L);
+        then(shopService.getNodeTree(root.getId()).size()).isEqualTo(3);
+        then(shopService.getNodeStatistics(root.getId(), null, null)).hasSize(1);
+        then(shopService.getSales(DATE)).hasSize(1);
+        final List<ShopUnit> streamed = new ArrayList<>();
+        shopService.streamSales(DATE, streamed::add);
+        then(streamed).hasSize(1);
+    }
+
+    @Test
+    void givenSinglePermit_whenDeleteNode_thenItShouldTakeOneConnection() {
+        // Given
+        final ShopUnitImport root = createCategory(null, "Root");
+        final ShopUnitImport offer = createOffer(root.getId(), "Offer", 100L);
+        shopService.importData(List.of(root, offer), DATE);
+
+        // When
+        shopService.deleteNode(offer.getId());
+
+        // Then
+        then(shopService.getNode(root.getId())).extracting("price").isNull();
+        then(catchThrowable(() -> shopService.getNode(offer.getId())))
+            .isInstanceOf(ShopUnitNotFoundException.class);
+    }
+
+    private ShopUnitImport createOffer(UUID parentId, String name, long price) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.OFFER, parentId, price);
+    }
+
+    private ShopUnitImport createCategory(UUID parentId, String name) {
+        return new ShopUnitImport(UUID.randomUUID(), name, ShopUnitType.CATEGORY, parentId, null);
+    }
+}
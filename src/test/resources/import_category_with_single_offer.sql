@@ -1,7 +1,11 @@
-INSERT INTO categories (category_id, parent_id, category_name, price, last_update)
+INSERT INTO categories (category_id, parent_id, category_name, price, last_update, offer_sum, offer_count, path)
 VALUES
-    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Category', 20, '2022-05-28T21:12:01.000Z');
+    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Category', 20, '2022-05-28T21:12:01.000Z', 20, 1, '\x2f915daef4e71f11ec8fea0242ac120002');
 
-INSERT INTO offers (offer_id, category_id, offer_name, price, last_update)
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
 VALUES
-    ('915dbed0-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Offer 1', 20, '2022-05-28T21:12:01.000Z');
\ No newline at end of file
+    ('915daef4-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 0);
+
+INSERT INTO offers (offer_id, category_id, offer_name, price, last_update, path)
+VALUES
+    ('915dbed0-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Offer 1', 20, '2022-05-28T21:12:01.000Z', '\x2f915daef4e71f11ec8fea0242ac1200022f915dbed0e71f11ec8fea0242ac120002');
\ No newline at end of file
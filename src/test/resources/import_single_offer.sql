@@ -1,3 +1,3 @@
-INSERT INTO offers (offer_id, category_id, offer_name, price, last_update)
+INSERT INTO offers (offer_id, category_id, offer_name, price, last_update, path)
 VALUES
-    ('915dbed0-e71f-11ec-8fea-0242ac120002', null, 'Offer', 100, '2022-05-28T21:12:01.000Z');
\ No newline at end of file
+    ('915dbed0-e71f-11ec-8fea-0242ac120002', null, 'Offer', 100, '2022-05-28T21:12:01.000Z', '\x2f915dbed0e71f11ec8fea0242ac120002');
\ No newline at end of file
@@ -1,4 +1,10 @@
-INSERT INTO categories (category_id, parent_id, category_name, price, last_update)
+INSERT INTO categories (category_id, parent_id, category_name, price, last_update, path)
 VALUES
-    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Root category', null, '2022-05-28T21:12:01.000Z'),
-    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Sub cat 1', null, '2022-05-28T21:12:01.000Z');
\ No newline at end of file
+    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Root category', null, '2022-05-28T21:12:01.000Z', '\x2f915daef4e71f11ec8fea0242ac120002'),
+    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Sub cat 1', null, '2022-05-28T21:12:01.000Z', '\x2f915daef4e71f11ec8fea0242ac1200022f915db3eae71f11ec8fea0242ac120002');
+
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
+VALUES
+    ('915daef4-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 0),
+    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 0),
+    ('915daef4-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 1);
\ No newline at end of file
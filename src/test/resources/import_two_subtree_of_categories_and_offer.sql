@@ -1,10 +1,19 @@
-INSERT INTO categories (category_id, parent_id, category_name, price, last_update)
+INSERT INTO categories (category_id, parent_id, category_name, price, last_update, offer_sum, offer_count, path)
 VALUES
-    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Root category 1', 100, '2022-05-28T21:12:01.000Z'),
-    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Sub cat 1.1', 100, '2022-05-28T21:12:01.000Z'),
-    ('915db110-e71f-11ec-8fea-0242ac120002', null, 'Root category 2', null, '2022-05-28T21:12:01.000Z'),
-    ('915db52a-e71f-11ec-8fea-0242ac120002', '915db110-e71f-11ec-8fea-0242ac120002', 'Sub cat 2.1', null, '2022-05-28T21:12:01.000Z');
+    ('915daef4-e71f-11ec-8fea-0242ac120002', null, 'Root category 1', 100, '2022-05-28T21:12:01.000Z', 100, 1, '\x2f915daef4e71f11ec8fea0242ac120002'),
+    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 'Sub cat 1.1', 100, '2022-05-28T21:12:01.000Z', 100, 1, '\x2f915daef4e71f11ec8fea0242ac1200022f915db3eae71f11ec8fea0242ac120002'),
+    ('915db110-e71f-11ec-8fea-0242ac120002', null, 'Root category 2', null, '2022-05-28T21:12:01.000Z', 0, 0, '\x2f915db110e71f11ec8fea0242ac120002'),
+    ('915db52a-e71f-11ec-8fea-0242ac120002', '915db110-e71f-11ec-8fea-0242ac120002', 'Sub cat 2.1', null, '2022-05-28T21:12:01.000Z', 0, 0, '\x2f915db110e71f11ec8fea0242ac1200022f915db52ae71f11ec8fea0242ac120002');
 
-INSERT INTO offers (offer_id, category_id, offer_name, price, last_update)
+INSERT INTO category_closure (ancestor_id, descendant_id, depth)
 VALUES
-    ('915dbed0-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 'Offer', 100, '2022-05-28T21:12:01.000Z');
\ No newline at end of file
+    ('915daef4-e71f-11ec-8fea-0242ac120002', '915daef4-e71f-11ec-8fea-0242ac120002', 0),
+    ('915db3ea-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 0),
+    ('915daef4-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 1),
+    ('915db110-e71f-11ec-8fea-0242ac120002', '915db110-e71f-11ec-8fea-0242ac120002', 0),
+    ('915db52a-e71f-11ec-8fea-0242ac120002', '915db52a-e71f-11ec-8fea-0242ac120002', 0),
+    ('915db110-e71f-11ec-8fea-0242ac120002', '915db52a-e71f-11ec-8fea-0242ac120002', 1);
+
+INSERT INTO offers (offer_id, category_id, offer_name, price, last_update, path)
+VALUES
+    ('915dbed0-e71f-11ec-8fea-0242ac120002', '915db3ea-e71f-11ec-8fea-0242ac120002', 'Offer', 100, '2022-05-28T21:12:01.000Z', '\x2f915daef4e71f11ec8fea0242ac1200022f915db3eae71f11ec8fea0242ac1200022f915dbed0e71f11ec8fea0242ac120002');
\ No newline at end of file